@@ -1,6 +1,7 @@
 plugins {
     id("java")
     id("io.freefair.lombok") version "8.2.2"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "org.clever_bank"
@@ -18,8 +19,11 @@ dependencies {
 
     compileOnly("javax.servlet:javax.servlet-api:4.0.1")
 
+    jmh("io.zonky.test:embedded-postgres:2.0.4")
+
     testImplementation(platform("org.junit:junit-bom:5.9.1"))
     testImplementation("org.junit.jupiter:junit-jupiter")
+    testImplementation("io.zonky.test:embedded-postgres:2.0.4")
 }
 
 tasks.jar {
@@ -29,6 +33,13 @@ tasks.jar {
     from(configurations.runtimeClasspath.get().map { if (it.isDirectory) it else zipTree(it) })
 }
 
+jmh {
+    jmhVersion.set("1.37")
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    // Run a subset with e.g. -Pjmh.includes=AccountRepositoryBenchmark
+    project.findProperty("jmh.includes")?.let { includes.set(listOf(it.toString())) }
+}
 
 tasks.test {
     useJUnitPlatform()
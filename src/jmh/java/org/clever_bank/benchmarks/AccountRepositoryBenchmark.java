@@ -0,0 +1,27 @@
+package org.clever_bank.benchmarks;
+
+import org.clever_bank.entities.Account;
+import org.clever_bank.repository.AccountRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of reading accounts with their bank and customer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountRepositoryBenchmark {
+    @Benchmark
+    public Account readByNumber (SeededDatabase database) {
+        return AccountRepository.read(database.randomAccountNumber());
+    }
+
+    @Benchmark
+    public Account readById (SeededDatabase database) {
+        return AccountRepository.read(database.historyAccount.getId());
+    }
+}
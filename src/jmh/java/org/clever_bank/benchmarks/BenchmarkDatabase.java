@@ -0,0 +1,164 @@
+package org.clever_bank.benchmarks;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.clever_bank.db.ConnectionPool;
+import org.clever_bank.db.DatabaseSetup;
+import org.clever_bank.repository.ReferenceDataCache;
+import org.clever_bank.services.AppConfig;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.*;
+
+/**
+ * PostgreSQL database used by the benchmarks.
+ * By default an embedded PostgreSQL server is started in the benchmark JVM. A local server is used instead
+ * if the 'benchmark.url' system property is set, for example 'jdbc:postgresql://localhost:5432/'.
+ * The application is configured through a generated configuration file and the schema is created by
+ * {@link DatabaseSetup}, so the benchmarks run the same code as the application.
+ */
+public class BenchmarkDatabase {
+    /**
+     * The name of the benchmark database.
+     */
+    private static final String DB_NAME = "clever_bank_benchmark";
+
+    /**
+     * The prefix of the numbers of the accounts created by the benchmarks.
+     */
+    private static final String ACCOUNT_NUMBER_PREFIX = "BENCH ";
+
+    /**
+     * The embedded server, or null if a local server is used.
+     */
+    private static EmbeddedPostgres embeddedPostgres;
+
+    /**
+     * Whether the database is set up.
+     */
+    private static boolean started;
+
+    /**
+     * Starts the server, configures the application and applies the migrations. Does nothing if already started.
+     *
+     * @throws IOException If the server cannot be started or the configuration cannot be written.
+     */
+    public static synchronized void start () throws IOException {
+        if (started) {
+            return;
+        }
+        String url = System.getProperty("benchmark.url");
+        String username = System.getProperty("benchmark.username", "postgres");
+        String password = System.getProperty("benchmark.password", "root_password");
+        if (url == null) {
+            embeddedPostgres = EmbeddedPostgres.start();
+            url = "jdbc:postgresql://localhost:" + embeddedPostgres.getPort() + "/";
+            password = "postgres";
+        }
+
+        Path config = Files.createTempFile("clever_bank_benchmark", ".yml");
+        config.toFile().deleteOnExit();
+        String properties = "full_url: " + url + DB_NAME + "\n" +
+                "url: " + url + "\n" +
+                "username: " + username + "\n" +
+                "password: " + password + "\n" +
+                "dbName: " + DB_NAME + "\n" +
+                "pool_min_size: 4\n" +
+                "pool_max_size: 16\n" +
+                "http_enabled: false\n";
+        Files.writeString(config, properties, StandardCharsets.UTF_8);
+        System.setProperty(AppConfig.CONFIG_PATH_PROPERTY, config.toString());
+
+        DatabaseSetup.setupDatabase();
+        ReferenceDataCache.load();
+        Runtime.getRuntime().addShutdownHook(new Thread(BenchmarkDatabase::stop));
+        started = true;
+    }
+
+    /**
+     * Replaces the benchmark data: creates the given number of accounts and gives the first of them
+     * a history of the given number of deposits, withdrawals and transfers over the last years.
+     *
+     * @param accountCount The number of accounts, at least 3.
+     * @param historySize  The number of transactions of the first account.
+     * @throws SQLException If the data cannot be created.
+     */
+    public static void seed (int accountCount, int historySize) throws SQLException {
+        try (Connection connection = ConnectionPool.getConnection();
+             Statement statement = connection.createStatement()) {
+            statement.execute("TRUNCATE transactions, account_daily_balances");
+            statement.execute("UPDATE daily_balances_watermark SET compacted_until = NULL");
+            statement.execute("DELETE FROM accounts WHERE number LIKE '" + ACCOUNT_NUMBER_PREFIX + "%'");
+            statement.execute("SELECT setval(pg_get_serial_sequence('accounts', 'id'), (SELECT MAX(id) FROM accounts))");
+
+            try (PreparedStatement insertAccounts = connection.prepareStatement(
+                    "INSERT INTO accounts (number, balance, currency, open_date, id_bank, id_customer, interest_date) " +
+                    "SELECT ? || lpad(i::text, 10, '0'), 1000000000, 'BYN', DATE '2015-01-01', 1 + i % 5, 1, DATE '2999-01-01' " +
+                    "FROM generate_series(1, ?) i")) {
+                insertAccounts.setString(1, ACCOUNT_NUMBER_PREFIX);
+                insertAccounts.setInt(2, Math.max(3, accountCount));
+                insertAccounts.executeUpdate();
+            }
+
+            int firstId = getAccountId(connection, 1);
+            try (PreparedStatement insertHistory = connection.prepareStatement(
+                    "INSERT INTO transactions (date, money, id_type, id_sender, id_recipient) " +
+                    "SELECT now() - make_interval(mins => i), 10 + i % 100, " +
+                    "CASE i % 3 WHEN 0 THEN 1 WHEN 1 THEN 2 ELSE 3 END, ?, " +
+                    "CASE i % 3 WHEN 2 THEN ? + 1 + i % (? - 1) ELSE ? END " +
+                    "FROM generate_series(1, ?) i")) {
+                insertHistory.setInt(1, firstId);
+                insertHistory.setInt(2, firstId);
+                insertHistory.setInt(3, Math.max(3, accountCount));
+                insertHistory.setInt(4, firstId);
+                insertHistory.setInt(5, historySize);
+                insertHistory.executeUpdate();
+            }
+            statement.execute("ANALYZE accounts");
+            statement.execute("ANALYZE transactions");
+        }
+    }
+
+    /**
+     * @param index The index of the benchmark account, starting from 1.
+     * @return The number of the account.
+     */
+    public static String getAccountNumber (int index) {
+        return ACCOUNT_NUMBER_PREFIX + String.format("%010d", index);
+    }
+
+    /**
+     * @param connection The connection to use.
+     * @param index      The index of the benchmark account, starting from 1.
+     * @return The ID of the account.
+     * @throws SQLException If the account does not exist.
+     */
+    private static int getAccountId (Connection connection, int index) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT id FROM accounts WHERE number = ?")) {
+            statement.setString(1, getAccountNumber(index));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next()) {
+                    throw new SQLException("Benchmark account " + index + " not found");
+                }
+                return resultSet.getInt("id");
+            }
+        }
+    }
+
+    /**
+     * Closes the connections and stops the embedded server.
+     */
+    private static void stop () {
+        ConnectionPool.shutdown();
+        if (embeddedPostgres != null) {
+            try {
+                embeddedPostgres.close();
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.clever_bank.benchmarks;
+
+import org.clever_bank.entities.Account;
+import org.clever_bank.repository.AccountRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Benchmark state holding a database seeded with the given number of accounts
+ * and the given history size of the first account.
+ */
+@State(Scope.Benchmark)
+public class SeededDatabase {
+    /**
+     * The number of accounts.
+     */
+    @Param({"1000", "100000"})
+    public int accountCount;
+
+    /**
+     * The number of transactions of the first account.
+     */
+    @Param({"1000", "100000"})
+    public int historySize;
+
+    /**
+     * The first account, which has the history.
+     */
+    public Account historyAccount;
+
+    /**
+     * The seeded accounts by their index, read once, so the posting benchmarks do not measure account reads.
+     */
+    private Account[] accounts;
+
+    @Setup(Level.Trial)
+    public void setUp () throws Exception {
+        BenchmarkDatabase.start();
+        BenchmarkDatabase.seed(accountCount, historySize);
+        historyAccount = AccountRepository.read(BenchmarkDatabase.getAccountNumber(1));
+
+        int lastIndex = Math.max(3, accountCount);
+        Map<String, Account> byNumber;
+        try (Stream<Account> stream = AccountRepository.streamAll()) {
+            byNumber = stream.collect(Collectors.toMap(Account::getAccountNumber, Function.identity(), (first, second) -> first));
+        }
+        accounts = new Account[lastIndex + 1];
+        for (int index = 1; index <= lastIndex; index++) {
+            accounts[index] = byNumber.get(BenchmarkDatabase.getAccountNumber(index));
+        }
+    }
+
+    /**
+     * @return A random preloaded account other than the first one.
+     */
+    public Account randomAccount () {
+        return accounts[ThreadLocalRandom.current().nextInt(2, accounts.length)];
+    }
+
+    /**
+     * @return Two different random preloaded accounts other than the first one.
+     */
+    public Account[] randomAccountPair () {
+        int first = ThreadLocalRandom.current().nextInt(2, accounts.length);
+        int second = ThreadLocalRandom.current().nextInt(2, accounts.length - 1);
+        if (second >= first) {
+            second++;
+        }
+        return new Account[] {accounts[first], accounts[second]};
+    }
+
+    /**
+     * @return The number of a random account other than the first one.
+     */
+    public String randomAccountNumber () {
+        return BenchmarkDatabase.getAccountNumber(ThreadLocalRandom.current().nextInt(2, Math.max(3, accountCount) + 1));
+    }
+}
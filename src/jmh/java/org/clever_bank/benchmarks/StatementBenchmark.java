@@ -0,0 +1,52 @@
+package org.clever_bank.benchmarks;
+
+import org.clever_bank.services.Statement;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of rendering statements and checks to pdf files.
+ * The console output of the statements is discarded while the benchmarks run.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StatementBenchmark {
+    private static final String CHECK = "_".repeat(56) + "\n" +
+            "| " + " ".repeat(19) + "Банковский чек" + " ".repeat(19) + " |\n" +
+            "| Сумма: " + " ".repeat(37) + "100.00 BYN |\n" +
+            "|" + "_".repeat(54) + "|\n";
+
+    private PrintStream console;
+
+    @Setup(Level.Trial)
+    public void setUp () {
+        new File("check").mkdirs();
+        console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown () {
+        System.setOut(console);
+    }
+
+    @Benchmark
+    public void createReport (SeededDatabase database) {
+        Statement.createReport(database.historyAccount, Instant.now().minus(3650, ChronoUnit.DAYS), Instant.now());
+    }
+
+    @Benchmark
+    public void stringToPdfFile () {
+        Statement.stringToPdfFile(CHECK, "check/Benchmark");
+    }
+}
@@ -0,0 +1,78 @@
+package org.clever_bank.benchmarks;
+
+import org.clever_bank.entities.Account;
+import org.clever_bank.entities.Transaction;
+import org.clever_bank.entities.TransactionType;
+import org.clever_bank.repository.TransactionRepository;
+import org.clever_bank.repository.TransactionTypeRepository;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks of posting transactions and reading the history of an account.
+ * New transactions are posted between the accounts without history, so the history read stays the same size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TransactionRepositoryBenchmark {
+    private static final BigDecimal AMOUNT = new BigDecimal("1.00");
+
+    private TransactionType deposit;
+    private TransactionType transfer;
+
+    @Setup(Level.Trial)
+    public void setUp (SeededDatabase database) {
+        deposit = TransactionTypeRepository.readTransactionTypeById(1);
+        transfer = TransactionTypeRepository.readTransactionTypeById(3);
+    }
+
+    @Benchmark
+    public int createDeposit (SeededDatabase database) {
+        Account account = database.randomAccount();
+        return TransactionRepository.create(newTransaction(deposit, account, account));
+    }
+
+    @Benchmark
+    public int createTransfer (SeededDatabase database) {
+        Account[] accounts = database.randomAccountPair();
+        return TransactionRepository.create(newTransaction(transfer, accounts[0], accounts[1]));
+    }
+
+    @Benchmark
+    public List<Transaction> readPeriodTransactionsOfAccount (SeededDatabase database) {
+        return TransactionRepository.readPeriodTransactionsOfAccount(database.historyAccount.getId(),
+                Instant.now().minus(3650, ChronoUnit.DAYS), Instant.now());
+    }
+
+    @Benchmark
+    public long streamPeriodTransactionsOfAccount (SeededDatabase database, Blackhole blackhole) throws SQLException {
+        return TransactionRepository.streamPeriodTransactionsOfAccount(database.historyAccount.getId(),
+                Instant.now().minus(3650, ChronoUnit.DAYS), Instant.now(), blackhole::consume);
+    }
+
+    @Benchmark
+    public long streamPeriodTransactionViews (SeededDatabase database, Blackhole blackhole) throws SQLException {
+        return TransactionRepository.streamPeriodTransactionViews(database.historyAccount.getId(),
+                Instant.now().minus(3650, ChronoUnit.DAYS), Instant.now(), blackhole::consume);
+    }
+
+    private static Transaction newTransaction (TransactionType type, Account sender, Account recipient) {
+        Transaction transaction = new Transaction();
+        transaction.setType(type);
+        transaction.setMoney(AMOUNT);
+        transaction.setAccountSender(sender);
+        transaction.setAccountRecipient(recipient);
+        return transaction;
+    }
+}
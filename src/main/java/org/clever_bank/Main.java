@@ -1,11 +1,88 @@
 package org.clever_bank;
 
+import org.clever_bank.api.ApiServer;
+import org.clever_bank.api.MetricsServer;
+import org.clever_bank.db.ConnectionPool;
 import org.clever_bank.db.DatabaseSetup;
+import org.clever_bank.repository.ReferenceDataCache;
+import org.clever_bank.services.AppConfig;
+import org.clever_bank.services.BalanceSnapshotCompactor;
+import org.clever_bank.services.ExchangeRates;
+import org.clever_bank.services.GroupCommitPoster;
+import org.clever_bank.services.InterestCalculator;
+import org.clever_bank.services.PartitionManager;
+import org.clever_bank.services.ReceiptService;
+import org.clever_bank.services.StatementBatchJob;
+import org.clever_bank.services.TransactionImporter;
 import org.clever_bank.ui.UserInterface;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
 public class Main {
     public static void main(String[] args) {
         DatabaseSetup.setupDatabase();
+        if (args.length >= 2 && args[0].equals("import")) {
+            // Пакетный импорт транзакций: import <file.csv> [--header]
+            try {
+                TransactionImporter.importCsv(Path.of(args[1]), args.length > 2 && args[2].equals("--header"));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            ConnectionPool.shutdown();
+            return;
+        }
+        ReferenceDataCache.load();
+        if (args.length >= 2 && args[0].equals("statements")) {
+            // Выписки по всем счетам банка: statements <id банка> [<с yyyy-MM-dd> <по yyyy-MM-dd>], по умолчанию за прошлый месяц
+            LocalDate firstDay = LocalDate.now(ZoneOffset.UTC).withDayOfMonth(1).minusMonths(1);
+            LocalDate lastDay = firstDay.plusMonths(1).minusDays(1);
+            if (args.length >= 4) {
+                firstDay = LocalDate.parse(args[2]);
+                lastDay = LocalDate.parse(args[3]);
+            }
+            new StatementBatchJob(Integer.parseInt(args[1]),
+                    firstDay.atStartOfDay(ZoneOffset.UTC).toInstant(),
+                    lastDay.plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant().minusNanos(1000)).run();
+            ConnectionPool.shutdown();
+            return;
+        }
+        ExchangeRates.start();
+        InterestCalculator interestCalculator = new InterestCalculator();
+        interestCalculator.startInterestCalculation();
+        BalanceSnapshotCompactor balanceSnapshotCompactor = new BalanceSnapshotCompactor();
+        balanceSnapshotCompactor.startCompaction();
+        PartitionManager partitionManager = new PartitionManager();
+        partitionManager.startPartitionMaintenance();
+        AppConfig appConfig = new AppConfig();
+        if (appConfig.isGroupCommitEnabled()) {
+            GroupCommitPoster.start();
+        }
+        if (appConfig.isMetricsEnabled()) {
+            try {
+                MetricsServer.start();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if (appConfig.isHttpEnabled()) {
+            try {
+                ApiServer.start();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
         UserInterface.start();
+        ApiServer.stop();
+        MetricsServer.stop();
+        interestCalculator.stopInterestCalculation();
+        balanceSnapshotCompactor.stopCompaction();
+        partitionManager.stopPartitionMaintenance();
+        ExchangeRates.stop();
+        GroupCommitPoster.shutdown();
+        ReceiptService.shutdown();
+        ConnectionPool.shutdown();
     }
 }
\ No newline at end of file
@@ -0,0 +1,585 @@
+package org.clever_bank.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.clever_bank.entities.Account;
+import org.clever_bank.entities.MoneySummary;
+import org.clever_bank.entities.Transaction;
+import org.clever_bank.entities.TransactionType;
+import org.clever_bank.entities.TransactionView;
+import org.clever_bank.repository.AccountCache;
+import org.clever_bank.repository.DailyBalanceRepository;
+import org.clever_bank.repository.TransactionRepository;
+import org.clever_bank.repository.TransactionTypeRepository;
+import org.clever_bank.services.AppConfig;
+import org.clever_bank.services.DateConstructor;
+import org.clever_bank.services.ExchangeRates;
+import org.clever_bank.services.GroupCommitPoster;
+import org.clever_bank.services.ReceiptService;
+import org.clever_bank.services.VirtualThreads;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Embedded HTTP server exposing accounts, postings and statements as a JSON API.
+ * Every request is handled on its own virtual thread when the runtime supports them,
+ * so requests blocked on the database do not hold platform threads.
+ * The server listens on the configured address only, and every request must carry the configured token
+ * in the header 'Authorization: Bearer &lt;token&gt;'.
+ * <p>
+ * Endpoints:
+ * <ul>
+ *     <li>GET  /api/accounts/{number} - the account with its balance</li>
+ *     <li>POST /api/accounts/{number}/deposit - body {"amount": "100.00"}</li>
+ *     <li>POST /api/accounts/{number}/withdrawal - body {"amount": "100.00"}</li>
+ *     <li>POST /api/transfers - body {"from": "...", "to": "...", "amount": "100.00"}</li>
+ *     <li>GET  /api/accounts/{number}/statement?from=yyyy-MM-dd&amp;to=yyyy-MM-dd - the transactions of a period</li>
+ *     <li>GET  /api/accounts/{number}/money-report?from=yyyy-MM-dd&amp;to=yyyy-MM-dd - the income and expense of a period</li>
+ * </ul>
+ */
+public class ApiServer {
+    /**
+     * Application configuration.
+     * This class reads the configuration from the 'application.yml' file located in the resources' directory.
+     */
+    private static final AppConfig appConfig = new AppConfig();
+
+    /**
+     * The largest request body accepted, in bytes.
+     */
+    private static final int MAX_BODY_SIZE = 16 * 1024;
+
+    /**
+     * The expected value of the 'Authorization' header, set when the server is started.
+     */
+    private static byte[] authorization;
+
+    /**
+     * The running server, or null if it is not started.
+     */
+    private static HttpServer server;
+
+    /**
+     * The executor handling the requests.
+     */
+    private static ExecutorService executor;
+
+    /**
+     * Starts the server on the address and the port from the configuration file.
+     *
+     * @throws IOException If no API token is configured or the port cannot be bound.
+     */
+    public static synchronized void start () throws IOException {
+        if (server != null) {
+            return;
+        }
+        String token = appConfig.getHttpApiToken().trim();
+        if (token.isEmpty()) {
+            throw new IOException("HTTP API is not started: http_api_token is not configured");
+        }
+        authorization = ("Bearer " + token).getBytes(StandardCharsets.UTF_8);
+        executor = VirtualThreads.newThreadPerTaskExecutor("http", appConfig.getHttpFallbackThreads());
+        server = HttpServer.create(new InetSocketAddress(appConfig.getHttpHost(), appConfig.getHttpPort()), 0);
+        server.createContext("/api/accounts/", exchange -> handle(exchange, ApiServer::handleAccounts));
+        server.createContext("/api/transfers", exchange -> handle(exchange, ApiServer::handleTransfers));
+        server.setExecutor(executor);
+        server.start();
+        System.out.println("HTTP API started on " + appConfig.getHttpHost() + ":" + appConfig.getHttpPort()
+                + (VirtualThreads.isSupported() ? " (virtual threads)" : " (platform threads)"));
+    }
+
+    /**
+     * Stops the server, waiting a moment for the requests in progress.
+     */
+    public static synchronized void stop () {
+        if (server == null) {
+            return;
+        }
+        server.stop(1);
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        server = null;
+        executor = null;
+    }
+
+    /**
+     * Handles the requests under /api/accounts/.
+     *
+     * @param exchange The request and response.
+     * @throws IOException If the response cannot be written.
+     */
+    private static void handleAccounts (HttpExchange exchange) throws IOException {
+        String[] path = exchange.getRequestURI().getPath().substring("/api/accounts/".length()).split("/");
+        Account account = readAccount(path[0]);
+        String action = path.length > 1 ? path[1] : "";
+        String method = exchange.getRequestMethod();
+
+        if (path.length > 2) {
+            throw new ApiException(404, "Not found");
+        }
+        switch (action) {
+            case "" -> {
+                requireMethod(method, "GET");
+                sendJson(exchange, 200, accountToMap(account));
+            }
+            case "deposit" -> {
+                requireMethod(method, "POST");
+                BigDecimal amount = readAmount(readBody(exchange));
+                sendJson(exchange, 201, transactionToMap(post(1, amount, account, account), account));
+            }
+            case "withdrawal" -> {
+                requireMethod(method, "POST");
+                BigDecimal amount = readAmount(readBody(exchange));
+                sendJson(exchange, 201, transactionToMap(post(2, amount, account, account), account));
+            }
+            case "statement" -> {
+                requireMethod(method, "GET");
+                sendStatement(exchange, account);
+            }
+            case "money-report" -> {
+                requireMethod(method, "GET");
+                Map<String, String> query = readQuery(exchange);
+                Instant dateStart = readDateStart(query, account);
+                Instant dateEnd = readDateEnd(query);
+                MoneySummary summary = DailyBalanceRepository.getMoneySummary(account.getId(), dateStart, dateEnd);
+                if (summary == null) {
+                    throw new ApiException(500, "Money report is not available");
+                }
+                Map<String, Object> result = new LinkedHashMap<>();
+                result.put("account", account.getAccountNumber());
+                result.put("currency", account.getCurrency());
+                result.put("from", dateStart.toString());
+                result.put("to", dateEnd.toString());
+                result.put("income", summary.getIncome());
+                result.put("expense", summary.getExpense());
+                result.put("net", summary.getNet());
+                result.put("operations", summary.getCount());
+                sendJson(exchange, 200, result);
+            }
+            default -> throw new ApiException(404, "Not found");
+        }
+    }
+
+    /**
+     * Handles the requests under /api/transfers.
+     *
+     * @param exchange The request and response.
+     * @throws IOException If the response cannot be written.
+     */
+    private static void handleTransfers (HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestURI().getPath().equals("/api/transfers")) {
+            throw new ApiException(404, "Not found");
+        }
+        requireMethod(exchange.getRequestMethod(), "POST");
+        Map<String, String> body = readBody(exchange);
+        Account sender = readAccount(requireField(body, "from"));
+        Account recipient = readAccount(requireField(body, "to"));
+        BigDecimal amount = readAmount(body);
+
+        if (sender.getId() == recipient.getId()) {
+            throw new ApiException(422, "Sender and recipient accounts must differ");
+        }
+        if (ExchangeRates.getRate(sender.getCurrency(), recipient.getCurrency()) == null) {
+            throw new ApiException(422, "No exchange rate from " + sender.getCurrency() + " to " + recipient.getCurrency());
+        }
+        sendJson(exchange, 201, transactionToMap(post(3, amount, sender, recipient), sender));
+    }
+
+    /**
+     * Posts a transaction and queues its check.
+     * The transaction is committed together with other postings if group commit is enabled.
+     *
+     * @param typeId    The ID of the transaction type.
+     * @param amount    The amount of money.
+     * @param sender    The sender account.
+     * @param recipient The recipient account.
+     * @return The posted transaction.
+     */
+    private static Transaction post (int typeId, BigDecimal amount, Account sender, Account recipient) {
+        Transaction transaction = new Transaction();
+        transaction.setType(TransactionTypeRepository.readTransactionTypeById(typeId));
+        transaction.setMoney(amount);
+        transaction.setAccountSender(sender);
+        transaction.setAccountRecipient(recipient);
+        if (GroupCommitPoster.submit(transaction).join() == 0) {
+            throw new ApiException(409, typeId == 1 ? "Deposit failed" : "Insufficient funds");
+        }
+        ReceiptService.submit(transaction);
+        return transaction;
+    }
+
+    /**
+     * Writes the transactions of a period to a temporary file as they are read from the database,
+     * so the memory used does not depend on the length of the history,
+     * and sends the file once the query is finished, so a slow client does not hold a pooled connection.
+     *
+     * @param exchange The request and response.
+     * @param account  The account of the statement.
+     * @throws IOException If the statement cannot be buffered.
+     */
+    private static void sendStatement (HttpExchange exchange, Account account) throws IOException {
+        Map<String, String> query = readQuery(exchange);
+        Instant dateStart = readDateStart(query, account);
+        Instant dateEnd = readDateEnd(query);
+
+        Path file = Files.createTempFile("statement-", ".json");
+        try {
+            try {
+                writeStatement(file, account, dateStart, dateEnd);
+            }
+            catch (SQLException e) {
+                throw new ApiException(500, "Statement is not available");
+            }
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(200, Files.size(file));
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                Files.copy(file, outputStream);
+            }
+            catch (IOException e) {
+                // The client closed the connection, the statement is not needed anymore
+                exchange.close();
+            }
+        }
+        finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Writes the JSON of a statement to a file.
+     *
+     * @param file      The file.
+     * @param account   The account of the statement.
+     * @param dateStart The start of the period.
+     * @param dateEnd   The end of the period.
+     * @throws IOException  If the file cannot be written.
+     * @throws SQLException If the transactions cannot be read.
+     */
+    private static void writeStatement (Path file, Account account, Instant dateStart, Instant dateEnd)
+            throws IOException, SQLException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            StringBuilder builder = new StringBuilder("{\"account\":");
+            Json.write(builder, accountToMap(account));
+            builder.append(",\"from\":");
+            Json.write(builder, dateStart.toString());
+            builder.append(",\"to\":");
+            Json.write(builder, dateEnd.toString());
+            builder.append(",\"transactions\":[");
+            writer.write(builder.toString());
+
+            boolean[] first = {true};
+            TransactionRepository.streamPeriodTransactionViews(account.getId(), dateStart, dateEnd, transaction -> {
+                StringBuilder line = new StringBuilder(first[0] ? "" : ",");
+                first[0] = false;
+                Json.write(line, transactionViewToMap(transaction, account));
+                try {
+                    writer.write(line.toString());
+                }
+                catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.write("]}");
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Runs a handler and converts its failures to JSON error responses.
+     *
+     * @param exchange The request and response.
+     * @param handler  The handler of the request.
+     */
+    private static void handle (HttpExchange exchange, Handler handler) {
+        try (exchange) {
+            try {
+                requireAuthorization(exchange);
+                handler.handle(exchange);
+            }
+            catch (ApiException e) {
+                sendJson(exchange, e.status, Map.of("error", e.getMessage()));
+            }
+            catch (Exception e) {
+                e.printStackTrace();
+                sendJson(exchange, 500, Map.of("error", "Internal server error"));
+            }
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Writes a JSON response.
+     *
+     * @param exchange The request and response.
+     * @param status   The HTTP status code.
+     * @param value    The value written as JSON.
+     * @throws IOException If the response cannot be written.
+     */
+    private static void sendJson (HttpExchange exchange, int status, Object value) throws IOException {
+        byte[] body = Json.write(value).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream outputStream = exchange.getResponseBody()) {
+            outputStream.write(body);
+        }
+    }
+
+    /**
+     * @param number The account number from the request.
+     * @return The account.
+     * @throws ApiException If the account does not exist or the number belongs to several accounts.
+     */
+    private static Account readAccount (String number) {
+        Account account;
+        try {
+            account = number.isEmpty() ? null : AccountCache.read(number);
+        }
+        catch (IllegalStateException e) {
+            throw new ApiException(409, "Account number is not unique: " + number);
+        }
+        if (account == null) {
+            throw new ApiException(404, "Account not found: " + number);
+        }
+        return account;
+    }
+
+    /**
+     * @param exchange The request.
+     * @return The fields of the JSON object in the request body.
+     * @throws IOException  If the body cannot be read.
+     * @throws ApiException If the body is too large or is not a flat JSON object.
+     */
+    private static Map<String, String> readBody (HttpExchange exchange) throws IOException {
+        byte[] body = exchange.getRequestBody().readNBytes(MAX_BODY_SIZE + 1);
+        if (body.length > MAX_BODY_SIZE) {
+            throw new ApiException(413, "Request body is too large");
+        }
+        try {
+            return Json.parseObject(new String(body, StandardCharsets.UTF_8));
+        }
+        catch (IllegalArgumentException e) {
+            throw new ApiException(400, "Invalid JSON: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @param exchange The request.
+     * @return The query parameters of the request.
+     */
+    private static Map<String, String> readQuery (HttpExchange exchange) {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query == null || query.isEmpty()) {
+            return parameters;
+        }
+        for (String pair : query.split("&")) {
+            int separator = pair.indexOf('=');
+            String name = separator < 0 ? pair : pair.substring(0, separator);
+            String value = separator < 0 ? "" : pair.substring(separator + 1);
+            parameters.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return parameters;
+    }
+
+    /**
+     * @param body The fields of the request body.
+     * @return The positive amount of money from the 'amount' field.
+     * @throws ApiException If the amount is missing, not a number or not positive.
+     */
+    private static BigDecimal readAmount (Map<String, String> body) {
+        String value = requireField(body, "amount");
+        BigDecimal amount;
+        try {
+            amount = new BigDecimal(value);
+        }
+        catch (NumberFormatException e) {
+            throw new ApiException(400, "Amount is not a number: " + value);
+        }
+        if (amount.signum() <= 0) {
+            throw new ApiException(400, "Amount must be greater than 0");
+        }
+        return amount;
+    }
+
+    /**
+     * @param body The fields of the request body.
+     * @param name The name of the field.
+     * @return The value of the field.
+     * @throws ApiException If the field is missing.
+     */
+    private static String requireField (Map<String, String> body, String name) {
+        String value = body.get(name);
+        if (value == null || value.isEmpty()) {
+            throw new ApiException(400, "Missing field: " + name);
+        }
+        return value;
+    }
+
+    /**
+     * @param exchange The request.
+     * @throws ApiException If the request does not carry the configured token.
+     */
+    private static void requireAuthorization (HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !MessageDigest.isEqual(authorization, header.getBytes(StandardCharsets.UTF_8))) {
+            exchange.getResponseHeaders().set("WWW-Authenticate", "Bearer");
+            throw new ApiException(401, "Unauthorized");
+        }
+    }
+
+    /**
+     * @param method   The method of the request.
+     * @param expected The method supported by the endpoint.
+     * @throws ApiException If the methods differ.
+     */
+    private static void requireMethod (String method, String expected) {
+        if (!method.equals(expected)) {
+            throw new ApiException(405, "Method not allowed: " + method);
+        }
+    }
+
+    /**
+     * @param query   The query parameters.
+     * @param account The account of the report.
+     * @return The start of the 'from' day, or the opening date of the account if the parameter is missing.
+     */
+    private static Instant readDateStart (Map<String, String> query, Account account) {
+        Instant openingDate = DateConstructor.createInstantDate(account.getOpeningDate());
+        if (!query.containsKey("from")) {
+            return openingDate;
+        }
+        Instant dateStart = parseDay(query.get("from")).atStartOfDay(ZoneOffset.UTC).toInstant();
+        return dateStart.isBefore(openingDate) ? openingDate : dateStart;
+    }
+
+    /**
+     * @param query The query parameters.
+     * @return The end of the 'to' day, or now if the parameter is missing or the day is not over yet.
+     */
+    private static Instant readDateEnd (Map<String, String> query) {
+        Instant now = Instant.now();
+        if (!query.containsKey("to")) {
+            return now;
+        }
+        Instant dateEnd = parseDay(query.get("to")).plusDays(1).atStartOfDay(ZoneOffset.UTC).toInstant().minusNanos(1000);
+        return dateEnd.isAfter(now) ? now : dateEnd;
+    }
+
+    /**
+     * @param value The day in the format yyyy-MM-dd.
+     * @return The day.
+     * @throws ApiException If the day cannot be parsed.
+     */
+    private static LocalDate parseDay (String value) {
+        try {
+            return LocalDate.parse(value);
+        }
+        catch (DateTimeParseException e) {
+            throw new ApiException(400, "Invalid date, expected yyyy-MM-dd: " + value);
+        }
+    }
+
+    /**
+     * @param account The account.
+     * @return The fields of the account written to responses.
+     */
+    private static Map<String, Object> accountToMap (Account account) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("id", account.getId());
+        result.put("number", account.getAccountNumber());
+        result.put("bank", account.getBank() == null ? null : account.getBank().getName());
+        result.put("customer", account.getCustomer() == null ? null : account.getCustomer().getName());
+        result.put("currency", account.getCurrency());
+        result.put("balance", account.getBalance());
+        result.put("openingDate", account.getOpeningDate() == null ? null
+                : DateConstructor.createInstantDate(account.getOpeningDate()).atZone(ZoneOffset.UTC).toLocalDate().toString());
+        return result;
+    }
+
+    /**
+     * @param transaction The transaction.
+     * @param account     The account the transaction is shown for, which defines the sign of the amount.
+     * @return The fields of the transaction written to responses.
+     */
+    private static Map<String, Object> transactionToMap (Transaction transaction, Account account) {
+        int typeId = transaction.getType().getId();
+        boolean debit = typeId == 2 || (typeId == 3 && transaction.getAccountSender().getId() == account.getId());
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("id", transaction.getId());
+        result.put("date", transaction.getDate() == null ? null : transaction.getDate().toString());
+        result.put("type", transaction.getType().getName());
+        result.put("amount", debit ? transaction.getMoney().negate() : transaction.getMoney());
+        result.put("sender", transaction.getAccountSender().getAccountNumber());
+        result.put("recipient", transaction.getAccountRecipient().getAccountNumber());
+        if (transaction.getCreditMoney() != null) {
+            result.put("creditAmount", transaction.getCreditMoney());
+            result.put("creditCurrency", transaction.getAccountRecipient().getCurrency());
+        }
+        return result;
+    }
+
+    /**
+     * @param transaction The transaction view.
+     * @param account     The account the transaction is shown for, which defines the sign of the amount.
+     * @return The fields of the statement line written to responses.
+     */
+    private static Map<String, Object> transactionViewToMap (TransactionView transaction, Account account) {
+        TransactionType type = TransactionTypeRepository.readTransactionTypeById(transaction.getTypeId());
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("id", transaction.getId());
+        result.put("date", transaction.getDate().toString());
+        result.put("type", type == null ? null : type.getName());
+        result.put("amount", transaction.isDebitFor(account.getId()) ? transaction.getMoney().negate() : transaction.getMoney());
+        result.put("counterparty", transaction.getCounterpartyNumber());
+        result.put("counterpartyName", transaction.getCounterpartyName());
+        return result;
+    }
+
+    /**
+     * Handler of the requests of one context.
+     */
+    @FunctionalInterface
+    private interface Handler {
+        void handle (HttpExchange exchange) throws IOException;
+    }
+
+    /**
+     * Failure of a request reported to the client with the given status code.
+     */
+    private static class ApiException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        private final int status;
+
+        private ApiException (int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package org.clever_bank.api;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Minimal JSON support of the HTTP API.
+ * Responses are written from maps, collections, strings, numbers and booleans.
+ * Requests are flat objects whose values are read as strings, so amounts of money keep their exact decimal value.
+ */
+public class Json {
+    /**
+     * Converts a value to JSON.
+     *
+     * @param value A map with string keys, a collection, a string, a number, a boolean or null.
+     *              Other values are written as strings.
+     * @return The JSON text.
+     */
+    public static String write (Object value) {
+        StringBuilder builder = new StringBuilder();
+        write(builder, value);
+        return builder.toString();
+    }
+
+    /**
+     * Appends a value as JSON.
+     *
+     * @param builder The builder to append to.
+     * @param value   The value.
+     */
+    public static void write (StringBuilder builder, Object value) {
+        if (value == null) {
+            builder.append("null");
+        }
+        else if (value instanceof Map<?, ?> map) {
+            builder.append('{');
+            boolean first = true;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                if (!first) {
+                    builder.append(',');
+                }
+                first = false;
+                writeString(builder, String.valueOf(entry.getKey()));
+                builder.append(':');
+                write(builder, entry.getValue());
+            }
+            builder.append('}');
+        }
+        else if (value instanceof Collection<?> collection) {
+            builder.append('[');
+            boolean first = true;
+            for (Object element : collection) {
+                if (!first) {
+                    builder.append(',');
+                }
+                first = false;
+                write(builder, element);
+            }
+            builder.append(']');
+        }
+        else if (value instanceof BigDecimal decimal) {
+            builder.append(decimal.toPlainString());
+        }
+        else if (value instanceof Number || value instanceof Boolean) {
+            builder.append(value);
+        }
+        else {
+            writeString(builder, value.toString());
+        }
+    }
+
+    /**
+     * Parses a flat JSON object. Nested objects and arrays are not supported.
+     *
+     * @param text The JSON text.
+     * @return The values by name. Strings, numbers and booleans are returned as their text, null as null.
+     * @throws IllegalArgumentException If the text is not a flat JSON object.
+     */
+    public static Map<String, String> parseObject (String text) {
+        Parser parser = new Parser(text);
+        Map<String, String> values = new LinkedHashMap<>();
+        parser.skipWhitespace();
+        parser.expect('{');
+        parser.skipWhitespace();
+        if (parser.peek() == '}') {
+            parser.position++;
+        }
+        else {
+            while (true) {
+                parser.skipWhitespace();
+                String name = parser.readString();
+                parser.skipWhitespace();
+                parser.expect(':');
+                parser.skipWhitespace();
+                values.put(name, parser.readValue());
+                parser.skipWhitespace();
+                char next = parser.next();
+                if (next == '}') {
+                    break;
+                }
+                if (next != ',') {
+                    throw new IllegalArgumentException("Expected ',' or '}' at position " + (parser.position - 1));
+                }
+            }
+        }
+        parser.skipWhitespace();
+        if (parser.position < text.length()) {
+            throw new IllegalArgumentException("Unexpected data at position " + parser.position);
+        }
+        return values;
+    }
+
+    /**
+     * Appends a string as a JSON string literal.
+     *
+     * @param builder The builder to append to.
+     * @param value   The string.
+     */
+    private static void writeString (StringBuilder builder, String value) {
+        builder.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> builder.append("\\\"");
+                case '\\' -> builder.append("\\\\");
+                case '\n' -> builder.append("\\n");
+                case '\r' -> builder.append("\\r");
+                case '\t' -> builder.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    }
+                    else {
+                        builder.append(c);
+                    }
+                }
+            }
+        }
+        builder.append('"');
+    }
+
+    /**
+     * Reads the tokens of a flat JSON object.
+     */
+    private static class Parser {
+        private final String text;
+        private int position;
+
+        private Parser (String text) {
+            this.text = text;
+        }
+
+        private char peek () {
+            if (position >= text.length()) {
+                throw new IllegalArgumentException("Unexpected end of JSON");
+            }
+            return text.charAt(position);
+        }
+
+        private char next () {
+            char c = peek();
+            position++;
+            return c;
+        }
+
+        private void expect (char expected) {
+            if (next() != expected) {
+                throw new IllegalArgumentException("Expected '" + expected + "' at position " + (position - 1));
+            }
+        }
+
+        private void skipWhitespace () {
+            while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+        }
+
+        private String readValue () {
+            char c = peek();
+            if (c == '"') {
+                return readString();
+            }
+            if (c == '{' || c == '[') {
+                throw new IllegalArgumentException("Nested values are not supported at position " + position);
+            }
+            int start = position;
+            while (position < text.length() && ",}".indexOf(text.charAt(position)) < 0
+                    && !Character.isWhitespace(text.charAt(position))) {
+                position++;
+            }
+            String literal = text.substring(start, position);
+            if (literal.isEmpty()) {
+                throw new IllegalArgumentException("Expected a value at position " + start);
+            }
+            return literal.equals("null") ? null : literal;
+        }
+
+        private String readString () {
+            expect('"');
+            StringBuilder builder = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return builder.toString();
+                }
+                if (c != '\\') {
+                    builder.append(c);
+                    continue;
+                }
+                char escaped = next();
+                switch (escaped) {
+                    case 'b' -> builder.append('\b');
+                    case 'f' -> builder.append('\f');
+                    case 'n' -> builder.append('\n');
+                    case 'r' -> builder.append('\r');
+                    case 't' -> builder.append('\t');
+                    case 'u' -> {
+                        if (position + 4 > text.length()) {
+                            throw new IllegalArgumentException("Unexpected end of JSON");
+                        }
+                        builder.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                        position += 4;
+                    }
+                    default -> builder.append(escaped);
+                }
+            }
+        }
+    }
+}
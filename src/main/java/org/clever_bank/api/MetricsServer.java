@@ -0,0 +1,76 @@
+package org.clever_bank.api;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.clever_bank.metrics.PrometheusExporter;
+import org.clever_bank.services.AppConfig;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Embedded HTTP server exporting the metrics for Prometheus at GET /metrics.
+ * It listens on its own address, the loopback interface by default, so the metrics are not exposed with the API.
+ * The requests are handled on the single thread of the server, since a scrape takes only a moment.
+ */
+public class MetricsServer {
+    /**
+     * Application configuration.
+     * This class reads the configuration from the 'application.yml' file located in the resources' directory.
+     */
+    private static final AppConfig appConfig = new AppConfig();
+
+    /**
+     * The running server, or null if it is not started.
+     */
+    private static HttpServer server;
+
+    /**
+     * Starts the server on the address and port from the configuration file.
+     *
+     * @throws IOException If the port cannot be bound.
+     */
+    public static synchronized void start () throws IOException {
+        if (server != null) {
+            return;
+        }
+        server = HttpServer.create(new InetSocketAddress(appConfig.getMetricsHost(), appConfig.getMetricsPort()), 0);
+        server.createContext("/metrics", MetricsServer::handleMetrics);
+        server.start();
+        System.out.println("Metrics endpoint started on " + appConfig.getMetricsHost() + ":" + appConfig.getMetricsPort());
+    }
+
+    /**
+     * Stops the server.
+     */
+    public static synchronized void stop () {
+        if (server == null) {
+            return;
+        }
+        server.stop(0);
+        server = null;
+    }
+
+    /**
+     * Writes the metrics in the Prometheus text format.
+     *
+     * @param exchange The request and response.
+     * @throws IOException If the response cannot be written.
+     */
+    private static void handleMetrics (HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("GET")) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = PrometheusExporter.write().getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream outputStream = exchange.getResponseBody()) {
+                outputStream.write(body);
+            }
+        }
+    }
+}
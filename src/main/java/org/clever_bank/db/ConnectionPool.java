@@ -0,0 +1,583 @@
+package org.clever_bank.db;
+
+import org.clever_bank.services.AppConfig;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded pool of database connections shared by all repositories.
+ * Connections are opened once and handed out again after they are closed by the caller,
+ * so a repository call costs no TCP and authentication handshake.
+ * Every connection keeps a cache of the SQL texts prepared on it: once an SQL text has been executed
+ * 'pool_prepare_threshold' times on a connection, the driver keeps a named server-side prepared statement for it,
+ * and later calls preparing the same text on that connection skip parsing and planning, even though
+ * repositories close their statements after every call. The executions are counted by {@link StatementStatistics}.
+ * The pool is configured by the 'pool_*' properties of the 'application.yml' file.
+ */
+public class ConnectionPool {
+    /**
+     * Application configuration.
+     * This class reads the configuration from the 'application.yml' file located in the resources' directory.
+     */
+    private static final AppConfig appConfig = new AppConfig();
+
+    /**
+     * URL for connecting to the database.
+     */
+    private static final String url = appConfig.getFullUrl();
+
+    /**
+     * Username for connecting to the database.
+     */
+    private static final String username = appConfig.getUsername();
+
+    /**
+     * Password for connecting to the database.
+     */
+    private static final String password = appConfig.getPassword();
+
+    /**
+     * The number of connections kept open even when they are idle.
+     */
+    private static final int minSize = Math.max(0, appConfig.getPoolMinSize());
+
+    /**
+     * The maximum number of connections handed out at the same time.
+     */
+    private static final int maxSize = Math.max(1, appConfig.getPoolMaxSize());
+
+    /**
+     * How long a caller waits for a free connection, in milliseconds.
+     */
+    private static final long connectionTimeoutMs = appConfig.getPoolConnectionTimeoutMs();
+
+    /**
+     * How long a connection may stay idle before it is closed, in milliseconds.
+     */
+    private static final long idleTimeoutMs = appConfig.getPoolIdleTimeoutMs();
+
+    /**
+     * Timeout of the connection validation, in seconds.
+     */
+    private static final int validationTimeoutSec = appConfig.getPoolValidationTimeoutSec();
+
+    /**
+     * How long a connection may be held before it is reported as a possible leak, in milliseconds.
+     */
+    private static final long leakDetectionThresholdMs = appConfig.getPoolLeakDetectionThresholdMs();
+
+    /**
+     * The driver properties of every connection: the credentials and the settings of the statement cache.
+     */
+    private static final Properties connectionProperties = new Properties();
+
+    static {
+        if (username != null) {
+            connectionProperties.setProperty("user", username);
+        }
+        if (password != null) {
+            connectionProperties.setProperty("password", password);
+        }
+        connectionProperties.setProperty("prepareThreshold", String.valueOf(appConfig.getPoolPrepareThreshold()));
+        connectionProperties.setProperty("preparedStatementCacheQueries", String.valueOf(appConfig.getPoolStatementCacheQueries()));
+        connectionProperties.setProperty("preparedStatementCacheSizeMiB", String.valueOf(appConfig.getPoolStatementCacheSizeMib()));
+    }
+
+    /**
+     * Connections returned to the pool within this time are handed out again without validation.
+     */
+    private static final long VALIDATION_BYPASS_MS = 500;
+
+    /**
+     * How often the housekeeping task runs, in milliseconds.
+     */
+    private static final long HOUSEKEEPING_PERIOD_MS = 10_000;
+
+    /**
+     * Idle connections. The most recently used connection is at the head of the deque,
+     * so rarely used connections collect at the tail and expire.
+     */
+    private static final BlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+
+    /**
+     * Connections currently handed out to callers.
+     */
+    private static final Set<PooledConnection> borrowed = ConcurrentHashMap.newKeySet();
+
+    /**
+     * One permit for every connection that may be handed out.
+     */
+    private static final Semaphore permits = new Semaphore(maxSize, true);
+
+    /**
+     * The number of physical connections that are currently open.
+     */
+    private static final AtomicInteger totalConnections = new AtomicInteger();
+
+    /**
+     * The number of connections handed out since the start of the application.
+     */
+    private static final AtomicLong borrowCount = new AtomicLong();
+
+    /**
+     * The total time callers spent waiting for a connection, in nanoseconds.
+     */
+    private static final AtomicLong totalWaitNanos = new AtomicLong();
+
+    /**
+     * The longest time a caller spent waiting for a connection, in nanoseconds.
+     */
+    private static final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * The number of callers that gave up waiting for a connection.
+     */
+    private static final AtomicLong timeoutCount = new AtomicLong();
+
+    /**
+     * The number of connections reported as possible leaks.
+     */
+    private static final AtomicLong leakCount = new AtomicLong();
+
+    /**
+     * Closes expired idle connections, keeps the minimum number of connections open
+     * and reports connections that are held for too long.
+     */
+    private static final ScheduledExecutorService housekeeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    static {
+        housekeeper.scheduleWithFixedDelay(ConnectionPool::houseKeeping, 0, HOUSEKEEPING_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Takes a connection from the pool, opening a new one if no idle connection is available.
+     * The connection must be closed by the caller, which returns it to the pool.
+     *
+     * @return a connection to the application database.
+     * @throws SQLException if no connection could be obtained within the configured timeout.
+     */
+    public static Connection getConnection() throws SQLException {
+        long waitStart = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(connectionTimeoutMs, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                throw new SQLTransientConnectionException("Connection is not available, request timed out after "
+                        + connectionTimeoutMs + "ms (" + getStatistics() + ")");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection", e);
+        }
+        long waited = System.nanoTime() - waitStart;
+        borrowCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waited);
+        maxWaitNanos.accumulateAndGet(waited, Math::max);
+
+        try {
+            PooledConnection pooled = takeIdleConnection();
+            if (pooled == null) {
+                pooled = openConnection();
+            }
+            pooled.borrowedAt = System.currentTimeMillis();
+            pooled.borrowTrace = leakDetectionThresholdMs > 0 ? new Exception("Connection borrowed here") : null;
+            pooled.leakReported = false;
+            borrowed.add(pooled);
+            return pooled.newHandle();
+        }
+        catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * @return the number of connections currently handed out to callers.
+     */
+    public static int getActiveConnections() {
+        return borrowed.size();
+    }
+
+    /**
+     * @return the number of open connections waiting in the pool.
+     */
+    public static int getIdleConnections() {
+        return idle.size();
+    }
+
+    /**
+     * @return the number of open physical connections.
+     */
+    public static int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    /**
+     * @return the number of threads currently waiting for a connection.
+     */
+    public static int getThreadsAwaitingConnection() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * @return the number of connections handed out since the start of the application.
+     */
+    public static long getBorrowCount() {
+        return borrowCount.get();
+    }
+
+    /**
+     * @return the average time callers waited for a connection, in milliseconds.
+     */
+    public static double getAverageWaitMillis() {
+        long count = borrowCount.get();
+        return count == 0 ? 0 : totalWaitNanos.get() / 1_000_000.0 / count;
+    }
+
+    /**
+     * @return the longest time a caller waited for a connection, in milliseconds.
+     */
+    public static double getMaxWaitMillis() {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * @return the number of callers that gave up waiting for a connection.
+     */
+    public static long getTimeoutCount() {
+        return timeoutCount.get();
+    }
+
+    /**
+     * @return the number of connections reported as possible leaks.
+     */
+    public static long getLeakCount() {
+        return leakCount.get();
+    }
+
+    /**
+     * @return a short human-readable summary of the pool state.
+     */
+    public static String getStatistics() {
+        return String.format("total=%d, active=%d, idle=%d, waiting=%d, avgWait=%.3fms, maxWait=%.3fms, timeouts=%d, leaks=%d",
+                getTotalConnections(), getActiveConnections(), getIdleConnections(), getThreadsAwaitingConnection(),
+                getAverageWaitMillis(), getMaxWaitMillis(), getTimeoutCount(), getLeakCount());
+    }
+
+    /**
+     * Closes all idle connections and stops the housekeeping task.
+     * Connections still handed out are closed when they are returned.
+     */
+    public static void shutdown() {
+        housekeeper.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            closeConnection(pooled);
+        }
+    }
+
+    /**
+     * Takes the most recently used idle connection, discarding connections that are no longer valid.
+     *
+     * @return a valid idle connection, or null if there is none.
+     */
+    private static PooledConnection takeIdleConnection() {
+        PooledConnection pooled;
+        while ((pooled = idle.pollFirst()) != null) {
+            if (isValid(pooled)) {
+                return pooled;
+            }
+            closeConnection(pooled);
+        }
+        return null;
+    }
+
+    /**
+     * Checks a connection before it is handed out.
+     * Connections returned to the pool a moment ago are trusted without a round trip to the database.
+     *
+     * @param pooled the connection to check.
+     * @return true if the connection can be used.
+     */
+    private static boolean isValid(PooledConnection pooled) {
+        if (System.currentTimeMillis() - pooled.lastUsedAt < VALIDATION_BYPASS_MS) {
+            return true;
+        }
+        try {
+            return pooled.connection.isValid(validationTimeoutSec);
+        }
+        catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Opens a new physical connection to the database.
+     *
+     * @return the new pooled connection.
+     * @throws SQLException if the connection could not be opened.
+     */
+    private static PooledConnection openConnection() throws SQLException {
+        Connection connection = DriverManager.getConnection(url, connectionProperties);
+        totalConnections.incrementAndGet();
+        return new PooledConnection(connection);
+    }
+
+    /**
+     * Closes a physical connection and removes it from the pool.
+     *
+     * @param pooled the connection to close.
+     */
+    private static void closeConnection(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        try {
+            pooled.connection.close();
+        }
+        catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns a connection to the pool after the caller has closed it.
+     * Uncommitted work is rolled back and auto-commit is restored,
+     * so the next caller always gets a connection in its default state.
+     *
+     * @param pooled the returned connection.
+     */
+    private static void release(PooledConnection pooled) {
+        borrowed.remove(pooled);
+        try {
+            if (!pooled.connection.getAutoCommit()) {
+                pooled.connection.rollback();
+                pooled.connection.setAutoCommit(true);
+            }
+            if (pooled.connection.isReadOnly()) {
+                pooled.connection.setReadOnly(false);
+            }
+            pooled.lastUsedAt = System.currentTimeMillis();
+            if (housekeeper.isShutdown()) {
+                closeConnection(pooled);
+            }
+            else {
+                idle.offerFirst(pooled);
+            }
+        }
+        catch (SQLException e) {
+            closeConnection(pooled);
+        }
+        finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Periodic maintenance of the pool.
+     */
+    private static void houseKeeping() {
+        long now = System.currentTimeMillis();
+
+        // Closing connections that have been idle for too long, oldest first
+        if (idleTimeoutMs > 0) {
+            PooledConnection oldest;
+            while (totalConnections.get() > minSize
+                    && (oldest = idle.peekLast()) != null
+                    && now - oldest.lastUsedAt > idleTimeoutMs) {
+                if (idle.removeLastOccurrence(oldest)) {
+                    closeConnection(oldest);
+                }
+            }
+        }
+
+        // Keeping the minimum number of connections open
+        while (totalConnections.get() < minSize && permits.tryAcquire()) {
+            try {
+                PooledConnection pooled = openConnection();
+                pooled.lastUsedAt = System.currentTimeMillis();
+                idle.offerLast(pooled);
+            }
+            catch (SQLException e) {
+                e.printStackTrace();
+                break;
+            }
+            finally {
+                permits.release();
+            }
+        }
+
+        // Reporting connections that are held for too long
+        if (leakDetectionThresholdMs > 0) {
+            for (PooledConnection pooled : borrowed) {
+                if (!pooled.leakReported && now - pooled.borrowedAt > leakDetectionThresholdMs) {
+                    pooled.leakReported = true;
+                    leakCount.incrementAndGet();
+                    System.out.println("Connection leak detection triggered: connection is held for more than "
+                            + leakDetectionThresholdMs + "ms");
+                    if (pooled.borrowTrace != null) {
+                        pooled.borrowTrace.printStackTrace();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A physical connection together with the bookkeeping of the pool.
+     */
+    private static class PooledConnection {
+        private final Connection connection;
+        private volatile long lastUsedAt;
+        private volatile long borrowedAt;
+        private volatile Exception borrowTrace;
+        private volatile boolean leakReported;
+
+        private PooledConnection(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * Creates the object handed out to a caller.
+         * Closing it returns the physical connection to the pool,
+         * and a handle that has been closed cannot be used any more.
+         *
+         * @return a proxy of the physical connection.
+         */
+        private Connection newHandle() {
+            return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new ConnectionHandle(this));
+        }
+    }
+
+    /**
+     * Invocation handler of the connections handed out by the pool.
+     */
+    private static class ConnectionHandle implements InvocationHandler {
+        private final PooledConnection pooled;
+        private volatile boolean closed;
+
+        private ConnectionHandle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    synchronized (this) {
+                        if (!closed) {
+                            closed = true;
+                            release(pooled);
+                        }
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return closed || pooled.connection.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled" + pooled.connection;
+                }
+                default -> {
+                    if (closed) {
+                        throw new SQLException("Connection is closed");
+                    }
+                }
+            }
+            Object result;
+            try {
+                result = method.invoke(pooled.connection, args);
+            }
+            catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof PreparedStatement statement && method.getName().equals("prepareStatement")) {
+                return Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                        new Class<?>[]{PreparedStatement.class},
+                        new StatementHandle(statement, (String) args[0], (Connection) proxy));
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Invocation handler of the prepared statements created through the connections handed out by the pool.
+     * Every execution is timed and recorded in {@link StatementStatistics} under the SQL text of the statement.
+     */
+    private static class StatementHandle implements InvocationHandler {
+        private final PreparedStatement statement;
+        private final String sql;
+        private final Connection connection;
+
+        private StatementHandle(PreparedStatement statement, String sql, Connection connection) {
+            this.statement = statement;
+            this.sql = sql;
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "getConnection" -> {
+                    // The caller must not reach the physical connection past the pool
+                    return connection;
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return statement.toString();
+                }
+                case "executeQuery", "executeUpdate", "execute", "executeBatch", "executeLargeUpdate", "executeLargeBatch" -> {
+                    long start = System.nanoTime();
+                    boolean failed = true;
+                    try {
+                        Object result = method.invoke(statement, args);
+                        failed = false;
+                        return result;
+                    }
+                    catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    finally {
+                        StatementStatistics.record(sql, System.nanoTime() - start, failed);
+                    }
+                }
+                default -> {
+                }
+            }
+            try {
+                return method.invoke(statement, args);
+            }
+            catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
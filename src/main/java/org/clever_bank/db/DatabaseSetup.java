@@ -6,14 +6,443 @@ import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.List;
 
+/**
+ * Creates the database and brings its schema up to date.
+ * The schema is changed only by versioned migrations listed in {@link #MIGRATIONS},
+ * which are applied by {@link SchemaMigrator} in order of their versions.
+ * A migration that has been released must never be changed; a new change needs a new migration.
+ */
 public class DatabaseSetup {
     private static final AppConfig appConfig = new AppConfig();
     private static final String url = appConfig.getUrl();
-    private static final String fullUrl = appConfig.getFullUrl();
     private static final String dbName = appConfig.getDbName();
     private static final String username = appConfig.getUsername();
     private static final String password = appConfig.getPassword();
+
+    /**
+     * Creates the table of banks.
+     */
+    private static final String CREATE_BANKS_TABLE = "CREATE TABLE IF NOT EXISTS banks (" +
+            "id SERIAL PRIMARY KEY," +
+            "name VARCHAR UNIQUE NOT NULL" +
+            ")";
+
+    /**
+     * Seeds the banks.
+     */
+    private static final String ADD_BANKS_DATA = """
+            INSERT INTO banks (id, name)
+            VALUES
+            (1, 'Belarusbank'),
+            (2, 'Belinvestbank'),
+            (3, 'Clever-Bank'),
+            (4, 'БелВЭБ'),
+            (5, 'Технобанк')
+            ON CONFLICT (id) DO NOTHING;""";
+
+    /**
+     * Creates the table of customers.
+     */
+    private static final String CREATE_CUSTOMERS_TABLE = "CREATE TABLE IF NOT EXISTS customers (" +
+            "id SERIAL PRIMARY KEY," +
+            "name VARCHAR NOT NULL" +
+            ")";
+
+    /**
+     * Seeds the customers.
+     */
+    private static final String ADD_CUSTOMERS_DATA = """
+            INSERT INTO customers (id, name)
+            VALUES
+            (1, 'Кокотов Артём Семёнович'),
+            (2, 'Астахова Анна Андреевна'),
+            (3, 'Джесика Паркер'),
+            (4, 'Джо Смитт'),
+            (5, 'Сипукин Андрей Петрович'),
+            (6, 'Иванов Иван Иванович'),
+            (7, 'Петров Петр Петрович'),
+            (8, 'Сидоров Сидор Сидорович'),
+            (9, 'Смирнова Елена Александровна'),
+            (10, 'Кузнецова Ольга Владимировна'),
+            (11, 'Васильева Мария Ивановна'),
+            (12, 'Попов Алексей Петрович'),
+            (13, 'Новикова Екатерина Сергеевна'),
+            (14, 'Морозова Анастасия Александровна'),
+            (15, 'Федорова Елизавета Дмитриевна'),
+            (16, 'Михайлова Александра Игоревна'),
+            (17, 'Алексеева Виктория Владимировна'),
+            (18, 'Соколова Алина Алексеевна'),
+            (19, 'Волкова Евгения Андреевна'),
+            (20, 'Козлова Марина Сергеевна')
+            ON CONFLICT (id) DO NOTHING;""";
+
+    /**
+     * Creates the table of accounts.
+     */
+    private static final String CREATE_ACCOUNTS_TABLE = "CREATE TABLE IF NOT EXISTS accounts (" +
+            "id SERIAL PRIMARY KEY," +
+            "number VARCHAR," +
+            "balance NUMERIC," +
+            "currency VARCHAR NOT NULL," +
+            "open_date DATE," +
+            "id_bank INT REFERENCES banks(id)," +
+            "id_customer INT REFERENCES customers(id)," +
+            "interest_date DATE" +
+            ")";
+
+    /**
+     * Seeds the accounts.
+     */
+    private static final String ADD_ACCOUNTS_DATA = """
+            INSERT INTO accounts (id, number, balance, currency, open_date, id_bank, id_customer, interest_date)
+            VALUES
+            (1, 'AS12 ASDG 1200 2132 ASDA 353A 213W', 100.50, 'BYN', '2019-08-05', 1, 1, '2023-08-31'),
+            (2, '7FR8 AW34 R765 123Q NFYR 6T45 9I87', 2000.00, 'USD', '2020-08-05', 2, 2, '2023-08-31'),
+            (3, 'G5H6 8J9K L0P1 Q2W3 E4R5 T6Y7 U8I9', 500.25, 'BYN', '2017-03-15', 3, 3, '2023-08-31'),
+            (4, 'B2N3 M4K5 J6H7 G8F9 D0S1 A2Q3 W4E5', 1500.75, 'USD', '2018-06-20', 4, 4, '2023-08-31'),
+            (5, 'Z9X8 C7V6 B5N4 M3K2 L1J0 H9G8 F7D6', 250.00, 'BYN', '2021-01-10', 5, 5, '2023-08-31'),
+            (6, 'QW12 ER34 TY56 UI78 OP90 AS12 DF34', 3000.00, 'USD', '2019-11-25', 1, 6, '2023-08-31'),
+            (7, 'GH56 JK78 LM90 ZX12 CV34 BN56 MQ78', 800.50, 'BYN', '2022-04-17', 2, 7, '2023-08-31'),
+            (8, 'PL12 OK34 IU56 YH78 TG90 RF12 ED34', 700.25, 'USD', '2017-09-08', 3, 8, '2023-08-31'),
+            (9, 'WS56 XC78 VB90 NM12 LK34 JH56 GY78', 1200.75, 'BYN', '2020-12-01', 4, 9, '2023-08-31'),
+            (10, 'UI12 OP34 AS56 DF78 GH90 JK12 LM34', 50.00, 'USD', '2018-03-27', 5, 10, '2023-08-31'),
+            (11, 'ZX56 CV78 BN90 MQ12 WS34 XC56 VB78', 1800.50, 'BYN', '2021-06-13', 1, 11, '2023-08-31'),
+            (12, 'NM12 LK34 JH56 GY78 UI12 OP34 AS56', 900.25, 'USD', '2019-08-15', 2, 12, '2023-08-31'),
+            (13, 'DF78 GH90 JK12 LM34 ZX56 CV78 BN90', 300.75, 'BYN', '2022-03-22', 3, 13, '2023-08-31'),
+            (14, 'MQ12 WS34 XC56 VB78 NM12 LK34 JH56', 600.00, 'USD', '2017-08-15', 4, 14, '2023-08-31'),
+            (15, 'GY78 UI12 OP34 AS56 DF78 GH90 JK12', 1500.50, 'BYN', '2020-11-08', 5, 15, '2023-08-31'),
+            (16, 'LM34 ZX56 CV78 BN90 MQ12 WS34 XC56', 400.25, 'USD', '2018-02-01', 1, 16, '2023-08-31'),
+            (17, 'VB78 NM12 LK34 JH56 GY78 UI12 OP34', 800.75, 'BYN', '2021-04-18', 2, 17, '2023-08-31'),
+            (18, 'AS56 DF78 GH90 JK12 LM34 ZX56 CV78', 1000.00, 'USD', '2019-09-10', 3, 18, '2023-08-31'),
+            (19, 'BN90 MQ12 WS34 XC56 VB78 NM12 LK34', 250.50, 'BYN', '2022-12-05', 4, 19, '2023-08-31'),
+            (20, 'JH56 GY78 UI12 OP34 AS56 DF78 GH90', 1800.25, 'USD', '2016-02-03', 5, 20, '2023-08-31'),
+            (21, 'XC56 VB78 NM12 LK34 JH56 GY78 UI12', 700.00, 'BYN', '2021-09-20', 1, 1, '2023-08-31'),
+            (22, 'OP34 AS56 DF78 GH90 JK12 LM34 ZX56', 1200.50, 'USD', '2018-12-13', 2, 2, '2023-08-31'),
+            (23, 'CV78 BN90 MQ12 WS34 XC56 VB78 NM12', 300.25, 'BYN', '2021-03-01', 3, 3, '2023-08-31'),
+            (24, 'AS12 DF34 GH56 JK78 LM90 ZX12 CV34', 600.75, 'USD', '2019-07-18', 4, 4, '2023-08-31'),
+            (25, 'BN56 MQ78 WS56 XC78 VB90 NM12 LK34', 1500.00, 'BYN', '2022-09-25', 5, 5, '2023-08-31'),
+            (26, 'GH90 JK12 LM34 ZX56 CV78 BN90 MQ12', 400.50, 'USD', '2020-09-20', 1, 6, '2023-08-31'),
+            (27, 'WS34 XC56 VB78 NM12 LK34 JH56 GY78', 800.25, 'BYN', '2023-01-10', 2, 7, '2023-08-31'),
+            (28, 'UI12 OP34 AS56 DF78 GH90 JK12 LM34', 1000.75, 'USD', '2019-11-25', 3, 8, '2023-08-31'),
+            (29, 'ZX56 CV78 BN90 MQ12 WS34 XC56 VB78', 250.00, 'BYN', '2022-04-17', 4, 9, '2023-08-31'),
+            (30, 'NM12 LK34 JH56 GY78 UI12 OP34 AS56', 1800.50, 'USD', '2017-09-08', 5, 10, '2023-08-31'),
+            (31, 'DF78 GH90 JK12 LM34 ZX56 CV78 BN90', 700.25, 'BYN', '2020-12-01', 1, 11, '2023-08-31'),
+            (32, 'MQ12 WS34 XC56 VB78 NM12 LK34 JH56', 1200.75, 'USD', '2018-03-27', 2, 12, '2023-08-31'),
+            (33, 'GY78 UI12 OP34 AS56 DF78 GH90 JK12', 300.00, 'BYN', '2021-06-13', 3, 13, '2023-08-31'),
+            (34, 'LM34 ZX56 CV78 BN90 MQ12 WS34 XC56', 600.50, 'USD', '2019-08-15', 4, 14, '2023-08-31'),
+            (35, 'VB78 NM12 LK34 JH56 GY78 UI12 OP34', 1500.25, 'BYN', '2022-03-22', 5, 15, '2023-08-31'),
+            (36, 'AS56 DF78 GH90 JK12 LM34 ZX56 CV78', 400.75, 'USD', '2017-08-15', 1, 16, '2023-08-31'),
+            (37, 'BN90 MQ12 WS34 XC56 VB78 NM12 LK34', 800.00, 'BYN', '2020-11-08', 2, 17, '2023-08-31'),
+            (38, 'JH56 GY78 UI12 OP34 AS56 DF78 GH90', 1000.50, 'USD', '2018-02-01', 3, 18, '2023-08-31'),
+            (39, 'XC56 VB78 NM12 LK34 JH56 GY78 UI12', 250.25, 'BYN', '2021-04-18', 4, 19, '2023-08-31'),
+            (40, 'OP34 AS56 DF78 GH90 JK12 LM34 ZX56', 1800.00, 'USD', '2019-09-10', 5, 20, '2023-08-31')
+            ON CONFLICT (id) DO NOTHING;""";
+
+    /**
+     * Creates the table of transaction types.
+     */
+    private static final String CREATE_TYPES_TABLE = "CREATE TABLE IF NOT EXISTS types (" +
+            "id SERIAL PRIMARY KEY," +
+            "name VARCHAR" +
+            ")";
+
+    /**
+     * Seeds the transaction types.
+     */
+    private static final String ADD_TYPES_DATA = """
+            INSERT INTO types (id, name)
+            VALUES
+            (1, 'Депозит'),
+            (2, 'Снятие средств'),
+            (3, 'Перевод')
+            -- Если id уже существует, то ничего не делать
+            ON CONFLICT (id) DO NOTHING;""";
+
+    /**
+     * Creates the table of transactions.
+     */
+    private static final String CREATE_TRANSACTIONS_TABLE = "CREATE TABLE IF NOT EXISTS transactions (" +
+            "id SERIAL PRIMARY KEY," +
+            "date TIMESTAMPTZ," +
+            "money NUMERIC," +
+            "id_type INT REFERENCES types(id)," +
+            "id_sender INT REFERENCES accounts(id)," +
+            "id_recipient INT REFERENCES accounts(id)" +
+            ")";
+
+    /**
+     * Creates the table of daily totals of every account: the money received, the money spent
+     * and the number of transactions of one UTC day.
+     */
+    private static final String CREATE_ACCOUNT_DAILY_BALANCES_TABLE = "CREATE TABLE IF NOT EXISTS account_daily_balances (" +
+            "id_account INT REFERENCES accounts(id) ON DELETE CASCADE," +
+            "day DATE," +
+            "total_in NUMERIC NOT NULL DEFAULT 0," +
+            "total_out NUMERIC NOT NULL DEFAULT 0," +
+            "operations BIGINT NOT NULL DEFAULT 0," +
+            "PRIMARY KEY (id_account, day)" +
+            ")";
+
+    /**
+     * Creates the single-row table holding the first day that is not compacted into daily balances yet.
+     */
+    private static final String CREATE_DAILY_BALANCES_WATERMARK_TABLE = "CREATE TABLE IF NOT EXISTS daily_balances_watermark (" +
+            "id INT PRIMARY KEY CHECK (id = 1)," +
+            "compacted_until DATE" +
+            ")";
+
+    /**
+     * Creates an index on the account number, unique if the existing data allows it.
+     * The seed data of the first migration contains repeated account numbers,
+     * and a unique index cannot be built over them; a plain index is created instead and a warning is raised.
+     */
+    private static final String CREATE_ACCOUNTS_NUMBER_INDEX = """
+            DO $$
+            BEGIN
+                IF EXISTS (SELECT number FROM accounts GROUP BY number HAVING COUNT(*) > 1) THEN
+                    RAISE WARNING 'accounts.number has duplicate values, creating a non-unique index';
+                    CREATE INDEX IF NOT EXISTS accounts_number_idx ON accounts (number);
+                ELSE
+                    CREATE UNIQUE INDEX IF NOT EXISTS accounts_number_key ON accounts (number);
+                END IF;
+            END
+            $$;""";
+
+    /**
+     * Creates the table of exchange rates: the amount of the bought currency received for one unit of the sold one.
+     */
+    private static final String CREATE_EXCHANGE_RATES_TABLE = "CREATE TABLE IF NOT EXISTS exchange_rates (" +
+            "currency_from VARCHAR NOT NULL," +
+            "currency_to VARCHAR NOT NULL," +
+            "rate NUMERIC NOT NULL CHECK (rate > 0)," +
+            "PRIMARY KEY (currency_from, currency_to)" +
+            ")";
+
+    /**
+     * Adds the rates between the currencies of the seed accounts.
+     * The rates of the two directions differ by the spread of the bank.
+     */
+    private static final String ADD_EXCHANGE_RATES_DATA = "INSERT INTO exchange_rates (currency_from, currency_to, rate) " +
+            "VALUES ('USD', 'BYN', 3.2400), ('BYN', 'USD', 0.3050) " +
+            "ON CONFLICT (currency_from, currency_to) DO NOTHING";
+
+    /**
+     * Increments the version of an account on every update, whoever makes it,
+     * so a cached account can be checked against the database by comparing versions.
+     */
+    private static final String CREATE_ACCOUNTS_VERSION_FUNCTION = """
+            CREATE OR REPLACE FUNCTION accounts_increment_version() RETURNS trigger AS $$
+            BEGIN
+                NEW.version := OLD.version + 1;
+                RETURN NEW;
+            END
+            $$ LANGUAGE plpgsql;""";
+
+    /**
+     * Creates the table of transactions partitioned by the month of the date.
+     * The columns are in the order of the unpartitioned table, and the IDs keep coming from its sequence.
+     * The primary key of a partitioned table has to contain the partition key, so it is the ID and the date.
+     */
+    private static final String CREATE_PARTITIONED_TRANSACTIONS_TABLE = "CREATE TABLE transactions (" +
+            "id INT NOT NULL DEFAULT nextval('transactions_id_seq')," +
+            "date TIMESTAMPTZ NOT NULL," +
+            "money NUMERIC," +
+            "id_type INT REFERENCES types(id)," +
+            "id_sender INT REFERENCES accounts(id)," +
+            "id_recipient INT REFERENCES accounts(id)," +
+            "credit_money NUMERIC," +
+            "PRIMARY KEY (id, date)" +
+            ") PARTITION BY RANGE (date)";
+
+    /**
+     * Creates the partition of transactions of one UTC month if it does not exist.
+     * Transactions of the month that are already in the default partition, for example imported ones,
+     * are moved to the new partition before it is attached.
+     * Returns the name of the created partition, or NULL if it already exists.
+     */
+    private static final String CREATE_TRANSACTIONS_PARTITION_FUNCTION = """
+            CREATE OR REPLACE FUNCTION create_transactions_partition(month DATE) RETURNS TEXT AS $$
+            DECLARE
+                first_day DATE := date_trunc('month', month)::date;
+                partition_name TEXT := 'transactions_' || to_char(first_day, 'YYYY_MM');
+                lower_bound TIMESTAMPTZ := first_day::timestamp AT TIME ZONE 'UTC';
+                upper_bound TIMESTAMPTZ := (first_day + INTERVAL '1 month') AT TIME ZONE 'UTC';
+            BEGIN
+                IF to_regclass(partition_name) IS NOT NULL THEN
+                    RETURN NULL;
+                END IF;
+                EXECUTE format('CREATE TABLE %I (LIKE transactions)', partition_name);
+                EXECUTE format('WITH moved AS (DELETE FROM transactions_default WHERE date >= %L AND date < %L RETURNING *) '
+                               'INSERT INTO %I SELECT * FROM moved', lower_bound, upper_bound, partition_name);
+                EXECUTE format('ALTER TABLE transactions ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                               partition_name, lower_bound, upper_bound);
+                RETURN partition_name;
+            END
+            $$ LANGUAGE plpgsql;""";
+
+    /**
+     * Creates the monthly partitions from the month of the oldest transaction up to three months ahead.
+     */
+    private static final String CREATE_INITIAL_TRANSACTIONS_PARTITIONS = "SELECT create_transactions_partition(month::date) " +
+            "FROM generate_series(" +
+            "date_trunc('month', LEAST((SELECT MIN(date) FROM transactions_unpartitioned), now()) AT TIME ZONE 'UTC'), " +
+            "date_trunc('month', GREATEST((SELECT MAX(date) FROM transactions_unpartitioned), now()) AT TIME ZONE 'UTC') " +
+            "+ INTERVAL '3 months', " +
+            "INTERVAL '1 month') AS month";
+
+    /**
+     * Creates the table of the keys of imported CSV rows, so that a file imported again is not applied twice.
+     */
+    private static final String CREATE_TRANSACTION_IMPORTS_TABLE = "CREATE TABLE IF NOT EXISTS transaction_imports (" +
+            "import_key UUID PRIMARY KEY," +
+            "imported_at TIMESTAMPTZ NOT NULL DEFAULT now()" +
+            ")";
+
+    /**
+     * Creates the single-row table holding the first month that is not archived yet.
+     */
+    private static final String CREATE_TRANSACTIONS_ARCHIVE_BOUNDARY_TABLE = "CREATE TABLE IF NOT EXISTS transactions_archive_boundary (" +
+            "id INT PRIMARY KEY CHECK (id = 1)," +
+            "archived_until DATE" +
+            ")";
+
+    /**
+     * Sets the archive boundary after the latest month already moved to the archive schema.
+     */
+    private static final String ADD_TRANSACTIONS_ARCHIVE_BOUNDARY_DATA = "INSERT INTO transactions_archive_boundary (id, archived_until) " +
+            "SELECT 1, (MAX(to_date(substring(c.relname FROM 14 FOR 7), 'YYYY_MM')) + INTERVAL '1 month')::date " +
+            "FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace " +
+            "WHERE n.nspname = 'transactions_archive' AND c.relname ~ '^transactions_[0-9]{4}_[0-9]{2}$' " +
+            "ON CONFLICT (id) DO NOTHING";
+
+    /**
+     * Replaces the function creating the partition of a month: the partition is looked up and created
+     * in the schema of the transactions table, so an archived table of the same name is not mistaken for it,
+     * and no partition is created for a month before the archive boundary.
+     */
+    private static final String CREATE_BOUNDED_TRANSACTIONS_PARTITION_FUNCTION = """
+            CREATE OR REPLACE FUNCTION create_transactions_partition(month DATE) RETURNS TEXT AS $$
+            DECLARE
+                first_day DATE := date_trunc('month', month)::date;
+                partition_schema TEXT := (SELECT n.nspname FROM pg_class c JOIN pg_namespace n ON n.oid = c.relnamespace
+                                          WHERE c.oid = 'transactions'::regclass);
+                partition_name TEXT := 'transactions_' || to_char(first_day, 'YYYY_MM');
+                lower_bound TIMESTAMPTZ := first_day::timestamp AT TIME ZONE 'UTC';
+                upper_bound TIMESTAMPTZ := (first_day + INTERVAL '1 month') AT TIME ZONE 'UTC';
+            BEGIN
+                IF first_day < (SELECT archived_until FROM transactions_archive_boundary WHERE id = 1) THEN
+                    RAISE EXCEPTION 'The transactions of % are archived', to_char(first_day, 'YYYY-MM');
+                END IF;
+                IF to_regclass(format('%I.%I', partition_schema, partition_name)) IS NOT NULL THEN
+                    RETURN NULL;
+                END IF;
+                EXECUTE format('CREATE TABLE %I.%I (LIKE transactions)', partition_schema, partition_name);
+                EXECUTE format('WITH moved AS (DELETE FROM transactions_default WHERE date >= %L AND date < %L RETURNING *) '
+                               'INSERT INTO %I.%I SELECT * FROM moved', lower_bound, upper_bound, partition_schema, partition_name);
+                EXECUTE format('ALTER TABLE transactions ATTACH PARTITION %I.%I FOR VALUES FROM (%L) TO (%L)',
+                               partition_schema, partition_name, lower_bound, upper_bound);
+                RETURN partition_name;
+            END
+            $$ LANGUAGE plpgsql;""";
+
+    /**
+     * Gives every account whose number repeats the number of an account with a lower ID a new unique number.
+     * The last group of four characters is replaced by the hexadecimal ID of the account,
+     * incremented until the number is not used.
+     */
+    private static final String DEDUPLICATE_ACCOUNT_NUMBERS = """
+            DO $$
+            DECLARE
+                duplicate RECORD;
+                candidate TEXT;
+                attempt INT;
+            BEGIN
+                FOR duplicate IN SELECT id, number FROM (
+                        SELECT id, number, row_number() OVER (PARTITION BY number ORDER BY id) AS position FROM accounts
+                    ) numbered WHERE position > 1 ORDER BY id LOOP
+                    attempt := 0;
+                    LOOP
+                        candidate := left(duplicate.number, GREATEST(length(duplicate.number) - 4, 0))
+                                || upper(right(lpad(to_hex(duplicate.id + attempt), 4, '0'), 4));
+                        EXIT WHEN NOT EXISTS (SELECT 1 FROM accounts WHERE number = candidate);
+                        attempt := attempt + 1;
+                    END LOOP;
+                    RAISE NOTICE 'Account % renumbered from % to %', duplicate.id, duplicate.number, candidate;
+                    UPDATE accounts SET number = candidate WHERE id = duplicate.id;
+                END LOOP;
+            END
+            $$;""";
+
+    /**
+     * All migrations of the schema in order of their versions.
+     */
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Initial schema and seed data", List.of(
+                    CREATE_BANKS_TABLE,
+                    ADD_BANKS_DATA,
+                    CREATE_CUSTOMERS_TABLE,
+                    ADD_CUSTOMERS_DATA,
+                    CREATE_ACCOUNTS_TABLE,
+                    ADD_ACCOUNTS_DATA,
+                    CREATE_TYPES_TABLE,
+                    ADD_TYPES_DATA,
+                    CREATE_TRANSACTIONS_TABLE)),
+            new Migration(2, "Indexes of transactions by sender, recipient and date", List.of(
+                    "CREATE INDEX IF NOT EXISTS transactions_sender_date_idx ON transactions (id_sender, date)",
+                    "CREATE INDEX IF NOT EXISTS transactions_recipient_date_idx ON transactions (id_recipient, date)")),
+            new Migration(3, "Index of accounts by number", List.of(
+                    CREATE_ACCOUNTS_NUMBER_INDEX)),
+            new Migration(4, "Interest transaction type and index of accounts by interest date", List.of(
+                    "INSERT INTO types (id, name) VALUES (4, 'Начисление процентов') ON CONFLICT (id) DO NOTHING",
+                    "CREATE INDEX IF NOT EXISTS accounts_interest_date_idx ON accounts (interest_date)")),
+            new Migration(5, "Daily balance snapshots of accounts", List.of(
+                    CREATE_ACCOUNT_DAILY_BALANCES_TABLE,
+                    CREATE_DAILY_BALANCES_WATERMARK_TABLE,
+                    "INSERT INTO daily_balances_watermark (id, compacted_until) VALUES (1, NULL) ON CONFLICT (id) DO NOTHING",
+                    "CREATE INDEX IF NOT EXISTS transactions_date_idx ON transactions (date)")),
+            new Migration(6, "Version of accounts incremented on every update", List.of(
+                    "ALTER TABLE accounts ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0",
+                    CREATE_ACCOUNTS_VERSION_FUNCTION,
+                    "DROP TRIGGER IF EXISTS accounts_version_trigger ON accounts",
+                    "CREATE TRIGGER accounts_version_trigger BEFORE UPDATE ON accounts " +
+                            "FOR EACH ROW EXECUTE FUNCTION accounts_increment_version()")),
+            new Migration(7, "Exchange rates and credited money of transfers between currencies", List.of(
+                    CREATE_EXCHANGE_RATES_TABLE,
+                    ADD_EXCHANGE_RATES_DATA,
+                    "ALTER TABLE transactions ADD COLUMN IF NOT EXISTS credit_money NUMERIC")),
+            new Migration(8, "Transactions partitioned by month", List.of(
+                    "CREATE SCHEMA IF NOT EXISTS transactions_archive",
+                    "ALTER TABLE transactions RENAME TO transactions_unpartitioned",
+                    "ALTER SEQUENCE transactions_id_seq OWNED BY NONE",
+                    CREATE_PARTITIONED_TRANSACTIONS_TABLE,
+                    "CREATE TABLE transactions_default PARTITION OF transactions DEFAULT",
+                    CREATE_TRANSACTIONS_PARTITION_FUNCTION,
+                    CREATE_INITIAL_TRANSACTIONS_PARTITIONS,
+                    "INSERT INTO transactions (id, date, money, id_type, id_sender, id_recipient, credit_money) " +
+                            "SELECT id, date, money, id_type, id_sender, id_recipient, credit_money FROM transactions_unpartitioned",
+                    "DROP TABLE transactions_unpartitioned",
+                    "ALTER SEQUENCE transactions_id_seq OWNED BY transactions.id",
+                    "CREATE INDEX transactions_sender_date_idx ON transactions (id_sender, date)",
+                    "CREATE INDEX transactions_recipient_date_idx ON transactions (id_recipient, date)",
+                    "CREATE INDEX transactions_date_idx ON transactions (date)",
+                    "ANALYZE transactions")),
+            new Migration(9, "Keys of imported transactions", List.of(
+                    CREATE_TRANSACTION_IMPORTS_TABLE)),
+            new Migration(10, "Archive boundary of transactions", List.of(
+                    CREATE_TRANSACTIONS_ARCHIVE_BOUNDARY_TABLE,
+                    ADD_TRANSACTIONS_ARCHIVE_BOUNDARY_DATA,
+                    CREATE_BOUNDED_TRANSACTIONS_PARTITION_FUNCTION)),
+            new Migration(11, "Unique account numbers", List.of(
+                    DEDUPLICATE_ACCOUNT_NUMBERS,
+                    "DROP INDEX IF EXISTS accounts_number_idx",
+                    "CREATE UNIQUE INDEX IF NOT EXISTS accounts_number_key ON accounts (number)"))
+    );
+
+    /**
+     * Creates the database if it does not exist and applies all pending migrations.
+     */
     public static void setupDatabase() {
 
         try (Connection connection = DriverManager.getConnection(url, username, password);
@@ -26,146 +455,8 @@ public class DatabaseSetup {
             System.out.println(dbName);
         }
 
-        try (Connection connection = DriverManager.getConnection(fullUrl, username, password);
-             Statement statement = connection.createStatement()) {
-
-            // Создание таблицы banks
-            String createBanksTable = "CREATE TABLE IF NOT EXISTS banks (" +
-                    "id SERIAL PRIMARY KEY," +
-                    "name VARCHAR UNIQUE NOT NULL" +
-                    ")";
-            statement.executeUpdate(createBanksTable);
-
-            String addBanksData = """
-                    INSERT INTO banks (id, name)
-                    VALUES
-                    (1, 'Belarusbank'),
-                    (2, 'Belinvestbank'),
-                    (3, 'Clever-Bank'),
-                    (4, 'БелВЭБ'),
-                    (5, 'Технобанк')
-                    ON CONFLICT (id) DO NOTHING;""";
-            statement.executeUpdate(addBanksData);
-
-            // Создание таблицы customers
-            String createCustomersTable = "CREATE TABLE IF NOT EXISTS customers (" +
-                    "id SERIAL PRIMARY KEY," +
-                    "name VARCHAR NOT NULL" +
-                    ")";
-            statement.executeUpdate(createCustomersTable);
-
-            String addCustomersData = """
-                    INSERT INTO customers (id, name)
-                    VALUES
-                    (1, 'Кокотов Артём Семёнович'),
-                    (2, 'Астахова Анна Андреевна'),
-                    (3, 'Джесика Паркер'),
-                    (4, 'Джо Смитт'),
-                    (5, 'Сипукин Андрей Петрович'),
-                    (6, 'Иванов Иван Иванович'),
-                    (7, 'Петров Петр Петрович'),
-                    (8, 'Сидоров Сидор Сидорович'),
-                    (9, 'Смирнова Елена Александровна'),
-                    (10, 'Кузнецова Ольга Владимировна'),
-                    (11, 'Васильева Мария Ивановна'),
-                    (12, 'Попов Алексей Петрович'),
-                    (13, 'Новикова Екатерина Сергеевна'),
-                    (14, 'Морозова Анастасия Александровна'),
-                    (15, 'Федорова Елизавета Дмитриевна'),
-                    (16, 'Михайлова Александра Игоревна'),
-                    (17, 'Алексеева Виктория Владимировна'),
-                    (18, 'Соколова Алина Алексеевна'),
-                    (19, 'Волкова Евгения Андреевна'),
-                    (20, 'Козлова Марина Сергеевна')
-                    ON CONFLICT (id) DO NOTHING;""";
-            statement.executeUpdate(addCustomersData);
-
-            // Создание таблицы accounts
-            String createAccountsTable = "CREATE TABLE IF NOT EXISTS accounts (" +
-                    "id SERIAL PRIMARY KEY," +
-                    "number VARCHAR," +
-                    "balance NUMERIC," +
-                    "currency VARCHAR NOT NULL," +
-                    "open_date DATE," +
-                    "id_bank INT REFERENCES banks(id)," +
-                    "id_customer INT REFERENCES customers(id)," +
-                    "interest_date DATE" +
-                    ")";
-            statement.executeUpdate(createAccountsTable);
-            String addAccountsData = """
-                    INSERT INTO accounts (id, number, balance, currency, open_date, id_bank, id_customer, interest_date)
-                    VALUES
-                    (1, 'AS12 ASDG 1200 2132 ASDA 353A 213W', 100.50, 'BYN', '2019-08-05', 1, 1, '2023-08-31'),
-                    (2, '7FR8 AW34 R765 123Q NFYR 6T45 9I87', 2000.00, 'USD', '2020-08-05', 2, 2, '2023-08-31'),
-                    (3, 'G5H6 8J9K L0P1 Q2W3 E4R5 T6Y7 U8I9', 500.25, 'BYN', '2017-03-15', 3, 3, '2023-08-31'),
-                    (4, 'B2N3 M4K5 J6H7 G8F9 D0S1 A2Q3 W4E5', 1500.75, 'USD', '2018-06-20', 4, 4, '2023-08-31'),
-                    (5, 'Z9X8 C7V6 B5N4 M3K2 L1J0 H9G8 F7D6', 250.00, 'BYN', '2021-01-10', 5, 5, '2023-08-31'),
-                    (6, 'QW12 ER34 TY56 UI78 OP90 AS12 DF34', 3000.00, 'USD', '2019-11-25', 1, 6, '2023-08-31'),
-                    (7, 'GH56 JK78 LM90 ZX12 CV34 BN56 MQ78', 800.50, 'BYN', '2022-04-17', 2, 7, '2023-08-31'),
-                    (8, 'PL12 OK34 IU56 YH78 TG90 RF12 ED34', 700.25, 'USD', '2017-09-08', 3, 8, '2023-08-31'),
-                    (9, 'WS56 XC78 VB90 NM12 LK34 JH56 GY78', 1200.75, 'BYN', '2020-12-01', 4, 9, '2023-08-31'),
-                    (10, 'UI12 OP34 AS56 DF78 GH90 JK12 LM34', 50.00, 'USD', '2018-03-27', 5, 10, '2023-08-31'),
-                    (11, 'ZX56 CV78 BN90 MQ12 WS34 XC56 VB78', 1800.50, 'BYN', '2021-06-13', 1, 11, '2023-08-31'),
-                    (12, 'NM12 LK34 JH56 GY78 UI12 OP34 AS56', 900.25, 'USD', '2019-08-15', 2, 12, '2023-08-31'),
-                    (13, 'DF78 GH90 JK12 LM34 ZX56 CV78 BN90', 300.75, 'BYN', '2022-03-22', 3, 13, '2023-08-31'),
-                    (14, 'MQ12 WS34 XC56 VB78 NM12 LK34 JH56', 600.00, 'USD', '2017-08-15', 4, 14, '2023-08-31'),
-                    (15, 'GY78 UI12 OP34 AS56 DF78 GH90 JK12', 1500.50, 'BYN', '2020-11-08', 5, 15, '2023-08-31'),
-                    (16, 'LM34 ZX56 CV78 BN90 MQ12 WS34 XC56', 400.25, 'USD', '2018-02-01', 1, 16, '2023-08-31'),
-                    (17, 'VB78 NM12 LK34 JH56 GY78 UI12 OP34', 800.75, 'BYN', '2021-04-18', 2, 17, '2023-08-31'),
-                    (18, 'AS56 DF78 GH90 JK12 LM34 ZX56 CV78', 1000.00, 'USD', '2019-09-10', 3, 18, '2023-08-31'),
-                    (19, 'BN90 MQ12 WS34 XC56 VB78 NM12 LK34', 250.50, 'BYN', '2022-12-05', 4, 19, '2023-08-31'),
-                    (20, 'JH56 GY78 UI12 OP34 AS56 DF78 GH90', 1800.25, 'USD', '2016-02-03', 5, 20, '2023-08-31'),
-                    (21, 'XC56 VB78 NM12 LK34 JH56 GY78 UI12', 700.00, 'BYN', '2021-09-20', 1, 1, '2023-08-31'),
-                    (22, 'OP34 AS56 DF78 GH90 JK12 LM34 ZX56', 1200.50, 'USD', '2018-12-13', 2, 2, '2023-08-31'),
-                    (23, 'CV78 BN90 MQ12 WS34 XC56 VB78 NM12', 300.25, 'BYN', '2021-03-01', 3, 3, '2023-08-31'),
-                    (24, 'AS12 DF34 GH56 JK78 LM90 ZX12 CV34', 600.75, 'USD', '2019-07-18', 4, 4, '2023-08-31'),
-                    (25, 'BN56 MQ78 WS56 XC78 VB90 NM12 LK34', 1500.00, 'BYN', '2022-09-25', 5, 5, '2023-08-31'),
-                    (26, 'GH90 JK12 LM34 ZX56 CV78 BN90 MQ12', 400.50, 'USD', '2020-09-20', 1, 6, '2023-08-31'),
-                    (27, 'WS34 XC56 VB78 NM12 LK34 JH56 GY78', 800.25, 'BYN', '2023-01-10', 2, 7, '2023-08-31'),
-                    (28, 'UI12 OP34 AS56 DF78 GH90 JK12 LM34', 1000.75, 'USD', '2019-11-25', 3, 8, '2023-08-31'),
-                    (29, 'ZX56 CV78 BN90 MQ12 WS34 XC56 VB78', 250.00, 'BYN', '2022-04-17', 4, 9, '2023-08-31'),
-                    (30, 'NM12 LK34 JH56 GY78 UI12 OP34 AS56', 1800.50, 'USD', '2017-09-08', 5, 10, '2023-08-31'),
-                    (31, 'DF78 GH90 JK12 LM34 ZX56 CV78 BN90', 700.25, 'BYN', '2020-12-01', 1, 11, '2023-08-31'),
-                    (32, 'MQ12 WS34 XC56 VB78 NM12 LK34 JH56', 1200.75, 'USD', '2018-03-27', 2, 12, '2023-08-31'),
-                    (33, 'GY78 UI12 OP34 AS56 DF78 GH90 JK12', 300.00, 'BYN', '2021-06-13', 3, 13, '2023-08-31'),
-                    (34, 'LM34 ZX56 CV78 BN90 MQ12 WS34 XC56', 600.50, 'USD', '2019-08-15', 4, 14, '2023-08-31'),
-                    (35, 'VB78 NM12 LK34 JH56 GY78 UI12 OP34', 1500.25, 'BYN', '2022-03-22', 5, 15, '2023-08-31'),
-                    (36, 'AS56 DF78 GH90 JK12 LM34 ZX56 CV78', 400.75, 'USD', '2017-08-15', 1, 16, '2023-08-31'),
-                    (37, 'BN90 MQ12 WS34 XC56 VB78 NM12 LK34', 800.00, 'BYN', '2020-11-08', 2, 17, '2023-08-31'),
-                    (38, 'JH56 GY78 UI12 OP34 AS56 DF78 GH90', 1000.50, 'USD', '2018-02-01', 3, 18, '2023-08-31'),
-                    (39, 'XC56 VB78 NM12 LK34 JH56 GY78 UI12', 250.25, 'BYN', '2021-04-18', 4, 19, '2023-08-31'),
-                    (40, 'OP34 AS56 DF78 GH90 JK12 LM34 ZX56', 1800.00, 'USD', '2019-09-10', 5, 20, '2023-08-31')
-                    ON CONFLICT (id) DO NOTHING;""";
-            statement.executeUpdate(addAccountsData);
-
-            // Создание таблицы types
-            String createTypesTable = "CREATE TABLE IF NOT EXISTS types (" +
-                    "id SERIAL PRIMARY KEY," +
-                    "name VARCHAR" +
-                    ")";
-            statement.executeUpdate(createTypesTable);
-
-            String addTypesData = """
-                    INSERT INTO types (id, name)
-                    VALUES
-                    (1, 'Депозит'),
-                    (2, 'Снятие средств'),
-                    (3, 'Перевод')
-                    -- Если id уже существует, то ничего не делать
-                    ON CONFLICT (id) DO NOTHING;""";
-            statement.executeUpdate(addTypesData);
-
-            // Создание таблицы transactions
-            String createTransactionsTable = "CREATE TABLE IF NOT EXISTS transactions (" +
-                    "id SERIAL PRIMARY KEY," +
-                    "date TIMESTAMPTZ," +
-                    "money NUMERIC," +
-                    "id_type INT REFERENCES types(id)," +
-                    "id_sender INT REFERENCES accounts(id)," +
-                    "id_recipient INT REFERENCES accounts(id)" +
-                    ")";
-            statement.executeUpdate(createTransactionsTable);
-
+        try (Connection connection = ConnectionPool.getConnection()) {
+            SchemaMigrator.migrate(connection, MIGRATIONS);
         }
         catch (SQLException e){
             e.printStackTrace();
@@ -0,0 +1,30 @@
+package org.clever_bank.db;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * Class that represents a versioned change of the database schema.
+ * Annotation @Data generates getters, setters, constructors, toString and equals/hashCode.
+ * Annotation @AllArgsConstructor generates a constructor with all fields.
+ */
+@Data
+@AllArgsConstructor
+public class Migration {
+    /**
+     * The version of the schema after the migration. Migrations are applied in ascending order of versions.
+     */
+    private int version;
+
+    /**
+     * A short description of the change.
+     */
+    private String description;
+
+    /**
+     * The SQL statements of the migration, executed in order within one database transaction.
+     */
+    private List<String> statements;
+}
@@ -0,0 +1,121 @@
+package org.clever_bank.db;
+
+import java.sql.*;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Applies versioned migrations to the database schema.
+ * The versions already applied are recorded in the 'schema_version' table.
+ * Every pending migration runs in its own database transaction together with the record of its version,
+ * so a failed migration leaves no partial changes and is retried on the next start.
+ */
+public class SchemaMigrator {
+    /**
+     * The key of the PostgreSQL advisory lock that keeps application instances
+     * starting at the same time from applying the same migration twice.
+     */
+    private static final long MIGRATION_LOCK_KEY = 20_230_831L;
+
+    /**
+     * Creates the table of applied versions.
+     */
+    private static final String CREATE_VERSION_TABLE = "CREATE TABLE IF NOT EXISTS schema_version (" +
+            "version INT PRIMARY KEY," +
+            "description VARCHAR NOT NULL," +
+            "applied_at TIMESTAMPTZ NOT NULL DEFAULT now()" +
+            ")";
+
+    /**
+     * Applies all migrations that have not been applied yet, in ascending order of their versions.
+     *
+     * @param connection The connection to the application database.
+     * @param migrations The migrations of the schema.
+     * @throws SQLException If a migration fails. Migrations applied before the failed one stay applied.
+     */
+    public static void migrate(Connection connection, List<Migration> migrations) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate(CREATE_VERSION_TABLE);
+        }
+
+        List<Migration> ordered = migrations.stream()
+                .sorted(Comparator.comparingInt(Migration::getVersion))
+                .toList();
+
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            for (Migration migration : ordered) {
+                lock(connection);
+                if (readAppliedVersions(connection).contains(migration.getVersion())) {
+                    connection.commit();
+                    continue;
+                }
+                apply(connection, migration);
+                connection.commit();
+                System.out.printf("Migration %d is applied: %s%n", migration.getVersion(), migration.getDescription());
+            }
+        }
+        catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        }
+        finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Takes the migration lock until the end of the current transaction.
+     *
+     * @param connection The connection with an open transaction.
+     * @throws SQLException If the lock cannot be taken.
+     */
+    private static void lock(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_advisory_xact_lock(?)")) {
+            statement.setLong(1, MIGRATION_LOCK_KEY);
+            statement.execute();
+        }
+    }
+
+    /**
+     * Reads the versions of the migrations already applied.
+     *
+     * @param connection The connection to the application database.
+     * @return The set of applied versions.
+     * @throws SQLException If the versions cannot be read.
+     */
+    private static Set<Integer> readAppliedVersions(Connection connection) throws SQLException {
+        Set<Integer> versions = new HashSet<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT version FROM schema_version")) {
+            while (resultSet.next()) {
+                versions.add(resultSet.getInt("version"));
+            }
+        }
+        return versions;
+    }
+
+    /**
+     * Executes the statements of a migration and records its version.
+     *
+     * @param connection The connection with an open transaction.
+     * @param migration  The migration to apply.
+     * @throws SQLException If a statement of the migration fails.
+     */
+    private static void apply(Connection connection, Migration migration) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (String sql : migration.getStatements()) {
+                statement.execute(sql);
+            }
+        }
+        try (PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+            statement.setInt(1, migration.getVersion());
+            statement.setString(2, migration.getDescription());
+            statement.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.clever_bank.db;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Execution counters and timings of the prepared statements run through the connection pool, by SQL text.
+ * For a query the time covers the execution and the first fetch, not the reading of the rest of a cursor.
+ */
+public class StatementStatistics {
+    /**
+     * The maximum number of distinct SQL texts tracked, so queries built with varying text cannot exhaust memory.
+     */
+    private static final int MAX_TRACKED_STATEMENTS = 1000;
+
+    /**
+     * The counters by SQL text.
+     */
+    private static final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Records one execution of a statement.
+     *
+     * @param sql    The SQL text of the statement.
+     * @param nanos  The time of the execution, in nanoseconds.
+     * @param failed true if the execution threw an exception.
+     */
+    static void record (String sql, long nanos, boolean failed) {
+        Entry entry = entries.get(sql);
+        if (entry == null) {
+            if (entries.size() >= MAX_TRACKED_STATEMENTS) {
+                return;
+            }
+            entry = entries.computeIfAbsent(sql, Entry::new);
+        }
+        entry.executions.increment();
+        entry.totalNanos.add(nanos);
+        entry.maxNanos.accumulateAndGet(nanos, Math::max);
+        if (failed) {
+            entry.errors.increment();
+        }
+    }
+
+    /**
+     * @return the counters of all tracked statements, the statements with the largest total time first.
+     */
+    public static List<Entry> getEntries () {
+        List<Entry> result = new ArrayList<>(entries.values());
+        result.sort(Comparator.comparingLong(Entry::getTotalNanos).reversed());
+        return result;
+    }
+
+    /**
+     * Returns a human-readable summary of the statements with the largest total time.
+     *
+     * @param limit The maximum number of statements in the summary.
+     * @return One line per statement.
+     */
+    public static String getStatistics (int limit) {
+        StringBuilder statistics = new StringBuilder();
+        for (Entry entry : getEntries().subList(0, Math.min(limit, entries.size()))) {
+            statistics.append(String.format("executions=%d, total=%.1fms, avg=%.3fms, max=%.3fms, errors=%d: %s%n",
+                    entry.getExecutions(), entry.getTotalNanos() / 1_000_000.0, entry.getAverageMillis(),
+                    entry.getMaxMillis(), entry.getErrors(), entry.getSql()));
+        }
+        return statistics.toString();
+    }
+
+    /**
+     * Forgets all counters.
+     */
+    public static void reset () {
+        entries.clear();
+    }
+
+    /**
+     * The counters of one SQL text.
+     */
+    public static class Entry {
+        private final String sql;
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        private Entry (String sql) {
+            this.sql = sql;
+        }
+
+        /**
+         * @return the SQL text of the statement.
+         */
+        public String getSql () {
+            return sql;
+        }
+
+        /**
+         * @return the number of executions.
+         */
+        public long getExecutions () {
+            return executions.sum();
+        }
+
+        /**
+         * @return the number of executions that threw an exception.
+         */
+        public long getErrors () {
+            return errors.sum();
+        }
+
+        /**
+         * @return the total time of all executions, in nanoseconds.
+         */
+        public long getTotalNanos () {
+            return totalNanos.sum();
+        }
+
+        /**
+         * @return the average time of an execution, in milliseconds.
+         */
+        public double getAverageMillis () {
+            long count = getExecutions();
+            return count == 0 ? 0 : getTotalNanos() / 1_000_000.0 / count;
+        }
+
+        /**
+         * @return the longest time of an execution, in milliseconds.
+         */
+        public double getMaxMillis () {
+            return maxNanos.get() / 1_000_000.0;
+        }
+    }
+}
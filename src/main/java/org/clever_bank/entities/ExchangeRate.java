@@ -0,0 +1,30 @@
+package org.clever_bank.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * Class that represents the rate at which one currency is exchanged to another.
+ * Annotation @Data generates getters, setters, constructors, toString and equals/hashCode.
+ * Annotation @AllArgsConstructor generates a constructor with all fields.
+ */
+@Data
+@AllArgsConstructor
+public class ExchangeRate {
+    /**
+     * The currency of the sender, which is sold.
+     */
+    private String currencyFrom;
+
+    /**
+     * The currency of the recipient, which is bought.
+     */
+    private String currencyTo;
+
+    /**
+     * The amount of the bought currency received for one unit of the currency from.
+     */
+    private BigDecimal rate;
+}
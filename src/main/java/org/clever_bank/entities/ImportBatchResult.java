@@ -0,0 +1,48 @@
+package org.clever_bank.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * Class that represents the result of importing one batch of transactions.
+ * Annotation @Data generates getters, setters, constructors, toString and equals/hashCode.
+ * Annotation @AllArgsConstructor generates a constructor with all fields.
+ */
+@Data
+@AllArgsConstructor
+public class ImportBatchResult {
+    /**
+     * The number of rows copied into the staging table.
+     */
+    private long copiedRows;
+
+    /**
+     * The number of transactions inserted.
+     * Rows with an unknown account or type, or without a positive amount, are not inserted.
+     */
+    private long insertedRows;
+
+    /**
+     * The number of valid rows skipped because they were already imported.
+     */
+    private long duplicateRows;
+
+    /**
+     * The number of accounts whose balance was updated.
+     */
+    private long updatedAccounts;
+
+    /**
+     * The earliest date of the inserted transactions, or null if none were inserted.
+     */
+    private Instant firstDate;
+
+    /**
+     * @return the number of invalid rows that were not inserted.
+     */
+    public long getRejectedRows() {
+        return copiedRows - insertedRows - duplicateRows;
+    }
+}
@@ -0,0 +1,42 @@
+package org.clever_bank.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * Class that represents the money received and spent by an account within a period.
+ * Annotation @Data generates getters, setters, constructors, toString and equals/hashCode.
+ * Annotation @AllArgsConstructor generates a constructor with all fields.
+ */
+@Data
+@AllArgsConstructor
+public class MoneySummary {
+    /**
+     * The unique identifier of the account.
+     */
+    private int accountId;
+
+    /**
+     * The money received by the account: deposits, incoming transfers and interest.
+     */
+    private BigDecimal income;
+
+    /**
+     * The money spent by the account: withdrawals and outgoing transfers.
+     */
+    private BigDecimal expense;
+
+    /**
+     * The number of transactions of the account within the period.
+     */
+    private long count;
+
+    /**
+     * @return the difference between the income and the expense.
+     */
+    public BigDecimal getNet() {
+        return income.subtract(expense);
+    }
+}
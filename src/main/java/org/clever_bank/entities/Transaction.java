@@ -47,4 +47,10 @@ public class Transaction {
      * The amount of money involved in the transaction.
      */
     private BigDecimal money;
+
+    /**
+     * The amount of money credited to the recipient in the currency of its account,
+     * or null if the money is credited without a conversion.
+     */
+    private BigDecimal creditMoney;
 }
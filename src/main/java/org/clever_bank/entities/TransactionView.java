@@ -0,0 +1,65 @@
+package org.clever_bank.entities;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Class that represents a transaction as seen from one account, with only the fields a statement shows.
+ * Unlike {@link Transaction} it references no accounts, banks or customers, so reading it allocates a single object.
+ * Annotation @Data generates getters, setters, constructors, toString and equals/hashCode.
+ * Annotation @AllArgsConstructor generates a constructor with all fields.
+ */
+@Data
+@AllArgsConstructor
+public class TransactionView {
+    /**
+     * The unique identifier of the transaction.
+     */
+    private int id;
+
+    /**
+     * The ID of the transaction type.
+     */
+    private int typeId;
+
+    /**
+     * The date and time of the transaction.
+     */
+    private Instant date;
+
+    /**
+     * The amount of money of the transaction.
+     */
+    private BigDecimal money;
+
+    /**
+     * The ID of the sender account.
+     */
+    private int senderId;
+
+    /**
+     * The ID of the recipient account.
+     */
+    private int recipientId;
+
+    /**
+     * The number of the other account of the transaction, or of the account itself for deposits and withdrawals.
+     */
+    private String counterpartyNumber;
+
+    /**
+     * The name of the customer owning the other account.
+     */
+    private String counterpartyName;
+
+    /**
+     * @param accountId The ID of the account the transaction is seen from.
+     * @return true if the transaction takes money from the account: a withdrawal or an outgoing transfer.
+     */
+    public boolean isDebitFor(int accountId) {
+        return typeId == 2 || (typeId == 3 && senderId == accountId);
+    }
+}
@@ -0,0 +1,165 @@
+package org.clever_bank.metrics;
+
+import org.clever_bank.services.AppConfig;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * Latency, call, row and failure counters of the operations of the repositories and the statement service.
+ * An operation is timed by taking {@link #start()} before it and passing the result to {@link #record} after it:
+ * <pre>
+ *     long start = Metrics.start();
+ *     ...
+ *     Metrics.record("account_read", start, 1);
+ * </pre>
+ * When metrics are disabled by 'metrics_enabled' in the configuration, {@link #start()} returns 0
+ * and the other methods return at once, so the instrumentation costs one field read per call.
+ */
+public class Metrics {
+    /**
+     * Application configuration.
+     * This class reads the configuration from the 'application.yml' file located in the resources' directory.
+     */
+    private static final AppConfig appConfig = new AppConfig();
+
+    /**
+     * Whether operations are recorded.
+     */
+    private static final boolean enabled = appConfig.isMetricsEnabled();
+
+    /**
+     * The counters by operation name.
+     */
+    private static final Map<String, Operation> operations = new ConcurrentHashMap<>();
+
+    /**
+     * @return true if operations are recorded.
+     */
+    public static boolean isEnabled () {
+        return enabled;
+    }
+
+    /**
+     * Returns the start time of an operation.
+     *
+     * @return The current value of {@link System#nanoTime()}, or 0 if metrics are disabled.
+     */
+    public static long start () {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records a completed call of an operation, whether it succeeded or not.
+     *
+     * @param operation The name of the operation, for example "account_read".
+     * @param start     The value returned by {@link #start()} before the call.
+     * @param rows      The number of rows read or written by the call.
+     */
+    public static void record (String operation, long start, long rows) {
+        if (!enabled) {
+            return;
+        }
+        Operation counters = getOperation(operation);
+        counters.latency.record((System.nanoTime() - start) / 1000);
+        counters.rows.add(rows);
+    }
+
+    /**
+     * Counts a failed call of an operation whose error is handled by the caller.
+     *
+     * @param operation The name of the operation.
+     */
+    public static void recordFailure (String operation) {
+        if (enabled) {
+            getOperation(operation).failures.increment();
+        }
+    }
+
+    /**
+     * Counts a failed call of an operation and prints the error.
+     * The call is recorded by {@link #record} as well.
+     *
+     * @param operation The name of the operation.
+     * @param error     The error.
+     */
+    public static void recordFailure (String operation, Throwable error) {
+        if (enabled) {
+            getOperation(operation).failures.increment();
+        }
+        error.printStackTrace();
+    }
+
+    /**
+     * Records a stream as one call of an operation, from now until the stream is closed,
+     * with the number of elements consumed as the number of rows.
+     *
+     * @param operation The name of the operation.
+     * @param stream    The stream.
+     * @return The stream to use instead of the given one.
+     */
+    public static <T> Stream<T> record (String operation, Stream<T> stream) {
+        if (!enabled) {
+            return stream;
+        }
+        long start = System.nanoTime();
+        LongAdder rows = new LongAdder();
+        return stream.peek(element -> rows.increment())
+                .onClose(() -> record(operation, start, rows.sum()));
+    }
+
+    /**
+     * @return the counters of all operations called at least once, by name.
+     */
+    public static Map<String, Operation> getOperations () {
+        return Map.copyOf(operations);
+    }
+
+    /**
+     * @param operation The name of the operation.
+     * @return The counters of the operation, created on first use.
+     */
+    private static Operation getOperation (String operation) {
+        Operation counters = operations.get(operation);
+        return counters != null ? counters : operations.computeIfAbsent(operation, key -> new Operation());
+    }
+
+    /**
+     * The counters of one operation.
+     */
+    public static class Operation {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder failures = new LongAdder();
+
+        /**
+         * @return the latencies of the calls.
+         */
+        public LatencyHistogram getLatency () {
+            return latency;
+        }
+
+        /**
+         * @return the number of calls.
+         */
+        public long getCalls () {
+            return latency.getCount();
+        }
+
+        /**
+         * @return the number of rows read or written by all calls.
+         */
+        public long getRows () {
+            return rows.sum();
+        }
+
+        /**
+         * @return the number of failed calls.
+         */
+        public long getFailures () {
+            return failures.sum();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package org.clever_bank.metrics;
+
+import org.clever_bank.db.ConnectionPool;
+import org.clever_bank.db.StatementStatistics;
+import org.clever_bank.repository.AccountCache;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes the metrics in the Prometheus text exposition format.
+ * The latency of every operation is a histogram with buckets at every second power of two microseconds,
+ * and its percentiles are exported as a separate gauge computed from the full-precision histogram.
+ */
+public class PrometheusExporter {
+    /**
+     * The powers of two, in microseconds, used as upper bounds of the exported histogram buckets: 32 µs to 33.5 s.
+     */
+    private static final int[] BUCKET_EXPONENTS = {5, 7, 9, 11, 13, 15, 17, 19, 21, 23, 25};
+
+    /**
+     * The exported percentiles of the latencies.
+     */
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    /**
+     * @return all metrics in the Prometheus text format.
+     */
+    public static String write () {
+        StringBuilder out = new StringBuilder(16 * 1024);
+        Map<String, Metrics.Operation> operations = new TreeMap<>(Metrics.getOperations());
+
+        out.append("# HELP clever_bank_operation_duration_seconds Duration of repository and statement operations.\n");
+        out.append("# TYPE clever_bank_operation_duration_seconds histogram\n");
+        for (Map.Entry<String, Metrics.Operation> entry : operations.entrySet()) {
+            LatencyHistogram latency = entry.getValue().getLatency();
+            String labels = "operation=\"" + entry.getKey() + "\"";
+            for (int exponent : BUCKET_EXPONENTS) {
+                sample(out, "clever_bank_operation_duration_seconds_bucket",
+                        labels + ",le=\"" + seconds(1L << exponent) + "\"", latency.getCountBelowPowerOfTwo(exponent));
+            }
+            long count = latency.getCount();
+            sample(out, "clever_bank_operation_duration_seconds_bucket", labels + ",le=\"+Inf\"", count);
+            sample(out, "clever_bank_operation_duration_seconds_sum", labels, seconds(latency.getSum()));
+            sample(out, "clever_bank_operation_duration_seconds_count", labels, count);
+        }
+
+        out.append("# HELP clever_bank_operation_duration_quantile_seconds Percentiles of the duration of operations.\n");
+        out.append("# TYPE clever_bank_operation_duration_quantile_seconds gauge\n");
+        for (Map.Entry<String, Metrics.Operation> entry : operations.entrySet()) {
+            LatencyHistogram latency = entry.getValue().getLatency();
+            for (double quantile : QUANTILES) {
+                sample(out, "clever_bank_operation_duration_quantile_seconds",
+                        "operation=\"" + entry.getKey() + "\",quantile=\"" + quantile + "\"",
+                        seconds(latency.getValueAtQuantile(quantile)));
+            }
+            sample(out, "clever_bank_operation_duration_quantile_seconds",
+                    "operation=\"" + entry.getKey() + "\",quantile=\"1.0\"", seconds(latency.getMax()));
+        }
+
+        out.append("# HELP clever_bank_operation_rows_total Rows read or written by operations.\n");
+        out.append("# TYPE clever_bank_operation_rows_total counter\n");
+        for (Map.Entry<String, Metrics.Operation> entry : operations.entrySet()) {
+            sample(out, "clever_bank_operation_rows_total", "operation=\"" + entry.getKey() + "\"", entry.getValue().getRows());
+        }
+
+        out.append("# HELP clever_bank_operation_failures_total Failed calls of operations.\n");
+        out.append("# TYPE clever_bank_operation_failures_total counter\n");
+        for (Map.Entry<String, Metrics.Operation> entry : operations.entrySet()) {
+            sample(out, "clever_bank_operation_failures_total", "operation=\"" + entry.getKey() + "\"", entry.getValue().getFailures());
+        }
+
+        out.append("# HELP clever_bank_pool_connections Connections of the pool by state.\n");
+        out.append("# TYPE clever_bank_pool_connections gauge\n");
+        sample(out, "clever_bank_pool_connections", "state=\"active\"", ConnectionPool.getActiveConnections());
+        sample(out, "clever_bank_pool_connections", "state=\"idle\"", ConnectionPool.getIdleConnections());
+        sample(out, "clever_bank_pool_connections", "state=\"pending\"", ConnectionPool.getThreadsAwaitingConnection());
+        out.append("# TYPE clever_bank_pool_timeouts_total counter\n");
+        sample(out, "clever_bank_pool_timeouts_total", null, ConnectionPool.getTimeoutCount());
+
+        out.append("# HELP clever_bank_account_cache_lookups_total Lookups of the account cache by result.\n");
+        out.append("# TYPE clever_bank_account_cache_lookups_total counter\n");
+        sample(out, "clever_bank_account_cache_lookups_total", "result=\"hit\"", AccountCache.getHits());
+        sample(out, "clever_bank_account_cache_lookups_total", "result=\"miss\"", AccountCache.getMisses());
+        sample(out, "clever_bank_account_cache_lookups_total", "result=\"stale\"", AccountCache.getStaleEntries());
+        out.append("# TYPE clever_bank_account_cache_size gauge\n");
+        sample(out, "clever_bank_account_cache_size", null, AccountCache.getSize());
+
+        out.append("# HELP clever_bank_sql_executions_total Executions of prepared statements by SQL text.\n");
+        out.append("# TYPE clever_bank_sql_executions_total counter\n");
+        for (StatementStatistics.Entry entry : StatementStatistics.getEntries()) {
+            sample(out, "clever_bank_sql_executions_total", "sql=\"" + escape(entry.getSql()) + "\"", entry.getExecutions());
+        }
+        out.append("# HELP clever_bank_sql_duration_seconds_total Time spent executing prepared statements by SQL text.\n");
+        out.append("# TYPE clever_bank_sql_duration_seconds_total counter\n");
+        for (StatementStatistics.Entry entry : StatementStatistics.getEntries()) {
+            sample(out, "clever_bank_sql_duration_seconds_total", "sql=\"" + escape(entry.getSql()) + "\"",
+                    entry.getTotalNanos() / 1_000_000_000.0);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Appends one sample line.
+     *
+     * @param out    The output.
+     * @param name   The name of the metric.
+     * @param labels The labels without braces, or null.
+     * @param value  The value.
+     */
+    private static void sample (StringBuilder out, String name, String labels, double value) {
+        out.append(name);
+        if (labels != null) {
+            out.append('{').append(labels).append('}');
+        }
+        out.append(' ');
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            out.append((long) value);
+        }
+        else {
+            out.append(value);
+        }
+        out.append('\n');
+    }
+
+    /**
+     * @param micros A duration in microseconds.
+     * @return The duration in seconds.
+     */
+    private static double seconds (long micros) {
+        return micros / 1_000_000.0;
+    }
+
+    /**
+     * Escapes a label value.
+     *
+     * @param value The value.
+     * @return The value with backslashes, quotes and line breaks escaped.
+     */
+    private static String escape (String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,326 @@
+package org.clever_bank.repository;
+
+import org.clever_bank.entities.Account;
+import org.clever_bank.services.AppConfig;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Write-through cache of accounts by ID and by number, for the console and the API,
+ * which read the same accounts again after every posting.
+ * Postings write the new balances through to the cache after they are committed.
+ * Every update of an account row increments its version in the database, so an entry older than the TTL
+ * is checked by reading only the balance and the version, which also catches changes made outside the postings,
+ * for example by the import of transactions or an edit of the account. An entry whose version changed
+ * is replaced by the whole row read again, because not only the balance may have changed.
+ * The cache is bounded and evicts the least recently used account.
+ * Callers get copies of the cached accounts, which they may modify.
+ */
+public class AccountCache {
+    /**
+     * Application configuration.
+     * This class reads the configuration from the 'application.yml' file located in the resources' directory.
+     */
+    private static final AppConfig appConfig = new AppConfig();
+
+    /**
+     * The maximum number of cached accounts.
+     */
+    private static final int cacheSize = Math.max(1, appConfig.getAccountCacheSize());
+
+    /**
+     * The time in nanoseconds after which a cached account is checked against the database.
+     */
+    private static final long ttlNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, appConfig.getAccountCacheTtlMs()));
+
+    /**
+     * IDs of the cached accounts by account number. Guarded by the lock of {@link #accounts}.
+     * A number is mapped only while a single cached account has it.
+     */
+    private static final Map<String, Integer> ids = new HashMap<>();
+
+    /**
+     * Cached accounts by ID in access order.
+     */
+    private static final Map<Integer, Entry> accounts = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+            if (size() > cacheSize) {
+                ids.remove(eldest.getValue().account.getAccountNumber(), eldest.getKey());
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * The number of lookups served from the cache.
+     */
+    private static final AtomicLong hits = new AtomicLong();
+
+    /**
+     * The number of lookups that read the whole account from the database.
+     */
+    private static final AtomicLong misses = new AtomicLong();
+
+    /**
+     * The number of checks against the database that found a changed version.
+     */
+    private static final AtomicLong staleEntries = new AtomicLong();
+
+    /**
+     * The new balance of an account after a posting or as read from the database.
+     *
+     * @param accountId The ID of the account.
+     * @param balance   The balance of the account.
+     * @param version   The version of the account row with this balance.
+     */
+    public record BalanceChange(int accountId, BigDecimal balance, long version) {
+    }
+
+    /**
+     * A cached account. Guarded by the lock of {@link #accounts}.
+     */
+    private static class Entry {
+        /**
+         * The cached account, never given to callers.
+         */
+        private final Account account;
+
+        /**
+         * The version of the account row the cached balance belongs to.
+         */
+        private long version;
+
+        /**
+         * The time in nanoseconds when the entry was last read from or checked against the database.
+         */
+        private long checkedAt;
+
+        /**
+         * @param account The account.
+         * @param version The version of the account row.
+         */
+        private Entry (Account account, long version) {
+            this.account = account;
+            this.version = version;
+            this.checkedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Returns an account by ID from the cache, or from the database if it is not cached.
+     *
+     * @param accountId The ID of the account.
+     * @return A copy of the account, or null if it is not found.
+     */
+    public static Account read (int accountId) {
+        Entry entry;
+        synchronized (accounts) {
+            entry = accounts.get(accountId);
+            if (entry != null && isFresh(entry)) {
+                hits.incrementAndGet();
+                return copy(entry.account);
+            }
+        }
+        if (entry != null) {
+            Account account = check(accountId);
+            if (account != null) {
+                return account;
+            }
+        }
+        misses.incrementAndGet();
+        return put(AccountRepository.readVersioned(accountId));
+    }
+
+    /**
+     * Returns an account by number from the cache, or from the database if it is not cached.
+     *
+     * @param number The number of the account.
+     * @return A copy of the account, or null if it is not found.
+     * @throws IllegalStateException If several accounts have the number.
+     */
+    public static Account read (String number) {
+        Integer accountId;
+        synchronized (accounts) {
+            accountId = ids.get(number);
+        }
+        if (accountId != null) {
+            Account account = read(accountId);
+            if (account != null && number.equals(account.getAccountNumber())) {
+                return account;
+            }
+        }
+        misses.incrementAndGet();
+        return put(AccountRepository.readVersioned(number));
+    }
+
+    /**
+     * Applies the balances written by committed postings to the cached accounts.
+     * Accounts that are not cached stay uncached, and a balance older than the cached one is ignored,
+     * so postings committed by different threads can apply their balances in any order.
+     *
+     * @param changes The new balances of the accounts.
+     */
+    public static void applyBalances (List<BalanceChange> changes) {
+        if (changes.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        synchronized (accounts) {
+            for (BalanceChange change : changes) {
+                Entry entry = accounts.get(change.accountId());
+                if (entry != null && change.version() > entry.version) {
+                    entry.account.setBalance(change.balance());
+                    entry.version = change.version();
+                    entry.checkedAt = now;
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes an account from the cache after it was changed or deleted.
+     *
+     * @param accountId The ID of the account.
+     */
+    public static void invalidate (int accountId) {
+        synchronized (accounts) {
+            Entry entry = accounts.remove(accountId);
+            if (entry != null) {
+                ids.remove(entry.account.getAccountNumber(), accountId);
+            }
+        }
+    }
+
+    /**
+     * Removes all accounts from the cache, for example after balances were changed in bulk.
+     */
+    public static void invalidateAll () {
+        synchronized (accounts) {
+            accounts.clear();
+            ids.clear();
+        }
+    }
+
+    /**
+     * @return the number of lookups served from the cache.
+     */
+    public static long getHits () {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of lookups that read the whole account from the database.
+     */
+    public static long getMisses () {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of checks against the database that found a changed version.
+     */
+    public static long getStaleEntries () {
+        return staleEntries.get();
+    }
+
+    /**
+     * @return the number of cached accounts.
+     */
+    public static int getSize () {
+        synchronized (accounts) {
+            return accounts.size();
+        }
+    }
+
+    /**
+     * @return a short human-readable summary of the cache hits and misses.
+     */
+    public static String getStatistics () {
+        return String.format("accounts: %d cached, %d hits / %d misses, %d stale",
+                getSize(), getHits(), getMisses(), getStaleEntries());
+    }
+
+    /**
+     * Checks a cached account older than the TTL against the version in the database.
+     * If the version changed, the entry is evicted and the caller reads the whole account again.
+     *
+     * @param accountId The ID of the account.
+     * @return A copy of the checked account, or null if the account changed, is no longer cached or no longer exists.
+     */
+    private static Account check (int accountId) {
+        BalanceChange current = AccountRepository.readBalance(accountId);
+        synchronized (accounts) {
+            Entry entry = accounts.get(accountId);
+            if (current == null || entry == null) {
+                if (entry != null) {
+                    invalidate(accountId);
+                }
+                return null;
+            }
+            if (current.version() != entry.version) {
+                staleEntries.incrementAndGet();
+                invalidate(accountId);
+                return null;
+            }
+            hits.incrementAndGet();
+            entry.checkedAt = System.nanoTime();
+            return copy(entry.account);
+        }
+    }
+
+    /**
+     * Caches an account read from the database, unless a newer version of it is already cached.
+     * If another cached account has the same number, for example because it was renumbered since it was cached,
+     * the number is not mapped, so lookups by number read the account from the database.
+     *
+     * @param versioned The account with its version, or null.
+     * @return A copy of the account, or null if the account is null.
+     */
+    private static Account put (AccountRepository.VersionedAccount versioned) {
+        if (versioned == null) {
+            return null;
+        }
+        Account account = versioned.account();
+        synchronized (accounts) {
+            Entry entry = accounts.get(account.getId());
+            if (entry == null || entry.version < versioned.version()) {
+                if (entry != null) {
+                    ids.remove(entry.account.getAccountNumber(), account.getId());
+                }
+                entry = new Entry(copy(account), versioned.version());
+                accounts.put(account.getId(), entry);
+                Integer mappedId = ids.putIfAbsent(account.getAccountNumber(), account.getId());
+                if (mappedId != null && mappedId != account.getId()) {
+                    ids.remove(account.getAccountNumber());
+                }
+            }
+            return copy(entry.account);
+        }
+    }
+
+    /**
+     * @param entry The cached account.
+     * @return true if the entry was read or checked within the TTL.
+     */
+    private static boolean isFresh (Entry entry) {
+        return System.nanoTime() - entry.checkedAt < ttlNanos;
+    }
+
+    /**
+     * Copies an account. The bank and the customer are shared, as they are shared by the reference data cache.
+     *
+     * @param account The account.
+     * @return The copy.
+     */
+    private static Account copy (Account account) {
+        return new Account(account.getId(), account.getAccountNumber(), account.getBalance(), account.getCurrency(),
+                account.getOpeningDate(), account.getBank(), account.getCustomer());
+    }
+}
@@ -1,41 +1,35 @@
 package org.clever_bank.repository;
 
+import org.clever_bank.db.ConnectionPool;
 import org.clever_bank.entities.Account;
 import org.clever_bank.entities.Bank;
 import org.clever_bank.entities.Customer;
-import org.clever_bank.services.AppConfig;
+import org.clever_bank.metrics.Metrics;
 import org.clever_bank.services.DateConstructor;
 
 import java.math.BigDecimal;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 /**
  * Repository class for working with accounts in the database.
  */
 public class AccountRepository {
     /**
-     * Application configuration.
-     * This class reads the configuration from the 'application.yml' file located in the resources' directory.
+     * Selects accounts together with their bank and customer, so one query hydrates the whole account.
      */
-    private static final AppConfig appConfig = new AppConfig();
-
-    /**
-     * URL for connecting to the database.
-     */
-    private static final String url = appConfig.getFullUrl();
-
-    /**
-     * Username for connecting to the database.
-     */
-    private static final String username = appConfig.getUsername();
-
-    /**
-     * Username for connecting to the database.
-     */
-    private static final String password = appConfig.getPassword();
+    private static final String SELECT_ACCOUNTS = "SELECT a.id, a.number, a.balance, a.currency, a.open_date, a.version, " +
+            "b.id AS bank_id, b.name AS bank_name, " +
+            "c.id AS customer_id, c.name AS customer_name " +
+            "FROM accounts a " +
+            "LEFT JOIN banks b ON a.id_bank = b.id " +
+            "LEFT JOIN customers c ON a.id_customer = c.id ";
 
     /**
      * Method to create a new account in the database.
@@ -43,9 +37,11 @@ public class AccountRepository {
      * @param account The account to create.
      */
     public static void create (Account account) {
+        long start = Metrics.start();
+        int rows = 0;
         String sqlQuery = "INSERT INTO accounts (number, balance, currency, open_date, id_bank, id_customer, interest_date) " +
                 "VALUES (?, ?, ?, ?, ?, ?, ?)";
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = ConnectionPool.getConnection();
              PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
 
             statement.setString(1, account.getAccountNumber());
@@ -56,78 +52,261 @@ public class AccountRepository {
             statement.setInt(6, account.getCustomer().getId());
             statement.setDate(7, DateConstructor.createSqlDate(account.getOpeningDate()));
 
-            statement.executeUpdate();
+            rows = statement.executeUpdate();
         } catch (SQLException e) {
-            e.printStackTrace();
+            Metrics.recordFailure("account_create", e);
         }
+        Metrics.record("account_create", start, rows);
+    }
+
+    /**
+     * Selects the balance and the version of an account, to check a cached account without reading it completely.
+     */
+    private static final String BALANCE_QUERY = "SELECT id, balance, version FROM accounts WHERE id = ?";
+
+    /**
+     * An account together with the version of its row, which is incremented on every update of the row.
+     *
+     * @param account The account.
+     * @param version The version of the account row.
+     */
+    record VersionedAccount(Account account, long version) {
     }
 
     /**
      * Retrieves an account from the database based on the account ID.
+     * Frequently read accounts should be read through {@link AccountCache#read(int)}.
      *
      * @param accountId The ID of the account to retrieve.
      * @return The retrieved account, or null if not found.
      */
     public static Account read (int accountId) {
-        String sqlQuery = "SELECT * FROM accounts WHERE id = ?";
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        VersionedAccount versioned = readVersioned(accountId);
+        return versioned == null ? null : versioned.account();
+    }
+
+    /**
+     * Retrieves an account from the database based on the account number.
+     * Frequently read accounts should be read through {@link AccountCache#read(String)}.
+     *
+     * @param number The account number to retrieve.
+     * @return The retrieved account, or null if not found.
+     * @throws IllegalStateException If several accounts have the number.
+     */
+    public static Account read (String number) {
+        VersionedAccount versioned = readVersioned(number);
+        return versioned == null ? null : versioned.account();
+    }
+
+    /**
+     * Retrieves an account with the version of its row based on the account ID.
+     *
+     * @param accountId The ID of the account to retrieve.
+     * @return The retrieved account, or null if not found.
+     */
+    static VersionedAccount readVersioned (int accountId) {
+        long start = Metrics.start();
+        VersionedAccount account = null;
+        String sqlQuery = SELECT_ACCOUNTS + "WHERE a.id = ?";
+        try (Connection connection = ConnectionPool.getConnection();
              PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
             statement.setInt(1, accountId);
             ResultSet resultSet = statement.executeQuery();
             if (resultSet.next()) {
-                return getAccountFromResultSet(resultSet);
+                account = new VersionedAccount(new AccountRowMapper().map(resultSet), resultSet.getLong("version"));
             }
 
         }
         catch (SQLException e) {
-            e.printStackTrace();
+            Metrics.recordFailure("account_read", e);
         }
-        return null;
+        Metrics.record("account_read", start, account == null ? 0 : 1);
+        return account;
     }
 
     /**
-     * Retrieves an account from the database based on the account number.
+     * Retrieves an account with the version of its row based on the account number.
+     * Numbers are unique since the migration that deduplicated them, but a number matching several accounts
+     * is still rejected rather than resolved to one of them.
      *
      * @param number The account number to retrieve.
      * @return The retrieved account, or null if not found.
+     * @throws IllegalStateException If several accounts have the number.
      */
-    public static Account read (String number) {
-        String sqlQuery = "SELECT * FROM accounts WHERE number = ?";
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+    static VersionedAccount readVersioned (String number) {
+        long start = Metrics.start();
+        VersionedAccount account = null;
+        boolean ambiguous = false;
+        String sqlQuery = SELECT_ACCOUNTS + "WHERE a.number = ? ORDER BY a.id LIMIT 2";
+        try (Connection connection = ConnectionPool.getConnection();
              PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
             statement.setString(1, number);
             ResultSet resultSet = statement.executeQuery();
             if (resultSet.next()) {
-                return getAccountFromResultSet(resultSet);
+                account = new VersionedAccount(new AccountRowMapper().map(resultSet), resultSet.getLong("version"));
+                ambiguous = resultSet.next();
             }
 
         }
         catch (SQLException e) {
-            e.printStackTrace();
+            Metrics.recordFailure("account_read_by_number", e);
+        }
+        Metrics.record("account_read_by_number", start, account == null ? 0 : ambiguous ? 2 : 1);
+        if (ambiguous) {
+            throw new IllegalStateException("Account number " + number + " belongs to several accounts");
+        }
+        return account;
+    }
+
+    /**
+     * Reads the current balance and version of an account.
+     *
+     * @param accountId The ID of the account.
+     * @return The balance and the version of the account, or null if the account is not found or a database error occurs.
+     */
+    static AccountCache.BalanceChange readBalance (int accountId) {
+        long start = Metrics.start();
+        AccountCache.BalanceChange balance = null;
+        try (Connection connection = ConnectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(BALANCE_QUERY)) {
+            statement.setInt(1, accountId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    balance = new AccountCache.BalanceChange(resultSet.getInt("id"),
+                            resultSet.getBigDecimal("balance"), resultSet.getLong("version"));
+                }
+            }
+        }
+        catch (SQLException e) {
+            Metrics.recordFailure("account_read_balance", e);
         }
-        return null;
+        Metrics.record("account_read_balance", start, balance == null ? 0 : 1);
+        return balance;
     }
 
     /**
      * Method to read all accounts from the database.
+     * All accounts are kept in memory, large tables should be read with {@link #readPage} or {@link #streamAll()}.
      *
      * @return List of all accounts.
      */
     public static List<Account> readAll () {
+        long start = Metrics.start();
         List<Account> accounts = new ArrayList<>();
-        String sqlQuery = "SELECT * FROM accounts";
+        String sqlQuery = SELECT_ACCOUNTS;
 
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = ConnectionPool.getConnection();
              Statement statement = connection.createStatement();
              ResultSet resultSet = statement.executeQuery (sqlQuery)) {
+            AccountRowMapper mapper = new AccountRowMapper();
             while (resultSet.next()) {
-                Account account = getAccountFromResultSet(resultSet);
-                accounts.add(account);
+                accounts.add(mapper.map(resultSet));
             }
         }
         catch (SQLException e){
-            e.printStackTrace();
+            Metrics.recordFailure("account_read_all", e);
+        }
+        Metrics.record("account_read_all", start, accounts.size());
+        return accounts;
+    }
+
+    /**
+     * Reads one page of accounts ordered by ID, starting after the given ID.
+     * Unlike {@link #readAll()} the number of accounts read at once is bounded,
+     * and a page costs the same no matter how deep into the table it is.
+     *
+     * @param afterId The last ID of the previous page, or 0 for the first page.
+     * @param limit   The maximum number of accounts to read.
+     * @return The accounts of the page.
+     */
+    public static List<Account> readPage (int afterId, int limit) {
+        long start = Metrics.start();
+        List<Account> accounts = new ArrayList<>();
+        String sqlQuery = SELECT_ACCOUNTS + "WHERE a.id > ? ORDER BY a.id LIMIT ?";
+        try (Connection connection = ConnectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
+            statement.setInt(1, afterId);
+            statement.setInt(2, limit);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                AccountRowMapper mapper = new AccountRowMapper();
+                while (resultSet.next()) {
+                    accounts.add(mapper.map(resultSet));
+                }
+            }
+        }
+        catch (SQLException e) {
+            Metrics.recordFailure("account_read_page", e);
+        }
+        Metrics.record("account_read_page", start, accounts.size());
+        return accounts;
+    }
+
+    /**
+     * Returns all accounts ordered by ID as a lazy stream read through a server-side cursor.
+     * The stream holds a database connection until it is closed, so it must be used in a try-with-resources block.
+     *
+     * @return The stream of all accounts.
+     */
+    public static Stream<Account> streamAll () {
+        AccountRowMapper mapper = new AccountRowMapper(JdbcStreams.getFetchSize());
+        return Metrics.record("account_stream_all",
+                JdbcStreams.stream(SELECT_ACCOUNTS + "ORDER BY a.id", statement -> { }, mapper::map));
+    }
+
+    /**
+     * Retrieves all accounts of a bank with one query.
+     *
+     * @param bankId The ID of the bank.
+     * @return The accounts of the bank ordered by ID.
+     */
+    public static List<Account> readAllByBank (int bankId) {
+        long start = Metrics.start();
+        List<Account> accounts = new ArrayList<>();
+        String sqlQuery = SELECT_ACCOUNTS + "WHERE a.id_bank = ? ORDER BY a.id";
+        try (Connection connection = ConnectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
+            statement.setInt(1, bankId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                AccountRowMapper mapper = new AccountRowMapper();
+                while (resultSet.next()) {
+                    accounts.add(mapper.map(resultSet));
+                }
+            }
+        }
+        catch (SQLException e) {
+            Metrics.recordFailure("account_read_by_bank", e);
         }
+        Metrics.record("account_read_by_bank", start, accounts.size());
+        return accounts;
+    }
+
+    /**
+     * Retrieves all accounts of the given customers with one query.
+     *
+     * @param customerIds The IDs of the customers.
+     * @return The accounts of the customers ordered by ID.
+     */
+    public static List<Account> readAllByCustomers (Collection<Integer> customerIds) {
+        long start = Metrics.start();
+        List<Account> accounts = new ArrayList<>();
+        if (customerIds.isEmpty()) {
+            return accounts;
+        }
+        String sqlQuery = SELECT_ACCOUNTS + "WHERE a.id_customer = ANY (?) ORDER BY a.id";
+        try (Connection connection = ConnectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
+            statement.setArray(1, connection.createArrayOf("integer", customerIds.toArray()));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                AccountRowMapper mapper = new AccountRowMapper();
+                while (resultSet.next()) {
+                    accounts.add(mapper.map(resultSet));
+                }
+            }
+        }
+        catch (SQLException e) {
+            Metrics.recordFailure("account_read_by_customers", e);
+        }
+        Metrics.record("account_read_by_customers", start, accounts.size());
         return accounts;
     }
 
@@ -138,33 +317,37 @@ public class AccountRepository {
      * @return A list of accounts associated with the customer.
      */
     public static List<Account> redAllByCustomer (int customerId) {
+        long start = Metrics.start();
         List<Account> accounts = new ArrayList<>();
-        String sqlQuery = "SELECT * FROM accounts WHERE id_customer = ?";
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        String sqlQuery = SELECT_ACCOUNTS + "WHERE a.id_customer = ?";
+        try (Connection connection = ConnectionPool.getConnection();
              PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
             statement.setInt(1, customerId);
             ResultSet resultSet = statement.executeQuery();
+            AccountRowMapper mapper = new AccountRowMapper();
             while (resultSet.next()){
-                Account account = getAccountFromResultSet(resultSet);
-                accounts.add(account);
+                accounts.add(mapper.map(resultSet));
             }
         }
         catch (SQLException e){
-            e.printStackTrace();
+            Metrics.recordFailure("account_read_by_customer", e);
         }
+        Metrics.record("account_read_by_customer", start, accounts.size());
         return accounts;
     }
 
     /**
-     * Updates an existing account in the database.
+     * Updates an existing account in the database and removes it from the {@link AccountCache}.
      *
      * @param accountDTO The updated account information.
      */
     public static void update (Account accountDTO) {
+        long start = Metrics.start();
+        int rows = 0;
         String sqlQuery = "UPDATE accounts SET number = ?, balance = ?, currency = ?, open_date = ? " +
                 " WHERE id = ?";
 
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = ConnectionPool.getConnection();
              PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
 
             statement.setString(1, accountDTO.getAccountNumber());
@@ -173,100 +356,114 @@ public class AccountRepository {
             statement.setDate(4, new java.sql.Date(accountDTO.getOpeningDate().getTime()));
             statement.setInt(5, accountDTO.getId());
 
-            statement.executeUpdate();
+            rows = statement.executeUpdate();
         }
         catch (SQLException e) {
-            e.printStackTrace();
+            Metrics.recordFailure("account_update", e);
         }
+        AccountCache.invalidate(accountDTO.getId());
+        Metrics.record("account_update", start, rows);
     }
 
     /**
-     * Deletes an account from the database.
+     * Deletes an account from the database and removes it from the {@link AccountCache}.
      *
      * @param id The ID of the account to delete.
      */
     public void delete(int id) {
+        long start = Metrics.start();
+        int rows = 0;
         String query = "DELETE FROM accounts WHERE id = ?";
 
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = ConnectionPool.getConnection();
              PreparedStatement statement = connection.prepareStatement(query)) {
             statement.setInt(1, id);
-            statement.executeUpdate();
+            rows = statement.executeUpdate();
         }
         catch (SQLException e) {
-            e.printStackTrace();
+            Metrics.recordFailure("account_delete", e);
         }
+        AccountCache.invalidate(id);
+        Metrics.record("account_delete", start, rows);
     }
 
     /**
-     * Retrieves a bank from the database based on the bank ID.
-     *
-     * @param bankId The ID of the bank to retrieve.
-     * @return The bank entity with empty account list if found, null otherwise.
+     * Maps rows of the {@link #SELECT_ACCOUNTS} query to accounts.
+     * One mapper is used for one result set, and all accounts of the result set
+     * that belong to the same bank or customer share one Bank or Customer instance,
+     * taken from the reference data cache when it is there.
      */
-    private static Bank getBankById(int bankId) {
-        Bank bank = null;
-        String sqlQuery = "SELECT * FROM banks WHERE id = ?";
-        try (Connection connection = DriverManager.getConnection(url, username, password);
-             PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
-            statement.setInt(1, bankId);
-            ResultSet resultSet = statement.executeQuery();
-            if (resultSet.next()) {
-                String name = resultSet.getString("name");
-                bank = new Bank(bankId, name, null);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
+    private static class AccountRowMapper {
+        /**
+         * Banks already created for the current result set, by ID.
+         */
+        private final Map<Integer, Bank> banks = new HashMap<>();
+
+        /**
+         * Customers already created for the current result set, by ID.
+         */
+        private final Map<Integer, Customer> customers = new HashMap<>();
+
+        /**
+         * The number of customers kept in the map before it is cleared.
+         */
+        private final int maxCustomers;
+
+        /**
+         * Creates a mapper sharing banks and customers within the whole result set.
+         */
+        private AccountRowMapper () {
+            this(Integer.MAX_VALUE);
         }
-        return bank;
-    }
 
-    /**
-     * Retrieves a customer from the database based on the customer ID.
-     *
-     * @param customerId The ID of the customer to retrieve.
-     * @return The customer entity with empty account list if found, null otherwise.
-     */
-    private static Customer getCustomerById(int customerId) {
-        Customer customer = null;
-        String sqlQuery = "SELECT * FROM customers WHERE id = ?";
-        try (Connection connection = DriverManager.getConnection(url, username, password);
-             PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
-            statement.setInt(1, customerId);
-            ResultSet resultSet = statement.executeQuery();
-            if (resultSet.next()) {
-                String name = resultSet.getString("name");
-                List<Account> accounts = new ArrayList<>();
-                customer = new Customer(customerId, name, accounts);
-            }
-        } catch (SQLException e) {
-            e.printStackTrace();
+        /**
+         * Creates a mapper keeping at most the given number of customers,
+         * so a mapper of a stream over the whole table uses bounded memory.
+         *
+         * @param maxCustomers The number of customers kept in the map before it is cleared.
+         */
+        private AccountRowMapper (int maxCustomers) {
+            this.maxCustomers = maxCustomers;
         }
-        return customer;
-    }
 
-    /**
-     * Retrieves an Account object from a ResultSet.
-     * @param resultSet The ResultSet that resulting data set containing the account data.
-     * @return An Account entity if the data is successfully retrieved, otherwise null.
-     */
-    private static Account getAccountFromResultSet (ResultSet resultSet){
-        try {
+        /**
+         * Creates an Account entity from the current row of the result set.
+         *
+         * @param resultSet The result set positioned on an account row.
+         * @return The account with its bank and customer.
+         * @throws SQLException If a column cannot be read.
+         */
+        private Account map (ResultSet resultSet) throws SQLException {
             int id = resultSet.getInt("id");
-            String number = resultSet.getString ("number");
+            String number = resultSet.getString("number");
             BigDecimal balance = resultSet.getBigDecimal("balance");
             String currency = resultSet.getString("currency");
-            Date open_date = resultSet.getDate("open_date");
-            int bankId = resultSet.getInt("id_bank");
-            Bank bank = getBankById(bankId);
-            int customerId = resultSet.getInt("id_customer");
-            Customer customer = getCustomerById(customerId);
-            return new Account(id, number, balance, currency, open_date, bank, customer);
-        }
-        catch (SQLException e) {
-            e.printStackTrace();
-        }
+            Date openDate = resultSet.getDate("open_date");
+
+            Bank bank = null;
+            int bankId = resultSet.getInt("bank_id");
+            if (!resultSet.wasNull()) {
+                String bankName = resultSet.getString("bank_name");
+                bank = banks.computeIfAbsent(bankId, key -> {
+                    Bank cached = ReferenceDataCache.getBank(key);
+                    return cached != null ? cached : ReferenceDataCache.putBank(key, bankName);
+                });
+            }
 
-        return null;
+            Customer customer = null;
+            int customerId = resultSet.getInt("customer_id");
+            if (!resultSet.wasNull()) {
+                if (customers.size() >= maxCustomers) {
+                    customers.clear();
+                }
+                String customerName = resultSet.getString("customer_name");
+                customer = customers.computeIfAbsent(customerId, key -> {
+                    Customer cached = ReferenceDataCache.getCustomer(key);
+                    return cached != null ? cached : ReferenceDataCache.putCustomer(key, customerName);
+                });
+            }
+
+            return new Account(id, number, balance, currency, openDate, bank, customer);
+        }
     }
 }
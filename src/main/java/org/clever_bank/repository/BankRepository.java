@@ -1,9 +1,10 @@
 package org.clever_bank.repository;
 
+import org.clever_bank.db.ConnectionPool;
 import org.clever_bank.entities.Account;
 import org.clever_bank.entities.Bank;
 import org.clever_bank.entities.Customer;
-import org.clever_bank.services.AppConfig;
+import org.clever_bank.metrics.Metrics;
 
 import java.math.BigDecimal;
 import java.sql.*;
@@ -12,41 +13,23 @@ import java.util.List;
 
 public class BankRepository {
 
-    /**
-     * Application configuration.
-     * This class reads the configuration from the 'application.yml' file located in the resources' directory.
-     */
-    private static final AppConfig appConfig = new AppConfig();
-
-    /**
-     * URL for connecting to the database.
-     */
-    private static final String url = appConfig.getFullUrl();
-
-    /**
-     * Username for connecting to the database.
-     */
-    private static final String username = appConfig.getUsername();
-
-    /**
-     * Username for connecting to the database.
-     */
-    private static final String password = appConfig.getPassword();
-
     /**
      * Creates a new bank in the database.
      *
      * @param bank The bank entity to be created.
      */
     public static void create (Bank bank) {
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        long start = Metrics.start();
+        int rows = 0;
+        try (Connection connection = ConnectionPool.getConnection();
              PreparedStatement statement = connection.prepareStatement("INSERT INTO banks (name) values (?)")) {
             statement.setString(1, bank.getName());
-            statement.executeUpdate();
+            rows = statement.executeUpdate();
         }
         catch (SQLException e) {
-            e.printStackTrace();
+            Metrics.recordFailure("bank_create", e);
         }
+        Metrics.record("bank_create", start, rows);
     }
 
     /**
@@ -56,21 +39,23 @@ public class BankRepository {
      * @return The bank entity if found, null otherwise.
      */
     public static Bank read(int bankId) {
+        long start = Metrics.start();
         Bank bank = null;
         String sqlQuery = "SELECT * FROM banks WHERE id = ?";
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = ConnectionPool.getConnection();
              PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
             statement.setInt(1, bankId);
             ResultSet resultSet = statement.executeQuery();
             if (resultSet.next()) {
                 String name = resultSet.getString("name");
-                List<Account> accounts = getAccountsByBankId(bankId);
+                List<Account> accounts = getAccountsByBankId(connection, bankId);
                 bank = new Bank(bankId, name, accounts);
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            Metrics.recordFailure("bank_read", e);
         }
 
+        Metrics.record("bank_read", start, bank == null ? 0 : 1);
         return bank;
     }
 
@@ -80,23 +65,25 @@ public class BankRepository {
      * @return A list of all bank entities.
      */
     public static List<Bank> readAll() {
+        long start = Metrics.start();
         List<Bank> bankDTOList = new ArrayList<>();
 
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = ConnectionPool.getConnection();
              Statement statement = connection.createStatement();
              ResultSet resultSet = statement.executeQuery ("SELECT * FROM banks")) {
             while (resultSet.next()) {
                 int id = resultSet.getInt("id");
                 String name = resultSet.getString("name");
-                List<Account> accounts = getAccountsByBankId(id);
+                List<Account> accounts = getAccountsByBankId(connection, id);
                 Bank bankDTO = new Bank(id, name, accounts);
                 bankDTOList.add(bankDTO);
             }
         }
         catch (SQLException e) {
-            e.printStackTrace();
+            Metrics.recordFailure("bank_read_all", e);
         }
 
+        Metrics.record("bank_read_all", start, bankDTOList.size());
         return bankDTOList;
     }
 
@@ -107,57 +94,71 @@ public class BankRepository {
      * @return The bank entity if found, null otherwise.
      */
     public static Bank readByName(String name) {
+        long start = Metrics.start();
         Bank bank = null;
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = ConnectionPool.getConnection();
              PreparedStatement statement = connection.prepareStatement("SELECT * FROM banks WHERE name = ?")) {
             statement.setString(1, name);
             ResultSet resultSet = statement.executeQuery();
             if (resultSet.next()) {
                 int id = resultSet.getInt("id");
-                List<Account> accounts = getAccountsByBankId(id);
+                List<Account> accounts = getAccountsByBankId(connection, id);
                 bank = new Bank(id, name, accounts);
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            Metrics.recordFailure("bank_read_by_name", e);
         }
+        Metrics.record("bank_read_by_name", start, bank == null ? 0 : 1);
         return bank;
     }
 
     /**
-     * Updates a bank in the database.
+     * Updates a bank and its accounts in the database in one database transaction,
+     * so the bank is not reported as updated when one of its accounts is not.
      *
      * @param bank The bank entity to be updated.
+     * @throws RuntimeException If the bank or one of its accounts cannot be updated. No changes are kept in this case.
      */
     public static void update (Bank bank) {
-        try (Connection connection = DriverManager.getConnection(url, username, password);
-             PreparedStatement statement = connection.prepareStatement("UPDATE banks SET name = ? WHERE id = ?")) {
-            statement.setString(1, bank.getName());
-            statement.setInt(2, bank.getId());
+        long start = Metrics.start();
+        int rows = 0;
+        String accountQuery = "UPDATE accounts SET number = ?, balance = ?, currency = ?, open_date = ?, " +
+                "id_customer = ? WHERE id = ?";
+        try (Connection connection = ConnectionPool.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement("UPDATE banks SET name = ? WHERE id = ?");
+                 PreparedStatement accountStatement = connection.prepareStatement(accountQuery)) {
+                statement.setString(1, bank.getName());
+                statement.setInt(2, bank.getId());
+                rows = statement.executeUpdate();
+
+                for (Account account : bank.getAccounts()) {
+                    accountStatement.setString(1, account.getAccountNumber());
+                    accountStatement.setBigDecimal(2, account.getBalance());
+                    accountStatement.setString(3, account.getCurrency());
+                    accountStatement.setDate(4, new java.sql.Date(account.getOpeningDate().getTime()));
+                    accountStatement.setInt(5, account.getCustomer().getId());
+                    accountStatement.setInt(6, account.getId());
+                    accountStatement.executeUpdate();
+                }
+                connection.commit();
+            }
+            catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
         }
         catch (SQLException e) {
+            Metrics.recordFailure("bank_update", e);
             throw new RuntimeException(e);
         }
-        for (Account account : bank.getAccounts()) {
-            String sqlQuery = "UPDATE accounts SET number = ?, balance = ?, currency = ?, open_date = ?, " +
-                    "id_customer = ? WHERE id = ?";
-
-            try (Connection connection = DriverManager.getConnection(url, username, password);
-                 PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
-
-                statement.setString(1, account.getAccountNumber());
-                statement.setBigDecimal(2, account.getBalance());
-                statement.setString(3, account.getCurrency());
-                statement.setDate(4, new java.sql.Date(account.getOpeningDate().getTime()));
-                statement.setInt(5, account.getCustomer().getId());
-                statement.setInt(6, account.getId());
-
-                statement.executeUpdate();
-            }
-            catch (SQLException e) {
-                e.printStackTrace();
+        finally {
+            ReferenceDataCache.invalidateBank(bank.getId());
+            for (Account account : bank.getAccounts()) {
+                AccountCache.invalidate(account.getId());
             }
         }
-
+        Metrics.record("bank_update", start, rows);
     }
 
     /**
@@ -166,72 +167,59 @@ public class BankRepository {
      * @param bankId The ID of the bank to delete.
      */
     public static void deleteBank (int bankId) {
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        long start = Metrics.start();
+        int rows = 0;
+        try (Connection connection = ConnectionPool.getConnection();
              PreparedStatement statement = connection.prepareStatement("DELETE FROM banks WHERE id = ?")) {
             statement.setInt(1, bankId);
-            statement.executeUpdate();
+            rows = statement.executeUpdate();
 
         }
         catch (SQLException e) {
+            Metrics.recordFailure("bank_delete", e);
             throw new RuntimeException(e);
         }
+        ReferenceDataCache.invalidateBank(bankId);
+        Metrics.record("bank_delete", start, rows);
     }
 
     /**
-     * Retrieves a list of accounts associated with a bank.
+     * Retrieves a list of accounts associated with a bank together with their customers.
+     * The query runs on the connection of the caller, so reading a bank never holds a second pooled connection.
      *
-     * @param bankId The ID of the bank.
+     * @param connection The open connection of the caller.
+     * @param bankId     The ID of the bank.
      * @return A list of account entities associated with the bank.
+     * @throws SQLException If the accounts cannot be read.
      */
-    private static List<Account> getAccountsByBankId (int bankId) {
+    private static List<Account> getAccountsByBankId (Connection connection, int bankId) throws SQLException {
         List<Account> accounts = new ArrayList<>();
-        String sqlQuery = "SELECT * FROM accounts WHERE id_bank = ?";
-        try (Connection connection = DriverManager.getConnection(url, username, password);
-             PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
+        String sqlQuery = "SELECT a.id, a.number, a.balance, a.currency, a.open_date, " +
+                "c.id AS customer_id, c.name AS customer_name " +
+                "FROM accounts a " +
+                "LEFT JOIN customers c ON a.id_customer = c.id " +
+                "WHERE a.id_bank = ?";
+        try (PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
             statement.setInt(1, bankId);
-            ResultSet resultSet = statement.executeQuery();
-
-
-            while (resultSet.next()) {
-                int id = resultSet.getInt("id");
-                String number = resultSet.getString("number");
-                BigDecimal balance = resultSet.getBigDecimal("balance");
-                String currency = resultSet.getString("currency");
-                Date openDate = resultSet.getDate("open_date");
-                Customer customer = getCustomerByCustomerId(resultSet.getInt("id_customer"));
-                Account account = new Account(id, number, balance, currency, openDate, null, customer);
-                accounts.add(account);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    int id = resultSet.getInt("id");
+                    String number = resultSet.getString("number");
+                    BigDecimal balance = resultSet.getBigDecimal("balance");
+                    String currency = resultSet.getString("currency");
+                    Date openDate = resultSet.getDate("open_date");
+                    Customer customer = null;
+                    int customerId = resultSet.getInt("customer_id");
+                    if (!resultSet.wasNull()) {
+                        customer = ReferenceDataCache.getCustomer(customerId);
+                        if (customer == null) {
+                            customer = ReferenceDataCache.putCustomer(customerId, resultSet.getString("customer_name"));
+                        }
+                    }
+                    accounts.add(new Account(id, number, balance, currency, openDate, null, customer));
+                }
             }
         }
-        catch (SQLException e) {
-            e.printStackTrace();
-        }
         return accounts;
     }
-
-    /**
-     * Retrieves a customer from the database based on the customer ID.
-     *
-     * @param customerId The ID of the customer to retrieve.
-     * @return The customer entity if found, null otherwise.
-     */
-    private static Customer getCustomerByCustomerId (int customerId) {
-        String sqlQuery = "SELECT * FROM customers WHERE id = ?";
-        try (Connection connection = DriverManager.getConnection(url, username, password);
-             PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
-            statement.setInt(1, customerId);
-            ResultSet resultSet = statement.executeQuery();
-
-            if (resultSet.next()){
-                int id = resultSet.getInt("id");
-                String name = resultSet.getString("name");
-                return new Customer(id, name, new ArrayList<>());
-            }
-        }
-        catch (SQLException e) {
-            e.printStackTrace();
-        }
-        return null;
-    }
-
 }
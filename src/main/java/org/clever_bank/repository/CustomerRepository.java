@@ -1,77 +1,116 @@
 package org.clever_bank.repository;
 
+import org.clever_bank.db.ConnectionPool;
 import org.clever_bank.entities.Account;
 import org.clever_bank.entities.Bank;
 import org.clever_bank.entities.Customer;
-import org.clever_bank.services.AppConfig;
+import org.clever_bank.metrics.Metrics;
 
 import java.math.BigDecimal;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
 
 public class CustomerRepository {
-    /**
-     * Application configuration.
-     * This class reads the configuration from the 'application.yml' file located in the resources' directory.
-     */
-    private static final AppConfig appConfig = new AppConfig();
-
-    /**
-     * URL for connecting to the database.
-     */
-    private static final String url = appConfig.getFullUrl();
-
-    /**
-     * Username for connecting to the database.
-     */
-    private static final String username = appConfig.getUsername();
-
-    /**
-     * Username for connecting to the database.
-     */
-    private static final String password = appConfig.getPassword();
-
     /**
      * Creates a new customer in the database.
      *
      * @param customer is the customer entity to be created in DB.
      */
     public static void createCustomer (Customer customer) {
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        long start = Metrics.start();
+        int rows = 0;
+        try (Connection connection = ConnectionPool.getConnection();
              PreparedStatement statement = connection.prepareStatement("INSERT INTO customers (name) values (?)")) {
             statement.setString(1, customer.getName());
-            statement.executeUpdate();
+            rows = statement.executeUpdate();
         }
         catch (SQLException e) {
-            e.printStackTrace();
+            Metrics.recordFailure("customer_create", e);
         }
+        Metrics.record("customer_create", start, rows);
     }
 
     /**
      * Retrieves all customers from the database.
+     * All customers are kept in memory, large tables should be read with {@link #readCustomersPage} or {@link #streamAllCustomers()}.
      *
      * @return A list of Customer entities representing all customers in the database.
      */
     public static List<Customer> getAllCustomers () {
+        long start = Metrics.start();
         List<Customer> customerDTOList = new ArrayList<>();
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = ConnectionPool.getConnection();
              Statement statement = connection.createStatement();
              ResultSet resultSet = statement.executeQuery("SELECT * FROM customers")) {
             while (resultSet.next()) {
                 int id = resultSet.getInt("id");
                 String name = resultSet.getString("name");
-                List<Account> accounts = getAccountsByCustomerId(id);
+                List<Account> accounts = getAccountsByCustomerId(connection, id);
                 customerDTOList.add(new Customer (id, name, accounts));
             }
 
         }
         catch (SQLException e) {
+            Metrics.recordFailure("customer_read_all", e);
             throw new RuntimeException(e);
         }
+        Metrics.record("customer_read_all", start, customerDTOList.size());
         return customerDTOList;
     }
 
+    /**
+     * Reads one page of customers ordered by ID, starting after the given ID.
+     * The accounts of all customers of the page are read with one more query.
+     *
+     * @param afterId The last ID of the previous page, or 0 for the first page.
+     * @param limit   The maximum number of customers to read.
+     * @return The customers of the page with their accounts, or the customers read before a database error occurred.
+     */
+    public static List<Customer> readCustomersPage (int afterId, int limit) {
+        long start = Metrics.start();
+        Map<Integer, Customer> customers = new LinkedHashMap<>();
+        try (Connection connection = ConnectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(
+                     "SELECT id, name FROM customers WHERE id > ? ORDER BY id LIMIT ?")) {
+            statement.setInt(1, afterId);
+            statement.setInt(2, limit);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    int id = resultSet.getInt("id");
+                    customers.put(id, new Customer(id, resultSet.getString("name"), new ArrayList<>()));
+                }
+            }
+        }
+        catch (SQLException e) {
+            Metrics.recordFailure("customer_read_page", e);
+        }
+
+        for (Account account : AccountRepository.readAllByCustomers(customers.keySet())) {
+            Customer customer = customers.get(account.getCustomer().getId());
+            if (customer != null) {
+                customer.getAccounts().add(account);
+            }
+        }
+        Metrics.record("customer_read_page", start, customers.size());
+        return new ArrayList<>(customers.values());
+    }
+
+    /**
+     * Returns all customers with their accounts ordered by ID as a lazy stream.
+     * Customers are read by pages of 'statement_fetch_size', so the memory used does not depend on the size of the table
+     * and no connection is held between pages.
+     *
+     * @return The stream of all customers.
+     */
+    public static Stream<Customer> streamAllCustomers () {
+        return Metrics.record("customer_stream_all",
+                JdbcStreams.streamPages(CustomerRepository::readCustomersPage, Customer::getId, JdbcStreams.getFetchSize()));
+    }
+
     /**
      * Retrieves a customer from the database based on the specified ID.
      *
@@ -79,36 +118,40 @@ public class CustomerRepository {
      * @return The Customer entity representing the customer with the specified ID, or null if not found.
      */
     public static Customer getCustomerById (int id) {
+        long start = Metrics.start();
         Customer customer = null;
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = ConnectionPool.getConnection();
              PreparedStatement statement = connection.prepareStatement("SELECT * FROM customers WHERE id = ?")) {
             statement.setInt(1, id);
             ResultSet resultSet = statement.executeQuery();
             if (resultSet.next()) {
                 String name = resultSet.getString("name");
-                List<Account> accounts = getAccountsByCustomerId(id);
+                List<Account> accounts = getAccountsByCustomerId(connection, id);
                 customer = new Customer(id, name, accounts);
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            Metrics.recordFailure("customer_read", e);
         }
+        Metrics.record("customer_read", start, customer == null ? 0 : 1);
         return customer;
     }
 
     public static Customer getCustomerByName (String name) {
+        long start = Metrics.start();
         Customer customer = null;
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = ConnectionPool.getConnection();
              PreparedStatement statement = connection.prepareStatement("SELECT * FROM customers WHERE name = ?")) {
             statement.setString(1, name);
             ResultSet resultSet = statement.executeQuery();
             if (resultSet.next()) {
                 int id = resultSet.getInt("id");
-                List<Account> accounts = getAccountsByCustomerId(id);
+                List<Account> accounts = getAccountsByCustomerId(connection, id);
                 customer = new Customer(id, name, accounts);
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            Metrics.recordFailure("customer_read_by_name", e);
         }
+        Metrics.record("customer_read_by_name", start, customer == null ? 0 : 1);
         return customer;
     }
 
@@ -118,17 +161,23 @@ public class CustomerRepository {
      * @param customer The customer entity to be updated.
      */
     public static void updateCustomer (Customer customer) {
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        long start = Metrics.start();
+        int rows = 0;
+        try (Connection connection = ConnectionPool.getConnection();
              PreparedStatement statement = connection.prepareStatement("UPDATE customers SET name = ? WHERE id = ?")) {
             statement.setString(1, customer.getName());
             statement.setInt(2, customer.getId());
+            rows = statement.executeUpdate();
         }
         catch (SQLException e) {
+            Metrics.recordFailure("customer_update", e);
             throw new RuntimeException(e);
         }
+        ReferenceDataCache.invalidateCustomer(customer.getId());
         for (Account account : customer.getAccounts()) {
             AccountRepository.update(account);
         }
+        Metrics.record("customer_update", start, rows);
     }
 
     /**
@@ -137,67 +186,58 @@ public class CustomerRepository {
      * @param customer The customer entity to be deleted.
      */
     public static void deleteCustomer (Customer customer) {
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        long start = Metrics.start();
+        int rows = 0;
+        try (Connection connection = ConnectionPool.getConnection();
              PreparedStatement statement = connection.prepareStatement("DELETE FROM customers WHERE id = ?")) {
             statement.setInt(1, customer.getId());
-            statement.executeUpdate();
+            rows = statement.executeUpdate();
         }
         catch (SQLException e) {
+            Metrics.recordFailure("customer_delete", e);
             throw new RuntimeException(e);
         }
+        ReferenceDataCache.invalidateCustomer(customer.getId());
+        Metrics.record("customer_delete", start, rows);
     }
 
     /**
-     * Retrieves a list of accounts associated with a customer ID from the database.
+     * Retrieves a list of accounts associated with a customer ID from the database together with their banks.
+     * The query runs on the connection of the caller, so reading a customer never holds a second pooled connection.
      *
+     * @param connection The open connection of the caller.
      * @param customerId The ID of the customer.
      * @return A list of Account entities associated with the customer ID.
      * @throws SQLException If an SQL exception occurs.
      */
-    private static List<Account> getAccountsByCustomerId (int customerId) throws SQLException {
-        String selectQuery = "SELECT * FROM accounts WHERE id_customer = ?";
-        try (Connection connection = DriverManager.getConnection(url, username, password);
-             PreparedStatement statement = connection.prepareStatement(selectQuery)) {
+    private static List<Account> getAccountsByCustomerId (Connection connection, int customerId) throws SQLException {
+        String selectQuery = "SELECT a.id, a.number, a.balance, a.currency, a.open_date, " +
+                "b.id AS bank_id, b.name AS bank_name " +
+                "FROM accounts a " +
+                "LEFT JOIN banks b ON a.id_bank = b.id " +
+                "WHERE a.id_customer = ?";
+        try (PreparedStatement statement = connection.prepareStatement(selectQuery)) {
             statement.setInt(1, customerId);
-            ResultSet resultSet = statement.executeQuery();
-
-            List<Account> accounts = new ArrayList<>();
-            while (resultSet.next()) {
-                int id = resultSet.getInt("id");
-                String number = resultSet.getString("number");
-                BigDecimal balance = resultSet.getBigDecimal("balance");
-                String currency = resultSet.getString("currency");
-                Date openDate = resultSet.getDate("open_date");
-                Bank bank = getBankByBankId(resultSet.getInt("id_bank"));
-                Account account = new Account(id, number, balance, currency, openDate, bank, null);
-                accounts.add(account);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                List<Account> accounts = new ArrayList<>();
+                while (resultSet.next()) {
+                    int id = resultSet.getInt("id");
+                    String number = resultSet.getString("number");
+                    BigDecimal balance = resultSet.getBigDecimal("balance");
+                    String currency = resultSet.getString("currency");
+                    Date openDate = resultSet.getDate("open_date");
+                    Bank bank = null;
+                    int bankId = resultSet.getInt("bank_id");
+                    if (!resultSet.wasNull()) {
+                        bank = ReferenceDataCache.getBank(bankId);
+                        if (bank == null) {
+                            bank = ReferenceDataCache.putBank(bankId, resultSet.getString("bank_name"));
+                        }
+                    }
+                    accounts.add(new Account(id, number, balance, currency, openDate, bank, null));
+                }
+                return accounts;
             }
-            return accounts;
-        }
-    }
-
-    /**
-     * Retrieves a bank based on the specified bank ID from the database.
-     *
-     * @param customerId The ID of the bank.
-     * @return The Bank entity with empty list of accounts representing the bank with the specified ID, or null if not found.
-     */
-    private static Bank getBankByBankId (int customerId) {
-        String sqlQuery = "SELECT * FROM banks WHERE id = ?";
-        try (Connection connection = DriverManager.getConnection(url, username, password);
-             PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
-            statement.setInt(1, customerId);
-            ResultSet resultSet = statement.executeQuery();
-
-            if (resultSet.next()){
-                int id = resultSet.getInt("id");
-                String name = resultSet.getString("name");
-                return new Bank(id, name, new ArrayList<>());
-            }
-        }
-        catch (SQLException e) {
-            e.printStackTrace();
         }
-        return null;
     }
 }
@@ -0,0 +1,292 @@
+package org.clever_bank.repository;
+
+import org.clever_bank.db.ConnectionPool;
+import org.clever_bank.entities.MoneySummary;
+import org.clever_bank.metrics.Metrics;
+
+import java.sql.*;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+
+/**
+ * Repository class for the daily balance snapshots of accounts.
+ * Transactions of past UTC days are compacted into one row per account and day,
+ * so the summary of a long period reads a few snapshot rows and only the transactions
+ * of the days that are not compacted completely.
+ */
+public class DailyBalanceRepository {
+    /**
+     * Locks the watermark row and reads the first day that is not compacted yet.
+     */
+    private static final String LOCK_WATERMARK_QUERY = "SELECT compacted_until FROM daily_balances_watermark " +
+            "WHERE id = 1 FOR UPDATE";
+
+    /**
+     * Reads the first day that is not compacted yet.
+     */
+    private static final String READ_WATERMARK_QUERY = "SELECT compacted_until FROM daily_balances_watermark WHERE id = 1";
+
+    /**
+     * Moves the watermark.
+     */
+    private static final String UPDATE_WATERMARK_QUERY = "UPDATE daily_balances_watermark SET compacted_until = ? WHERE id = 1";
+
+    /**
+     * Moves the watermark back so that the days from the given one are compacted again.
+     * The watermark never moves before the archive boundary, because the transactions of archived months
+     * are no longer read by the compaction, which would overwrite their daily totals.
+     */
+    private static final String INVALIDATE_QUERY = "UPDATE daily_balances_watermark " +
+            "SET compacted_until = LEAST(compacted_until, " +
+            "GREATEST(?, (SELECT archived_until FROM transactions_archive_boundary WHERE id = 1))) WHERE id = 1";
+
+    /**
+     * Reads the date of the earliest transaction.
+     */
+    private static final String FIRST_TRANSACTION_DATE_QUERY = "SELECT MIN(date) AS first_date FROM transactions";
+
+    /**
+     * Recomputes the daily totals of all accounts for a range of days.
+     * Every transaction is counted once for the recipient as income (except withdrawals)
+     * and once for the sender as expense (withdrawals and transfers).
+     * The income of a transfer between currencies is the money credited in the currency of the recipient.
+     */
+    private static final String COMPACT_QUERY = "INSERT INTO account_daily_balances " +
+            "(id_account, day, total_in, total_out, operations) " +
+            "SELECT id_account, day, SUM(money_in), SUM(money_out), COUNT(*) FROM (" +
+            "SELECT id_recipient AS id_account, (date AT TIME ZONE 'UTC')::date AS day, " +
+            "COALESCE(credit_money, money) AS money_in, 0 AS money_out " +
+            "FROM transactions WHERE id_type <> 2 AND date >= ? AND date < ? " +
+            "UNION ALL " +
+            "SELECT id_sender, (date AT TIME ZONE 'UTC')::date, 0, money " +
+            "FROM transactions WHERE id_type IN (2, 3) AND date >= ? AND date < ?" +
+            ") movements " +
+            "WHERE id_account IS NOT NULL " +
+            "GROUP BY id_account, day " +
+            "ON CONFLICT (id_account, day) DO UPDATE SET " +
+            "total_in = EXCLUDED.total_in, total_out = EXCLUDED.total_out, operations = EXCLUDED.operations";
+
+    /**
+     * Sums the snapshots of the compacted days of a period and the transactions of the rest of it.
+     */
+    private static final String MONEY_SUMMARY_QUERY = "SELECT " +
+            "COALESCE(SUM(income), 0) AS income, " +
+            "COALESCE(SUM(expense), 0) AS expense, " +
+            "COALESCE(SUM(operations), 0) AS operations FROM (" +
+            "SELECT total_in AS income, total_out AS expense, operations FROM account_daily_balances " +
+            "WHERE id_account = ? AND day >= ? AND day < ? " +
+            "UNION ALL " +
+            "SELECT COALESCE(SUM(COALESCE(credit_money, money)) FILTER (WHERE id_recipient = ? AND id_type <> 2), 0), " +
+            "COALESCE(SUM(money) FILTER (WHERE id_sender = ? AND id_type IN (2, 3)), 0), " +
+            "COUNT(*) " +
+            "FROM transactions " +
+            "WHERE (id_sender = ? OR id_recipient = ?) " +
+            "AND ((date >= ? AND date < ?) OR (date >= ? AND date <= ?))" +
+            ") parts";
+
+    /**
+     * Calculates the money received and spent by an account within a specified period.
+     * Whole days before the watermark are read from the snapshots, the partial first day
+     * and the days that are not compacted yet are read from the transactions.
+     *
+     * @param accountId The ID of the account.
+     * @param dateStart The start date of the period.
+     * @param dateEnd   The end date of the period.
+     * @return The income, expense and number of transactions of the account within the period,
+     * or null if a database error occurs.
+     */
+    public static MoneySummary getMoneySummary (int accountId, Instant dateStart, Instant dateEnd) {
+        LocalDate watermark = readWatermark();
+        long start = Metrics.start();
+        MoneySummary summary = null;
+
+        // Whole days of the period that are already compacted
+        LocalDate firstDay = toDay(dateStart);
+        if (startOfDay(firstDay).isBefore(dateStart)) {
+            firstDay = firstDay.plusDays(1);
+        }
+        LocalDate lastDay = toDay(dateEnd);
+        if (watermark == null || watermark.isBefore(lastDay)) {
+            lastDay = watermark;
+        }
+        if (lastDay == null || !firstDay.isBefore(lastDay)) {
+            return TransactionRepository.getMoneySummary(accountId, dateStart, dateEnd);
+        }
+
+        try (Connection connection = ConnectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(MONEY_SUMMARY_QUERY)) {
+            statement.setInt(1, accountId);
+            statement.setDate(2, java.sql.Date.valueOf(firstDay));
+            statement.setDate(3, java.sql.Date.valueOf(lastDay));
+            statement.setInt(4, accountId);
+            statement.setInt(5, accountId);
+            statement.setInt(6, accountId);
+            statement.setInt(7, accountId);
+            statement.setTimestamp(8, Timestamp.from(dateStart));
+            statement.setTimestamp(9, Timestamp.from(startOfDay(firstDay)));
+            statement.setTimestamp(10, Timestamp.from(startOfDay(lastDay)));
+            statement.setTimestamp(11, Timestamp.from(dateEnd));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    summary = new MoneySummary(accountId,
+                            resultSet.getBigDecimal("income"),
+                            resultSet.getBigDecimal("expense"),
+                            resultSet.getLong("operations"));
+                }
+            }
+        }
+        catch (SQLException e) {
+            Metrics.recordFailure("daily_balance_money_summary", e);
+        }
+        Metrics.record("daily_balance_money_summary", start, summary == null ? 0 : 1);
+        return summary;
+    }
+
+    /**
+     * Compacts the transactions of one range of days, starting from the watermark.
+     * The range ends before the given day and is at most the given number of days long.
+     * The daily totals and the watermark are updated in one database transaction,
+     * so a step interrupted by a failure is repeated completely by the next one.
+     *
+     * @param until   The first day that must not be compacted, normally today.
+     * @param maxDays The maximum number of days compacted by this step.
+     * @return true if days were compacted and more days may be pending, false if the snapshots are up to date.
+     * @throws SQLException If the step cannot be completed. No changes are kept in this case.
+     */
+    public static boolean compactStep (LocalDate until, int maxDays) throws SQLException {
+        try (Connection connection = ConnectionPool.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                LocalDate from;
+                boolean hasWatermark;
+                try (PreparedStatement statement = connection.prepareStatement(LOCK_WATERMARK_QUERY);
+                     ResultSet resultSet = statement.executeQuery()) {
+                    hasWatermark = resultSet.next();
+                    java.sql.Date compactedUntil = hasWatermark ? resultSet.getDate("compacted_until") : null;
+                    from = compactedUntil == null ? null : compactedUntil.toLocalDate();
+                }
+                if (!hasWatermark) {
+                    connection.rollback();
+                    return false;
+                }
+                if (from == null) {
+                    from = readFirstTransactionDay(connection, until);
+                }
+
+                LocalDate to = from.plusDays(Math.max(1, maxDays));
+                if (to.isAfter(until)) {
+                    to = until;
+                }
+                if (!from.isBefore(to)) {
+                    connection.rollback();
+                    return false;
+                }
+
+                try (PreparedStatement statement = connection.prepareStatement(COMPACT_QUERY)) {
+                    statement.setTimestamp(1, Timestamp.from(startOfDay(from)));
+                    statement.setTimestamp(2, Timestamp.from(startOfDay(to)));
+                    statement.setTimestamp(3, Timestamp.from(startOfDay(from)));
+                    statement.setTimestamp(4, Timestamp.from(startOfDay(to)));
+                    statement.executeUpdate();
+                }
+                try (PreparedStatement statement = connection.prepareStatement(UPDATE_WATERMARK_QUERY)) {
+                    statement.setDate(1, java.sql.Date.valueOf(to));
+                    statement.executeUpdate();
+                }
+                connection.commit();
+                return to.isBefore(until);
+            }
+            catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Moves the watermark back to the given day, so that the snapshots from this day are recomputed.
+     * Must be called after transactions with a date in a compacted day are inserted, for example by an import.
+     * Days of archived months are not compacted again.
+     *
+     * @param day The first day to compact again.
+     */
+    public static void invalidateFrom (LocalDate day) {
+        long start = Metrics.start();
+        try (Connection connection = ConnectionPool.getConnection()) {
+            invalidateFrom(connection, day);
+        }
+        catch (SQLException e) {
+            Metrics.recordFailure("daily_balance_invalidate", e);
+        }
+        Metrics.record("daily_balance_invalidate", start, 1);
+    }
+
+    /**
+     * Moves the watermark back to the given day on the given connection,
+     * so that it is moved in the same database transaction as the insert of the transactions of this day.
+     *
+     * @param connection The connection to use.
+     * @param day        The first day to compact again.
+     * @throws SQLException If a database error occurs.
+     */
+    public static void invalidateFrom (Connection connection, LocalDate day) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(INVALIDATE_QUERY)) {
+            statement.setDate(1, java.sql.Date.valueOf(day));
+            statement.executeUpdate();
+        }
+    }
+
+    /**
+     * @return The first day that is not compacted yet, or null if nothing is compacted or a database error occurs.
+     */
+    public static LocalDate readWatermark () {
+        long start = Metrics.start();
+        LocalDate watermark = null;
+        try (Connection connection = ConnectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(READ_WATERMARK_QUERY);
+             ResultSet resultSet = statement.executeQuery()) {
+            if (resultSet.next()) {
+                java.sql.Date compactedUntil = resultSet.getDate("compacted_until");
+                watermark = compactedUntil == null ? null : compactedUntil.toLocalDate();
+            }
+        }
+        catch (SQLException e) {
+            Metrics.recordFailure("daily_balance_read_watermark", e);
+        }
+        Metrics.record("daily_balance_read_watermark", start, watermark == null ? 0 : 1);
+        return watermark;
+    }
+
+    /**
+     * @param connection The connection to use.
+     * @param until      The day returned if there are no transactions.
+     * @return The UTC day of the earliest transaction.
+     * @throws SQLException If a database error occurs.
+     */
+    private static LocalDate readFirstTransactionDay (Connection connection, LocalDate until) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(FIRST_TRANSACTION_DATE_QUERY);
+             ResultSet resultSet = statement.executeQuery()) {
+            if (resultSet.next() && resultSet.getTimestamp("first_date") != null) {
+                return toDay(resultSet.getTimestamp("first_date").toInstant());
+            }
+        }
+        return until;
+    }
+
+    /**
+     * @param instant The instant.
+     * @return The UTC day of the instant.
+     */
+    private static LocalDate toDay (Instant instant) {
+        return instant.atZone(ZoneOffset.UTC).toLocalDate();
+    }
+
+    /**
+     * @param day The UTC day.
+     * @return The instant the day starts at.
+     */
+    private static Instant startOfDay (LocalDate day) {
+        return day.atStartOfDay(ZoneOffset.UTC).toInstant();
+    }
+}
@@ -0,0 +1,47 @@
+package org.clever_bank.repository;
+
+import org.clever_bank.db.ConnectionPool;
+import org.clever_bank.entities.ExchangeRate;
+import org.clever_bank.metrics.Metrics;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Repository class for reading the exchange rates of currencies.
+ */
+public class ExchangeRateRepository {
+    /**
+     * Selects all exchange rates.
+     */
+    private static final String SELECT_RATES = "SELECT currency_from, currency_to, rate FROM exchange_rates";
+
+    /**
+     * Reads all exchange rates from the database.
+     *
+     * @return The exchange rates.
+     * @throws SQLException If the rates cannot be read. The caller keeps the rates it already has in this case.
+     */
+    public static List<ExchangeRate> readAll () throws SQLException {
+        long start = Metrics.start();
+        List<ExchangeRate> rates = new ArrayList<>();
+        try (Connection connection = ConnectionPool.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(SELECT_RATES)) {
+            while (resultSet.next()) {
+                rates.add(new ExchangeRate(resultSet.getString("currency_from"),
+                        resultSet.getString("currency_to"),
+                        resultSet.getBigDecimal("rate")));
+            }
+        }
+        catch (SQLException e) {
+            Metrics.recordFailure("exchange_rate_read_all", e);
+            throw e;
+        }
+        finally {
+            Metrics.record("exchange_rate_read_all", start, rates.size());
+        }
+        return rates;
+    }
+}
@@ -0,0 +1,175 @@
+package org.clever_bank.repository;
+
+import org.clever_bank.db.ConnectionPool;
+import org.clever_bank.metrics.Metrics;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.*;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Repository class for applying monthly interest to the balances of accounts.
+ */
+public class InterestRepository {
+    /**
+     * The ID of the interest transaction type.
+     */
+    public static final int INTEREST_TYPE_ID = 4;
+
+    /**
+     * Selects the next page of accounts with due interest, using the account ID as the key of the page.
+     */
+    private static final String DUE_ACCOUNTS_QUERY = "SELECT id FROM accounts " +
+            "WHERE interest_date <= ? AND id > ? " +
+            "ORDER BY id " +
+            "LIMIT ?";
+
+    /**
+     * Locks the accounts of a chunk that still have due interest.
+     */
+    private static final String LOCK_DUE_ACCOUNTS_QUERY = "SELECT id, balance, interest_date FROM accounts " +
+            "WHERE id = ANY (?) AND interest_date <= ? " +
+            "ORDER BY id " +
+            "FOR UPDATE";
+
+    /**
+     * Adds the interest to the balance and moves the interest date forward.
+     * The interest date in the condition makes the update a no-op if the interest has already been applied.
+     */
+    private static final String APPLY_INTEREST_QUERY = "UPDATE accounts SET balance = balance + ?, interest_date = ? " +
+            "WHERE id = ? AND interest_date = ?";
+
+    /**
+     * Records the accrued interest as a transaction of the account.
+     */
+    private static final String INSERT_INTEREST_TRANSACTION_QUERY = "INSERT INTO transactions " +
+            "(date, money, id_type, id_sender, id_recipient) VALUES (?, ?, ?, ?, ?)";
+
+    /**
+     * Reads the next page of IDs of accounts whose interest date is not later than the given date.
+     *
+     * @param date    The date of the accrual.
+     * @param afterId The last ID of the previous page, or 0 for the first page.
+     * @param limit   The maximum number of IDs to read.
+     * @return The IDs of the accounts in ascending order.
+     */
+    public static List<Integer> readDueAccountIds (LocalDate date, int afterId, int limit) {
+        long start = Metrics.start();
+        List<Integer> accountIds = new ArrayList<>();
+        try (Connection connection = ConnectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(DUE_ACCOUNTS_QUERY)) {
+            statement.setDate(1, java.sql.Date.valueOf(date));
+            statement.setInt(2, afterId);
+            statement.setInt(3, limit);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    accountIds.add(resultSet.getInt("id"));
+                }
+            }
+        }
+        catch (SQLException e) {
+            Metrics.recordFailure("interest_read_due_accounts", e);
+        }
+        Metrics.record("interest_read_due_accounts", start, accountIds.size());
+        return accountIds;
+    }
+
+    /**
+     * Applies the interest to a chunk of accounts in one database transaction.
+     * For every account the interest of each month due up to the given date is compounded,
+     * the balance and the interest date are updated by one JDBC batch and the accrued interest
+     * is recorded as a transaction by another.
+     * The accounts are locked while the chunk is processed, and an account whose interest date
+     * is already in the future is skipped, so a chunk can be repeated safely after a failure.
+     * The accounts of the chunk are removed from the {@link AccountCache} after the commit.
+     *
+     * @param accountIds  The IDs of the accounts of the chunk.
+     * @param date        The date of the accrual.
+     * @param monthlyRate The monthly interest rate as a fraction, for example 0.01 for 1%.
+     * @return The number of accounts the interest was applied to.
+     * @throws SQLException If the chunk cannot be processed. No changes of the chunk are kept in this case.
+     */
+    public static int applyInterest (List<Integer> accountIds, LocalDate date, BigDecimal monthlyRate) throws SQLException {
+        try (Connection connection = ConnectionPool.getConnection()) {
+            connection.setAutoCommit(false);
+            int applied = 0;
+            Timestamp now = Timestamp.from(Instant.now());
+
+            try (PreparedStatement lockStatement = connection.prepareStatement(LOCK_DUE_ACCOUNTS_QUERY);
+                 PreparedStatement updateStatement = connection.prepareStatement(APPLY_INTEREST_QUERY);
+                 PreparedStatement insertStatement = connection.prepareStatement(INSERT_INTEREST_TRANSACTION_QUERY)) {
+
+                lockStatement.setArray(1, connection.createArrayOf("integer", accountIds.toArray()));
+                lockStatement.setDate(2, java.sql.Date.valueOf(date));
+
+                try (ResultSet resultSet = lockStatement.executeQuery()) {
+                    while (resultSet.next()) {
+                        int accountId = resultSet.getInt("id");
+                        BigDecimal balance = resultSet.getBigDecimal("balance");
+                        LocalDate interestDate = resultSet.getDate("interest_date").toLocalDate();
+
+                        // Compounding every month that is due
+                        BigDecimal interest = BigDecimal.ZERO;
+                        LocalDate nextInterestDate = interestDate;
+                        while (!nextInterestDate.isAfter(date)) {
+                            if (balance != null && balance.signum() > 0) {
+                                interest = interest.add(balance.add(interest)
+                                        .multiply(monthlyRate)
+                                        .setScale(2, RoundingMode.HALF_UP));
+                            }
+                            nextInterestDate = getNextInterestDate(nextInterestDate);
+                        }
+
+                        updateStatement.setBigDecimal(1, interest);
+                        updateStatement.setDate(2, java.sql.Date.valueOf(nextInterestDate));
+                        updateStatement.setInt(3, accountId);
+                        updateStatement.setDate(4, java.sql.Date.valueOf(interestDate));
+                        updateStatement.addBatch();
+
+                        if (interest.signum() > 0) {
+                            insertStatement.setTimestamp(1, now);
+                            insertStatement.setBigDecimal(2, interest);
+                            insertStatement.setInt(3, INTEREST_TYPE_ID);
+                            insertStatement.setInt(4, accountId);
+                            insertStatement.setInt(5, accountId);
+                            insertStatement.addBatch();
+                        }
+                        applied++;
+                    }
+                }
+
+                updateStatement.executeBatch();
+                insertStatement.executeBatch();
+                connection.commit();
+            }
+            catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+            for (Integer accountId : accountIds) {
+                AccountCache.invalidate(accountId);
+            }
+            return applied;
+        }
+    }
+
+    /**
+     * Returns the interest date one month after the given one.
+     * An interest date on the last day of a month moves to the last day of the next month.
+     *
+     * @param interestDate The current interest date.
+     * @return The next interest date.
+     */
+    private static LocalDate getNextInterestDate (LocalDate interestDate) {
+        LocalDate nextDate = interestDate.plusMonths(1);
+        if (interestDate.getDayOfMonth() == interestDate.lengthOfMonth()) {
+            nextDate = nextDate.with(TemporalAdjusters.lastDayOfMonth());
+        }
+        return nextDate;
+    }
+}
@@ -0,0 +1,185 @@
+package org.clever_bank.repository;
+
+import org.clever_bank.db.ConnectionPool;
+import org.clever_bank.services.AppConfig;
+
+import java.sql.*;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Helpers for reading large tables in bounded memory.
+ * A cursor stream holds one connection and a server-side cursor until it is closed,
+ * a page stream reads keyset pages one after another and holds a connection only while a page is read.
+ */
+public class JdbcStreams {
+    /**
+     * Application configuration.
+     * This class reads the configuration from the 'application.yml' file located in the resources' directory.
+     */
+    private static final AppConfig appConfig = new AppConfig();
+
+    /**
+     * The number of rows fetched from a cursor at a time.
+     */
+    private static final int fetchSize = appConfig.getStatementFetchSize();
+
+    /**
+     * Sets the parameters of a statement.
+     */
+    @FunctionalInterface
+    public interface ParameterSetter {
+        void set (PreparedStatement statement) throws SQLException;
+    }
+
+    /**
+     * Creates an entity from the current row of a result set.
+     */
+    @FunctionalInterface
+    public interface RowMapper<T> {
+        T map (ResultSet resultSet) throws SQLException;
+    }
+
+    /**
+     * Reads one keyset page: at most 'limit' entities with a key greater than 'afterKey', in key order.
+     */
+    @FunctionalInterface
+    public interface PageReader<T> {
+        List<T> read (int afterKey, int limit);
+    }
+
+    /**
+     * Returns the rows of a query as a lazy stream backed by a server-side cursor.
+     * Rows are fetched 'statement_fetch_size' at a time, so the memory used does not depend on the number of rows.
+     * The stream holds a pooled connection until it is closed and must be used in a try-with-resources block.
+     * A database error while the stream is consumed is thrown as a RuntimeException.
+     *
+     * @param sqlQuery The query.
+     * @param setter   Sets the parameters of the query.
+     * @param mapper   Creates an entity from a row.
+     * @return The stream of entities.
+     */
+    public static <T> Stream<T> stream (String sqlQuery, ParameterSetter setter, RowMapper<T> mapper) {
+        Connection connection = null;
+        PreparedStatement statement = null;
+        ResultSet resultSet;
+        try {
+            connection = ConnectionPool.getConnection();
+            // PostgreSQL uses a cursor only inside a transaction
+            connection.setAutoCommit(false);
+            statement = connection.prepareStatement(sqlQuery, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(fetchSize);
+            setter.set(statement);
+            resultSet = statement.executeQuery();
+        }
+        catch (SQLException e) {
+            close(null, statement, connection);
+            throw new RuntimeException(e);
+        }
+
+        Connection streamConnection = connection;
+        PreparedStatement streamStatement = statement;
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            @Override
+            public boolean tryAdvance (Consumer<? super T> action) {
+                try {
+                    if (!resultSet.next()) {
+                        return false;
+                    }
+                    action.accept(mapper.map(resultSet));
+                    return true;
+                }
+                catch (SQLException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        return StreamSupport.stream(spliterator, false)
+                .onClose(() -> close(resultSet, streamStatement, streamConnection));
+    }
+
+    /**
+     * Returns the entities read by keyset pages as a lazy stream.
+     * The next page is read when the previous one is consumed, starting after the key of its last entity.
+     *
+     * @param reader   Reads a page.
+     * @param keyOf    Returns the key of an entity, the same key the pages are ordered by.
+     * @param pageSize The number of entities in a page.
+     * @return The stream of entities.
+     */
+    public static <T> Stream<T> streamPages (PageReader<T> reader, ToIntFunction<T> keyOf, int pageSize) {
+        int limit = Math.max(1, pageSize);
+        Spliterator<T> spliterator = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+            private final Deque<T> page = new ArrayDeque<>();
+            private int afterKey = 0;
+            private boolean lastPage = false;
+
+            @Override
+            public boolean tryAdvance (Consumer<? super T> action) {
+                if (page.isEmpty() && !lastPage) {
+                    List<T> entities = reader.read(afterKey, limit);
+                    lastPage = entities.size() < limit;
+                    if (!entities.isEmpty()) {
+                        afterKey = keyOf.applyAsInt(entities.get(entities.size() - 1));
+                        page.addAll(entities);
+                    }
+                }
+                T entity = page.pollFirst();
+                if (entity == null) {
+                    return false;
+                }
+                action.accept(entity);
+                return true;
+            }
+        };
+        return StreamSupport.stream(spliterator, false);
+    }
+
+    /**
+     * @return the number of rows read at a time, also used as the default page size.
+     */
+    public static int getFetchSize () {
+        return Math.max(1, fetchSize);
+    }
+
+    /**
+     * Closes the resources of a cursor stream and returns the connection to the pool.
+     *
+     * @param resultSet  The result set, or null.
+     * @param statement  The statement, or null.
+     * @param connection The connection, or null.
+     */
+    private static void close (ResultSet resultSet, PreparedStatement statement, Connection connection) {
+        try {
+            if (resultSet != null) {
+                resultSet.close();
+            }
+            if (statement != null) {
+                statement.close();
+            }
+        }
+        catch (SQLException e) {
+            e.printStackTrace();
+        }
+        finally {
+            // The pool rolls back the read-only transaction when the connection is returned
+            if (connection != null) {
+                try {
+                    connection.close();
+                }
+                catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package org.clever_bank.repository;
+
+import org.clever_bank.db.ConnectionPool;
+import org.clever_bank.entities.Bank;
+import org.clever_bank.entities.Customer;
+import org.clever_bank.entities.TransactionType;
+import org.clever_bank.services.AppConfig;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Identity-map cache of reference data: transaction types, banks and customers.
+ * Transaction types and banks are small tables that rarely change, so they are loaded completely at startup.
+ * Customers are kept in a bounded cache that evicts the least recently used entry.
+ * Cached entities are shared between callers and must not be modified.
+ */
+public class ReferenceDataCache {
+    /**
+     * Application configuration.
+     * This class reads the configuration from the 'application.yml' file located in the resources' directory.
+     */
+    private static final AppConfig appConfig = new AppConfig();
+
+    /**
+     * The maximum number of cached customers.
+     */
+    private static final int customerCacheSize = Math.max(1, appConfig.getCustomerCacheSize());
+
+    /**
+     * Transaction types by ID.
+     */
+    private static final Map<Integer, TransactionType> transactionTypes = new ConcurrentHashMap<>();
+
+    /**
+     * Banks by ID. The cached banks have no list of accounts.
+     */
+    private static final Map<Integer, Bank> banks = new ConcurrentHashMap<>();
+
+    /**
+     * Customers by ID in access order. The cached customers have an empty list of accounts.
+     */
+    private static final Map<Integer, Customer> customers = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, Customer> eldest) {
+            return size() > customerCacheSize;
+        }
+    };
+
+    /**
+     * The number of transaction type lookups served from the cache.
+     */
+    private static final AtomicLong transactionTypeHits = new AtomicLong();
+
+    /**
+     * The number of transaction type lookups that missed the cache.
+     */
+    private static final AtomicLong transactionTypeMisses = new AtomicLong();
+
+    /**
+     * The number of bank lookups served from the cache.
+     */
+    private static final AtomicLong bankHits = new AtomicLong();
+
+    /**
+     * The number of bank lookups that missed the cache.
+     */
+    private static final AtomicLong bankMisses = new AtomicLong();
+
+    /**
+     * The number of customer lookups served from the cache.
+     */
+    private static final AtomicLong customerHits = new AtomicLong();
+
+    /**
+     * The number of customer lookups that missed the cache.
+     */
+    private static final AtomicLong customerMisses = new AtomicLong();
+
+    /**
+     * Loads all transaction types and banks from the database.
+     * Called once at startup, after the database is set up.
+     */
+    public static void load () {
+        try (Connection connection = ConnectionPool.getConnection();
+             Statement statement = connection.createStatement()) {
+            try (ResultSet resultSet = statement.executeQuery("SELECT id, name FROM types")) {
+                while (resultSet.next()) {
+                    int id = resultSet.getInt("id");
+                    transactionTypes.put(id, new TransactionType(id, resultSet.getString("name")));
+                }
+            }
+            try (ResultSet resultSet = statement.executeQuery("SELECT id, name FROM banks")) {
+                while (resultSet.next()) {
+                    int id = resultSet.getInt("id");
+                    banks.put(id, new Bank(id, resultSet.getString("name"), null));
+                }
+            }
+        }
+        catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * @param id The ID of the transaction type.
+     * @return The cached transaction type, or null if it is not cached.
+     */
+    public static TransactionType getTransactionType (int id) {
+        return count(transactionTypes.get(id), transactionTypeHits, transactionTypeMisses);
+    }
+
+    /**
+     * @param type The transaction type read from the database.
+     */
+    public static void putTransactionType (TransactionType type) {
+        transactionTypes.put(type.getId(), type);
+    }
+
+    /**
+     * @param id The ID of the bank.
+     * @return The cached bank without accounts, or null if it is not cached.
+     */
+    public static Bank getBank (int id) {
+        return count(banks.get(id), bankHits, bankMisses);
+    }
+
+    /**
+     * Caches a bank. The list of accounts is not cached.
+     *
+     * @param id   The ID of the bank.
+     * @param name The name of the bank.
+     * @return The cached bank.
+     */
+    public static Bank putBank (int id, String name) {
+        Bank bank = new Bank(id, name, null);
+        banks.put(id, bank);
+        return bank;
+    }
+
+    /**
+     * Removes a bank from the cache after it was changed or deleted.
+     *
+     * @param id The ID of the bank.
+     */
+    public static void invalidateBank (int id) {
+        banks.remove(id);
+    }
+
+    /**
+     * @param id The ID of the customer.
+     * @return The cached customer with an empty list of accounts, or null if it is not cached.
+     */
+    public static Customer getCustomer (int id) {
+        Customer customer;
+        synchronized (customers) {
+            customer = customers.get(id);
+        }
+        return count(customer, customerHits, customerMisses);
+    }
+
+    /**
+     * Caches a customer. The list of accounts is not cached.
+     *
+     * @param id   The ID of the customer.
+     * @param name The name of the customer.
+     * @return The cached customer.
+     */
+    public static Customer putCustomer (int id, String name) {
+        Customer customer = new Customer(id, name, new ArrayList<>());
+        synchronized (customers) {
+            customers.put(id, customer);
+        }
+        return customer;
+    }
+
+    /**
+     * Removes a customer from the cache after it was changed or deleted.
+     *
+     * @param id The ID of the customer.
+     */
+    public static void invalidateCustomer (int id) {
+        synchronized (customers) {
+            customers.remove(id);
+        }
+    }
+
+    /**
+     * @return the number of transaction type lookups served from the cache.
+     */
+    public static long getTransactionTypeHits () {
+        return transactionTypeHits.get();
+    }
+
+    /**
+     * @return the number of transaction type lookups that missed the cache.
+     */
+    public static long getTransactionTypeMisses () {
+        return transactionTypeMisses.get();
+    }
+
+    /**
+     * @return the number of bank lookups served from the cache.
+     */
+    public static long getBankHits () {
+        return bankHits.get();
+    }
+
+    /**
+     * @return the number of bank lookups that missed the cache.
+     */
+    public static long getBankMisses () {
+        return bankMisses.get();
+    }
+
+    /**
+     * @return the number of customer lookups served from the cache.
+     */
+    public static long getCustomerHits () {
+        return customerHits.get();
+    }
+
+    /**
+     * @return the number of customer lookups that missed the cache.
+     */
+    public static long getCustomerMisses () {
+        return customerMisses.get();
+    }
+
+    /**
+     * @return a short human-readable summary of the cache hits and misses.
+     */
+    public static String getStatistics () {
+        return String.format("types: %d hits / %d misses, banks: %d hits / %d misses, customers: %d hits / %d misses",
+                getTransactionTypeHits(), getTransactionTypeMisses(),
+                getBankHits(), getBankMisses(),
+                getCustomerHits(), getCustomerMisses());
+    }
+
+    /**
+     * Counts a cache lookup as a hit or a miss.
+     *
+     * @param value  The value found in the cache, or null.
+     * @param hits   The counter of hits.
+     * @param misses The counter of misses.
+     * @return The value.
+     */
+    private static <T> T count (T value, AtomicLong hits, AtomicLong misses) {
+        if (value == null) {
+            misses.incrementAndGet();
+        }
+        else {
+            hits.incrementAndGet();
+        }
+        return value;
+    }
+}
@@ -0,0 +1,130 @@
+package org.clever_bank.repository;
+
+import org.clever_bank.db.ConnectionPool;
+import org.clever_bank.entities.ImportBatchResult;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.*;
+import java.time.ZoneOffset;
+
+/**
+ * Repository class for importing transactions in bulk.
+ * A batch is streamed into a temporary staging table with COPY, then inserted into the transactions table
+ * and applied to the balances of the accounts with one set-based statement.
+ * Every row is identified by an import key derived from the name of the file, the line number and the values of the row.
+ * The keys of imported rows are kept in the 'transaction_imports' table, so a row imported again is skipped.
+ */
+public class TransactionImportRepository {
+    /**
+     * Creates the staging table of the batch. The table is dropped when the transaction ends.
+     */
+    private static final String CREATE_STAGING_TABLE = "CREATE TEMP TABLE transaction_import (" +
+            "date TIMESTAMPTZ," +
+            "money NUMERIC," +
+            "id_type INT," +
+            "id_sender INT," +
+            "id_recipient INT," +
+            "line BIGINT" +
+            ") ON COMMIT DROP";
+
+    /**
+     * Copies the CSV rows of the batch into the staging table.
+     */
+    private static final String COPY_QUERY = "COPY transaction_import (date, money, id_type, id_sender, id_recipient, line) " +
+            "FROM STDIN WITH (FORMAT csv)";
+
+    /**
+     * Inserts the valid staged rows whose import key is not imported yet and applies them to the balances:
+     * deposits, transfers and interest credit the recipient, withdrawals and transfers debit the sender.
+     * The changes of every account are summed first, so each account is updated once per batch.
+     * The only parameter is the name of the imported file.
+     */
+    private static final String APPLY_QUERY = "WITH staged AS (" +
+            "SELECT s.*, md5(concat_ws(',', ?::text, s.line, s.date AT TIME ZONE 'UTC', s.money, s.id_type, s.id_sender, s.id_recipient))::uuid " +
+            "AS import_key FROM transaction_import s " +
+            "WHERE s.date IS NOT NULL AND s.money > 0 " +
+            "AND NOT EXISTS (SELECT 1 FROM transactions_archive_boundary b " +
+            "WHERE s.date < b.archived_until::timestamp AT TIME ZONE 'UTC') " +
+            "AND EXISTS (SELECT 1 FROM types t WHERE t.id = s.id_type) " +
+            "AND EXISTS (SELECT 1 FROM accounts a WHERE a.id = s.id_sender) " +
+            "AND EXISTS (SELECT 1 FROM accounts a WHERE a.id = s.id_recipient)), " +
+            "claimed AS (" +
+            "INSERT INTO transaction_imports (import_key) SELECT import_key FROM staged " +
+            "ON CONFLICT (import_key) DO NOTHING RETURNING import_key), " +
+            "inserted AS (" +
+            "INSERT INTO transactions (date, money, id_type, id_sender, id_recipient) " +
+            "SELECT s.date, s.money, s.id_type, s.id_sender, s.id_recipient FROM staged s " +
+            "JOIN claimed c ON c.import_key = s.import_key " +
+            "RETURNING date, money, id_type, id_sender, id_recipient), " +
+            "changes AS (" +
+            "SELECT id_account, SUM(delta) AS delta FROM (" +
+            "SELECT id_recipient AS id_account, money AS delta FROM inserted WHERE id_type <> 2 " +
+            "UNION ALL " +
+            "SELECT id_sender, -money FROM inserted WHERE id_type IN (2, 3)" +
+            ") movements GROUP BY id_account), " +
+            "applied AS (" +
+            "UPDATE accounts a SET balance = a.balance + c.delta FROM changes c " +
+            "WHERE a.id = c.id_account RETURNING a.id) " +
+            "SELECT (SELECT COUNT(*) FROM inserted) AS inserted_rows, " +
+            "(SELECT COUNT(*) FROM staged) - (SELECT COUNT(*) FROM claimed) AS duplicate_rows, " +
+            "(SELECT COUNT(*) FROM applied) AS updated_accounts, " +
+            "(SELECT MIN(date) FROM inserted) AS first_date";
+
+    /**
+     * Imports one batch of transactions in one database transaction.
+     * Every CSV row holds the date (ISO 8601 with offset), the amount, the type ID, the sender account ID,
+     * the recipient account ID and the line number of the row in the file. Rows referencing an unknown account
+     * or type or dated before the archive boundary are skipped, and so are rows already imported from a file
+     * with the same name.
+     * Imported transactions are applied without checking the balance, because the partner bank has already
+     * executed them. The daily balances from the day of the earliest imported transaction are invalidated
+     * in the same database transaction, so they are recomputed even if the import stops after this batch.
+     *
+     * @param fileName The name of the imported file, part of the import keys of its rows.
+     * @param csv      The CSV rows of the batch without a header.
+     * @return The numbers of copied, inserted and already imported rows and of updated accounts.
+     * @throws SQLException If the batch cannot be imported, for example because of a malformed row.
+     *                      No changes of the batch are kept in this case.
+     * @throws IOException  If the rows cannot be read.
+     */
+    public static ImportBatchResult importCsvBatch (String fileName, Reader csv) throws SQLException, IOException {
+        try (Connection connection = ConnectionPool.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(CREATE_STAGING_TABLE);
+                }
+
+                CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+                long copiedRows = copyManager.copyIn(COPY_QUERY, csv);
+
+                ImportBatchResult result;
+                try (PreparedStatement statement = connection.prepareStatement(APPLY_QUERY)) {
+                    statement.setString(1, fileName);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        resultSet.next();
+                        Timestamp firstDate = resultSet.getTimestamp("first_date");
+                        result = new ImportBatchResult(copiedRows,
+                                resultSet.getLong("inserted_rows"),
+                                resultSet.getLong("duplicate_rows"),
+                                resultSet.getLong("updated_accounts"),
+                                firstDate == null ? null : firstDate.toInstant());
+                    }
+                }
+                // Imported transactions may belong to days that are already compacted
+                if (result.getFirstDate() != null) {
+                    DailyBalanceRepository.invalidateFrom(connection, result.getFirstDate().atZone(ZoneOffset.UTC).toLocalDate());
+                }
+                connection.commit();
+                return result;
+            }
+            catch (SQLException | IOException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.clever_bank.repository;
+
+import org.clever_bank.db.ConnectionPool;
+
+import java.sql.*;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Repository class for maintaining the monthly partitions of the transactions table.
+ * A partition holds the transactions of one UTC month and is named transactions_YYYY_MM.
+ * Transactions outside all partitions are kept in the default partition.
+ * Months before the archive boundary are archived: no partition is created for them again,
+ * and transactions of these months are not imported.
+ */
+public class TransactionPartitionRepository {
+    /**
+     * The schema the archived partitions are moved to. They stay readable there but are no longer
+     * a part of the transactions table.
+     */
+    public static final String ARCHIVE_SCHEMA = "transactions_archive";
+
+    /**
+     * Creates the partition of a month if it does not exist, see the migration that defines the function.
+     */
+    private static final String CREATE_PARTITION_QUERY = "SELECT create_transactions_partition(?)";
+
+    /**
+     * Checks whether a table of the given qualified name exists.
+     */
+    private static final String TABLE_EXISTS_QUERY = "SELECT to_regclass(?) IS NOT NULL";
+
+    /**
+     * Moves the archive boundary forward to the given month.
+     */
+    private static final String UPDATE_ARCHIVE_BOUNDARY_QUERY = "UPDATE transactions_archive_boundary " +
+            "SET archived_until = GREATEST(archived_until, ?) WHERE id = 1";
+
+    /**
+     * Selects the names of the monthly partitions of the transactions table.
+     */
+    private static final String PARTITIONS_QUERY = "SELECT c.relname FROM pg_inherits i " +
+            "JOIN pg_class c ON c.oid = i.inhrelid " +
+            "WHERE i.inhparent = 'transactions'::regclass AND c.relname ~ '^transactions_[0-9]{4}_[0-9]{2}$' " +
+            "ORDER BY c.relname";
+
+    /**
+     * Creates the partitions of all months of a range that do not have one yet.
+     *
+     * @param from The first month.
+     * @param to   The last month.
+     * @return The names of the created partitions.
+     * @throws SQLException If a partition cannot be created. The partitions created before stay.
+     */
+    public static List<String> createPartitions (YearMonth from, YearMonth to) throws SQLException {
+        List<String> created = new ArrayList<>();
+        try (Connection connection = ConnectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(CREATE_PARTITION_QUERY)) {
+            for (YearMonth month = from; !month.isAfter(to); month = month.plusMonths(1)) {
+                statement.setDate(1, java.sql.Date.valueOf(month.atDay(1)));
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (resultSet.next() && resultSet.getString(1) != null) {
+                        created.add(resultSet.getString(1));
+                    }
+                }
+            }
+        }
+        return created;
+    }
+
+    /**
+     * @return The months of the partitions attached to the transactions table, in ascending order.
+     * @throws SQLException If a database error occurs.
+     */
+    public static List<YearMonth> readPartitionMonths () throws SQLException {
+        List<YearMonth> months = new ArrayList<>();
+        try (Connection connection = ConnectionPool.getConnection();
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(PARTITIONS_QUERY)) {
+            while (resultSet.next()) {
+                String name = resultSet.getString("relname");
+                months.add(YearMonth.of(Integer.parseInt(name.substring(13, 17)), Integer.parseInt(name.substring(18, 20))));
+            }
+        }
+        return months;
+    }
+
+    /**
+     * Detaches the partition of a month from the transactions table, moves it to the {@link #ARCHIVE_SCHEMA}
+     * and moves the archive boundary past the month. All steps are done in one database transaction.
+     * If the month is already archived, because its partition was created again before the archive boundary
+     * existed, the rows of the new partition are appended to the archived table.
+     *
+     * @param month The month of the partition.
+     * @return The qualified name of the archived table.
+     * @throws SQLException If the partition cannot be archived. No changes are kept in this case.
+     */
+    public static String archivePartition (YearMonth month) throws SQLException {
+        String name = getPartitionName(month);
+        try (Connection connection = ConnectionPool.getConnection()) {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("ALTER TABLE transactions DETACH PARTITION " + name);
+                if (tableExists(connection, ARCHIVE_SCHEMA + "." + name)) {
+                    statement.execute("INSERT INTO " + ARCHIVE_SCHEMA + "." + name + " SELECT * FROM " + name);
+                    statement.execute("DROP TABLE " + name);
+                }
+                else {
+                    statement.execute("ALTER TABLE " + name + " SET SCHEMA " + ARCHIVE_SCHEMA);
+                }
+                try (PreparedStatement boundary = connection.prepareStatement(UPDATE_ARCHIVE_BOUNDARY_QUERY)) {
+                    boundary.setDate(1, java.sql.Date.valueOf(month.plusMonths(1).atDay(1)));
+                    boundary.executeUpdate();
+                }
+                connection.commit();
+            }
+            catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        }
+        return ARCHIVE_SCHEMA + "." + name;
+    }
+
+    /**
+     * @param connection The connection to use.
+     * @param name       The qualified name of the table.
+     * @return true if the table exists.
+     * @throws SQLException If a database error occurs.
+     */
+    private static boolean tableExists (Connection connection, String name) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(TABLE_EXISTS_QUERY)) {
+            statement.setString(1, name);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getBoolean(1);
+            }
+        }
+    }
+
+    /**
+     * @param month The month.
+     * @return The name of the partition of the month.
+     */
+    private static String getPartitionName (YearMonth month) {
+        return String.format("transactions_%04d_%02d", month.getYear(), month.getMonthValue());
+    }
+}
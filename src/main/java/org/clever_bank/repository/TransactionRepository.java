@@ -1,13 +1,19 @@
 package org.clever_bank.repository;
 
+import org.clever_bank.db.ConnectionPool;
 import org.clever_bank.entities.*;
+import org.clever_bank.metrics.Metrics;
 import org.clever_bank.services.AppConfig;
+import org.clever_bank.services.ExchangeRates;
 
 import java.math.BigDecimal;
 import java.sql.*;
 import java.time.Instant;
 import java.util.*;
 import java.util.Date;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public class TransactionRepository {
     /**
@@ -17,70 +23,399 @@ public class TransactionRepository {
     private static final AppConfig appConfig = new AppConfig();
 
     /**
-     * URL for connecting to the database.
+     * The number of rows fetched from a cursor at a time when transactions are streamed.
      */
-    private static final String url = appConfig.getFullUrl();
+    private static final int fetchSize = appConfig.getStatementFetchSize();
 
     /**
-     * Username for connecting to the database.
+     * Deposit: credits the account and inserts the transaction.
+     * Returns the ID of the transaction with the new balance and version of the account.
      */
-    private static final String username = appConfig.getUsername();
+    private static final String DEPOSIT_QUERY = "WITH credit AS (" +
+            "UPDATE accounts SET balance = balance + ? WHERE id = ? RETURNING id, balance, version), " +
+            "inserted AS (" +
+            "INSERT INTO transactions (date, money, id_type, id_sender, id_recipient) " +
+            "SELECT ?, ?, ?, ?, ? FROM credit " +
+            "RETURNING id) " +
+            "SELECT inserted.id, credit.id AS credit_id, credit.balance AS credit_balance, credit.version AS credit_version " +
+            "FROM inserted, credit";
 
     /**
-     * Username for connecting to the database.
+     * Withdrawal: debits the account if it has enough money and inserts the transaction.
+     * Returns the ID of the transaction with the new balance and version of the account.
      */
-    private static final String password = appConfig.getPassword();
+    private static final String WITHDRAWAL_QUERY = "WITH debit AS (" +
+            "UPDATE accounts SET balance = balance - ? WHERE id = ? AND balance >= ? RETURNING id, balance, version), " +
+            "inserted AS (" +
+            "INSERT INTO transactions (date, money, id_type, id_sender, id_recipient) " +
+            "SELECT ?, ?, ?, ?, ? FROM debit " +
+            "RETURNING id) " +
+            "SELECT inserted.id, debit.id AS debit_id, debit.balance AS debit_balance, debit.version AS debit_version " +
+            "FROM inserted, debit";
 
     /**
-     * Creates a new transaction in the database.
+     * Transfer: debits the sender if it has enough money, credits the recipient
+     * only if the debit happened and inserts the transaction.
+     * The recipient is credited with the money converted to the currency of its account.
+     * Returns no row if the sender has insufficient funds. Otherwise returns the ID of the transaction
+     * with the new balances and versions of both accounts, and the ID is NULL if the recipient was not credited,
+     * for example because it does not exist. The debit is kept by the statement in this case,
+     * so the caller has to roll the transaction back.
+     */
+    private static final String TRANSFER_QUERY = "WITH debit AS (" +
+            "UPDATE accounts SET balance = balance - ? WHERE id = ? AND balance >= ? RETURNING id, balance, version), " +
+            "credit AS (" +
+            "UPDATE accounts SET balance = balance + ? WHERE id = ? AND EXISTS (SELECT 1 FROM debit) " +
+            "RETURNING id, balance, version), " +
+            "inserted AS (" +
+            "INSERT INTO transactions (date, money, credit_money, id_type, id_sender, id_recipient) " +
+            "SELECT ?, ?, ?, ?, ?, ? FROM credit " +
+            "RETURNING id) " +
+            "SELECT inserted.id, debit.id AS debit_id, debit.balance AS debit_balance, debit.version AS debit_version, " +
+            "credit.id AS credit_id, credit.balance AS credit_balance, credit.version AS credit_version " +
+            "FROM debit LEFT JOIN credit ON true LEFT JOIN inserted ON true";
+
+    /**
+     * Locks the rows of the given accounts in the order of their IDs.
+     */
+    private static final String LOCK_ACCOUNTS_QUERY = "SELECT id FROM accounts WHERE id = ANY (?) ORDER BY id FOR UPDATE";
+
+    /**
+     * Selects transactions with both accounts, their banks and customers.
+     */
+    private static final String SELECT_TRANSACTIONS = "SELECT transact.id, " + //  1
+            "transact.id_type, " +          //  2
+            "transact.date, " +             //  3
+            // Account Sender
+            "acc1.id, " +                   //  4
+            "acc1.number, " +               //  5
+            "acc1.balance, " +              //  6
+            "acc1.currency, " +             //  7
+            "acc1.open_date, " +            //  8
+            // Account Recipient
+            "acc2.id, " +                   //  9
+            "acc2.number, " +               // 10
+            "acc2.balance, " +              // 11
+            "acc2.currency, " +             // 12
+            "acc2.open_date, " +            // 13
+            // Bank Sender
+            "bank1.id, " +                  // 14
+            "bank1.name, " +                // 15
+            // Bank Recipient
+            "bank2.id, " +                  // 16
+            "bank2.name, " +                // 17
+            // Account Sender
+            "cust1.id, " +                  // 18
+            "cust1.name, " +                // 19
+            // AccountRecipient
+            "cust2.id, " +                  // 20
+            "cust2.name, " +                // 21
+
+            "transact.money, " +            // 22
+            "transact.credit_money " +      // 23
+
+
+            "FROM transactions transact " +
+            "JOIN types typ ON transact.id_type = typ.id " +
+            "JOIN accounts acc1 ON transact.id_sender = acc1.id " +
+            "JOIN accounts acc2 ON transact.id_recipient = acc2.id " +
+            "JOIN banks bank1 ON acc1.id_bank = bank1.id " +
+            "JOIN banks bank2 ON acc2.id_bank = bank2.id " +
+            "JOIN customers cust1 ON acc1.id_customer = cust1.id " +
+            "JOIN customers cust2 ON acc2.id_customer = cust2.id ";
+
+    /**
+     * Selects the transactions of an account within a period in date order.
+     * The period is compared with the bare date column, so only the monthly partitions of the period are scanned.
+     */
+    private static final String PERIOD_TRANSACTIONS_QUERY = SELECT_TRANSACTIONS +
+            "WHERE (transact.id_sender = ? OR transact.id_recipient = ?) AND transact.date >= ? AND transact.date <= ? " +
+            "ORDER BY transact.date, transact.id";
+
+    /**
+     * Sums the income and the expense of one account within a period.
+     */
+    private static final String MONEY_SUMMARY_QUERY = "SELECT " +
+            "COALESCE(SUM(COALESCE(credit_money, money)) FILTER (WHERE id_recipient = ? AND id_type <> 2), 0) AS income, " +
+            "COALESCE(SUM(money) FILTER (WHERE id_sender = ? AND id_type IN (2, 3)), 0) AS expense, " +
+            "COUNT(*) AS operations " +
+            "FROM transactions " +
+            "WHERE (id_sender = ? OR id_recipient = ?) AND date BETWEEN ? AND ?";
+
+    /**
+     * Sums the income and the expense of every account of an array within a period.
+     */
+    private static final String MONEY_SUMMARIES_QUERY = "SELECT acc.id, " +
+            "COALESCE(SUM(COALESCE(t.credit_money, t.money)) FILTER (WHERE t.id_recipient = acc.id AND t.id_type <> 2), 0) AS income, " +
+            "COALESCE(SUM(t.money) FILTER (WHERE t.id_sender = acc.id AND t.id_type IN (2, 3)), 0) AS expense, " +
+            "COUNT(t.id) AS operations " +
+            "FROM unnest(?::int[]) WITH ORDINALITY AS acc(id, position) " +
+            "LEFT JOIN transactions t ON (t.id_sender = acc.id OR t.id_recipient = acc.id) " +
+            "AND t.date BETWEEN ? AND ? " +
+            "GROUP BY acc.id, acc.position " +
+            "ORDER BY acc.position";
+
+    /**
+     * Selects the transactions of an account within a period in date order, with only the columns of a statement line.
+     * The counterparty is the other account of a transfer, or the account itself for other transactions.
+     * The money is in the currency of the account: the credited money if the account is the recipient.
+     * The period is compared with the bare date column, so only the monthly partitions of the period are scanned.
+     */
+    private static final String PERIOD_TRANSACTION_VIEWS_QUERY = "SELECT t.id, t.id_type, t.date, " +
+            "CASE WHEN t.id_recipient = ? THEN COALESCE(t.credit_money, t.money) ELSE t.money END AS money, " +
+            "t.id_sender, t.id_recipient, acc.number AS counterparty_number, cust.name AS counterparty_name " +
+            "FROM transactions t " +
+            "LEFT JOIN accounts acc ON acc.id = CASE WHEN t.id_sender = ? THEN t.id_recipient ELSE t.id_sender END " +
+            "LEFT JOIN customers cust ON cust.id = acc.id_customer " +
+            "WHERE (t.id_sender = ? OR t.id_recipient = ?) AND t.date >= ? AND t.date <= ? " +
+            "ORDER BY t.date, t.id";
+
+    /**
+     * Selects the transactions of all accounts of a bank within a period, ordered by account and date,
+     * with only the columns of a statement line. A transfer between two accounts of the bank appears once for each of them.
+     * The money is in the currency of the account: the credited money if the account is the recipient.
+     */
+    private static final String BANK_PERIOD_TRANSACTION_VIEWS_QUERY = "SELECT a.id AS id_account, " +
+            "t.id, t.id_type, t.date, " +
+            "CASE WHEN t.id_recipient = a.id THEN COALESCE(t.credit_money, t.money) ELSE t.money END AS money, " +
+            "t.id_sender, t.id_recipient, " +
+            "acc.number AS counterparty_number, cust.name AS counterparty_name " +
+            "FROM accounts a " +
+            "JOIN transactions t ON (t.id_sender = a.id OR t.id_recipient = a.id) AND t.date >= ? AND t.date <= ? " +
+            "LEFT JOIN accounts acc ON acc.id = CASE WHEN t.id_sender = a.id THEN t.id_recipient ELSE t.id_sender END " +
+            "LEFT JOIN customers cust ON cust.id = acc.id_customer " +
+            "WHERE a.id_bank = ? " +
+            "ORDER BY a.id, t.date, t.id";
+
+    /**
+     * Creates a new transaction in the database and applies it to the balances of the accounts.
+     * The posting runs in its own database transaction, which is rolled back if it is not applied completely.
+     * A transfer first locks both account rows in the order of their IDs, like a group of postings and the interest
+     * accrual do, so transfers in opposite directions cannot deadlock with each other or with them.
+     * Deadlocks and serialization failures are recorded as 'transaction_create_conflict', apart from other errors.
+     * The new balances are written through to the {@link AccountCache}.
      *
      * @param transaction The transaction entity to be created.
-     * @return The ID of the created transaction.
+     * @return The ID of the created transaction,
+     * or 0 if the transaction was not created (insufficient funds, unknown account or database error).
      */
     public static int create (Transaction transaction) {
-        String sqlQuery = "INSERT INTO transactions (date, money, id_type ,id_sender, id_recipient) " +
-                "VALUES (?, ?, ?, ?, ?)" +
-                "RETURNING id";
-        try (Connection connection = DriverManager.getConnection(url, username, password);
-             PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
+        long start = Metrics.start();
+        int id = 0;
+        List<AccountCache.BalanceChange> changes = new ArrayList<>(2);
+        try (Connection connection = ConnectionPool.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                if (transaction.getType().getId() == 3) {
+                    lockAccounts(connection, List.of(transaction));
+                }
+                id = post(connection, transaction, changes);
+                connection.commit();
+            }
+            catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                id = 0;
+                changes.clear();
+                throw e;
+            }
+        }
+        catch (SQLException e) {
+            Metrics.recordFailure(isConflict(e) ? "transaction_create_conflict" : "transaction_create", e);
+        }
 
-            statement.setTimestamp(1, Timestamp.from(Instant.now()));
-            statement.setBigDecimal(2, transaction.getMoney());
-            statement.setInt(3, transaction.getType().getId());
-            statement.setInt(4, transaction.getAccountSender().getId());
-            statement.setInt(5, transaction.getAccountRecipient().getId());
+        AccountCache.applyBalances(changes);
+        Metrics.record("transaction_create", start, id == 0 ? 0 : 1);
+        return id;
+    }
 
-            Account accountRecipient = AccountRepository.read(transaction.getAccountRecipient().getId());
-            Account accountSender = AccountRepository.read(transaction.getAccountSender().getId());
+    /**
+     * Posts several transactions in one database transaction, in the given order,
+     * so the whole group costs one commit instead of one per transaction.
+     * The rows of all accounts of the group are locked first in the order of their IDs,
+     * so the group cannot deadlock with another group or bulk update locking the same rows in another order.
+     * A transaction the sender has no funds for is skipped and does not affect the others.
+     * A posted transaction must have changed the rows of all its accounts, otherwise the whole group fails.
+     * The new balances are written through to the {@link AccountCache} only after the commit.
+     *
+     * @param transactions The transaction entities to be posted.
+     * @return The IDs of the created transactions in the same order, 0 for the transactions that were not posted.
+     * @throws SQLException If a database error occurs or a posting changed fewer accounts than it should.
+     *                      No transaction of the group is kept in this case, and the IDs and dates of the entities are cleared.
+     */
+    public static int[] createAll (List<Transaction> transactions) throws SQLException {
+        long start = Metrics.start();
+        int[] ids = new int[transactions.size()];
+        List<AccountCache.BalanceChange> changes = new ArrayList<>(transactions.size() * 2);
+        try (Connection connection = ConnectionPool.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                lockAccounts(connection, transactions);
+                int posted = 0;
+                for (int i = 0; i < ids.length; i++) {
+                    Transaction transaction = transactions.get(i);
+                    int changed = changes.size();
+                    ids[i] = post(connection, transaction, changes);
+                    changed = changes.size() - changed;
+                    int expected = transaction.getType().getId() == 3 ? 2 : 1;
+                    if (ids[i] != 0 && changed != expected) {
+                        throw new SQLException("Transaction " + ids[i] + " changed " + changed + " accounts instead of "
+                                + expected + ", the group must be rolled back");
+                    }
+                    if (ids[i] != 0) {
+                        posted++;
+                    }
+                }
+                connection.commit();
+                AccountCache.applyBalances(changes);
+                Metrics.record("transaction_create_all", start, posted);
+                return ids;
+            }
+            catch (SQLException | RuntimeException e) {
+                Metrics.recordFailure("transaction_create_all", e);
+                Metrics.record("transaction_create_all", start, 0);
+                connection.rollback();
+                for (Transaction transaction : transactions) {
+                    transaction.setId(0);
+                    transaction.setDate(null);
+                }
+                throw e;
+            }
+        }
+    }
 
+    /**
+     * @param e The error of a posting.
+     * @return true if the posting was aborted by a deadlock or a serialization failure and may succeed if repeated.
+     */
+    private static boolean isConflict (SQLException e) {
+        return "40P01".equals(e.getSQLState()) || "40001".equals(e.getSQLState());
+    }
 
-            if (transaction.getType().getId() == 1) {
-                assert accountRecipient != null;
-                accountRecipient.setBalance(accountRecipient.getBalance().add(transaction.getMoney()));
-                AccountRepository.update(accountRecipient);
+    /**
+     * Locks the rows of the accounts of the given transactions in the order of their IDs.
+     *
+     * @param connection   The connection to use, inside a transaction.
+     * @param transactions The transactions whose accounts are locked.
+     * @throws SQLException If a database error occurs.
+     */
+    private static void lockAccounts (Connection connection, List<Transaction> transactions) throws SQLException {
+        Set<Integer> accountIds = new TreeSet<>();
+        for (Transaction transaction : transactions) {
+            accountIds.add(transaction.getAccountSender().getId());
+            accountIds.add(transaction.getAccountRecipient().getId());
+        }
+        try (PreparedStatement statement = connection.prepareStatement(LOCK_ACCOUNTS_QUERY)) {
+            statement.setArray(1, connection.createArrayOf("integer", accountIds.toArray()));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    // The rows are locked as they are read
+                }
             }
+        }
+    }
 
-            if (transaction.getType().getId() == 2) {
-                assert accountRecipient != null;
-                accountRecipient.setBalance(accountRecipient.getBalance().subtract(transaction.getMoney()));
-                AccountRepository.update(accountRecipient);
+    /**
+     * Posts a transaction using the given connection.
+     * The balance changes and the insert of the transaction are done by one statement,
+     * so the transaction is applied completely or not at all, and concurrent postings
+     * cannot overwrite each other's balances. The insufficient funds check is a part of the same statement.
+     * A transfer between accounts in different currencies credits the recipient with the money converted
+     * by the in-memory {@link ExchangeRates}, so the conversion costs no extra round trip.
+     * A transfer to the sender itself is not posted.
+     * On success the ID and the date of the transaction entity are filled in,
+     * and the new balances of the accounts are added to the list of changes.
+     * The changes are not applied to the cache here, because the connection may be inside a transaction
+     * that is not committed yet.
+     *
+     * @param connection  The connection to use.
+     * @param transaction The transaction entity to be posted.
+     * @param changes     Receives the new balances and versions of the changed accounts.
+     * @return The ID of the created transaction, or 0 if the sender has insufficient funds, the sender does not exist,
+     * the sender and the recipient of a transfer are the same account
+     * or there is no exchange rate between the currencies of the accounts.
+     * @throws SQLException If a database error occurs, or if the sender of a transfer was debited but the recipient
+     *                      was not credited. The connection must be rolled back in both cases.
+     */
+    static int post (Connection connection, Transaction transaction,
+                     List<AccountCache.BalanceChange> changes) throws SQLException {
+        int typeId = transaction.getType().getId();
+        int senderId = transaction.getAccountSender().getId();
+        int recipientId = transaction.getAccountRecipient().getId();
+        BigDecimal money = transaction.getMoney();
+        Instant date = Instant.now();
+
+        BigDecimal creditMoney = money;
+        boolean converted = false;
+        if (typeId == 3) {
+            if (senderId == recipientId) {
+                return 0;
             }
-            if (transaction.getType().getId() == 3) {
-                assert accountSender != null;
-                accountSender.setBalance(accountSender.getBalance().subtract(transaction.getMoney()));
-                assert accountRecipient != null;
-                accountRecipient.setBalance(accountRecipient.getBalance().add(transaction.getMoney()));
-                AccountRepository.update(accountSender);
-                AccountRepository.update(accountRecipient);
+            String senderCurrency = transaction.getAccountSender().getCurrency();
+            String recipientCurrency = transaction.getAccountRecipient().getCurrency();
+            creditMoney = ExchangeRates.convert(money, senderCurrency, recipientCurrency);
+            if (creditMoney == null) {
+                return 0;
             }
+            converted = senderCurrency != null && !senderCurrency.equals(recipientCurrency);
+        }
 
-            ResultSet resultSet = statement.executeQuery();
-            if (resultSet.next()) {
-                return resultSet.getInt("id");
+        String sqlQuery = switch (typeId) {
+            case 1 -> DEPOSIT_QUERY;
+            case 2 -> WITHDRAWAL_QUERY;
+            case 3 -> TRANSFER_QUERY;
+            default -> throw new IllegalArgumentException("Unsupported transaction type: " + typeId);
+        };
+
+        try (PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
+            int index = 1;
+            switch (typeId) {
+                case 1 -> {
+                    statement.setBigDecimal(index++, money);
+                    statement.setInt(index++, recipientId);
+                }
+                case 2 -> {
+                    statement.setBigDecimal(index++, money);
+                    statement.setInt(index++, senderId);
+                    statement.setBigDecimal(index++, money);
+                }
+                case 3 -> {
+                    statement.setBigDecimal(index++, money);
+                    statement.setInt(index++, senderId);
+                    statement.setBigDecimal(index++, money);
+                    statement.setBigDecimal(index++, creditMoney);
+                    statement.setInt(index++, recipientId);
+                }
+            }
+            statement.setTimestamp(index++, Timestamp.from(date));
+            statement.setBigDecimal(index++, money);
+            if (typeId == 3) {
+                statement.setBigDecimal(index++, converted ? creditMoney : null);
+            }
+            statement.setInt(index++, typeId);
+            statement.setInt(index++, senderId);
+            statement.setInt(index, recipientId);
+
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    int id = resultSet.getInt("id");
+                    if (resultSet.wasNull()) {
+                        throw new SQLException("Transfer from account " + senderId + " is not credited to account "
+                                + recipientId + ", the debit must be rolled back");
+                    }
+                    transaction.setId(id);
+                    transaction.setDate(date);
+                    transaction.setCreditMoney(converted ? creditMoney : null);
+                    if (typeId != 1) {
+                        changes.add(new AccountCache.BalanceChange(resultSet.getInt("debit_id"),
+                                resultSet.getBigDecimal("debit_balance"), resultSet.getLong("debit_version")));
+                    }
+                    if (typeId != 2) {
+                        changes.add(new AccountCache.BalanceChange(resultSet.getInt("credit_id"),
+                                resultSet.getBigDecimal("credit_balance"), resultSet.getLong("credit_version")));
+                    }
+                    return id;
+                }
             }
-        }
-        catch (SQLException e) {
-            e.printStackTrace();
         }
 
         return 0;
@@ -93,26 +428,25 @@ public class TransactionRepository {
      * @return The transaction with the specified ID, or null if not found.
      */
     public static Transaction readTransaction (int id) {
+        long start = Metrics.start();
+        Transaction transaction = null;
+        String sqlQuery = SELECT_TRANSACTIONS + "WHERE transact.id = ?";
 
-        String sqlQuery = "SELECT t.id, t.date, t.money, t.id_type, t.id_sender, t.id_recipient, ty.name " +
-                "FROM transactions t " +
-                "JOIN types ty ON t.id_type = ty.id " +
-                "WHERE t.id = ?";
-
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = ConnectionPool.getConnection();
              PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
 
             statement.setInt(1, id);
             ResultSet resultSet = statement.executeQuery();
 
             if (resultSet.next()) {
-                return getTransactionFromResultSet(resultSet);
+                transaction = getPeriodTransactionFromResultSet(resultSet);
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            Metrics.recordFailure("transaction_read", e);
         }
 
-        return null;
+        Metrics.record("transaction_read", start, transaction == null ? 0 : 1);
+        return transaction;
     }
 
     /**
@@ -124,49 +458,10 @@ public class TransactionRepository {
      * @return A list of transactions within the specified period for the given account.
      */
     public static List<Transaction> readPeriodTransactionsOfAccount (int accountId, Instant dateStart, Instant dateEnd) {
+        long start = Metrics.start();
         List<Transaction> transactions = new ArrayList<>();
-        String query = "SELECT transact.id, " + //  1
-                "transact.id_type, " +          //  2
-                "transact.date, " +             //  3
-                // Account Sender
-                "acc1.id, " +                   //  4
-                "acc1.number, " +               //  5
-                "acc1.balance, " +              //  6
-                "acc1.currency, " +             //  7
-                "acc1.open_date, " +            //  8
-                // Account Recipient
-                "acc2.id, " +                   //  9
-                "acc2.number, " +               // 10
-                "acc2.balance, " +              // 11
-                "acc2.currency, " +             // 12
-                "acc2.open_date, " +            // 13
-                // Bank Sender
-                "bank1.id, " +                  // 14
-                "bank1.name, " +                // 15
-                // Bank Recipient
-                "bank2.id, " +                  // 16
-                "bank2.name, " +                // 17
-                // Account Sender
-                "cust1.id, " +                  // 18
-                "cust1.name, " +                // 19
-                // AccountRecipient
-                "cust2.id, " +                  // 20
-                "cust2.name, " +                // 21
-
-                "transact.money " +             // 22
-
-
-                "FROM transactions transact " +
-                "JOIN types typ ON transact.id_type = typ.id " +
-                "JOIN accounts acc1 ON transact.id_sender = acc1.id " +
-                "JOIN accounts acc2 ON transact.id_recipient = acc2.id " +
-                "JOIN banks bank1 ON acc1.id_bank = bank1.id " +
-                "JOIN banks bank2 ON acc2.id_bank = bank2.id " +
-                "JOIN customers cust1 ON acc1.id_customer = cust1.id " +
-                "JOIN customers cust2 ON acc2.id_customer = cust2.id " +
-                "WHERE (transact.id_sender = ? OR transact.id_recipient = ?) AND transact.date >= ? AND transact.date <= ?"; //AND transact.date >= ? AND transact.date <= ?
-        try (Connection connection = DriverManager.getConnection(url, username, password);
-             PreparedStatement statement = connection.prepareStatement(query)) {
+        try (Connection connection = ConnectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(PERIOD_TRANSACTIONS_QUERY)) {
             statement.setInt(1, accountId);
             statement.setInt(2, accountId);
             statement.setTimestamp(3, Timestamp.from(dateStart));
@@ -175,190 +470,381 @@ public class TransactionRepository {
             ResultSet resultSet = statement.executeQuery();
 
             while (resultSet.next()) {
-
-                // Bank Sender
-                int bankSenderId = resultSet.getInt(14);
-                String bankSenderName = resultSet.getString(15);
-                Bank bankSender = new Bank(bankSenderId, bankSenderName, new ArrayList<>());
-                // Bank Recipient
-                int bankRecipientId = resultSet.getInt(16);
-                String bankRecipientName = resultSet.getString(17);
-                Bank bankRecipient = new Bank(bankRecipientId, bankRecipientName, new ArrayList<>());
-                // Customer Sender
-                int customerSenderId = resultSet.getInt(18);
-                String customerSenderName = resultSet.getString(19);
-                Customer customerSender = new Customer(customerSenderId, customerSenderName, new ArrayList<>());
-                // Customer Recipient
-                int customerRecipientId = resultSet.getInt(20);
-                String customerRecipientName = resultSet.getString(21);
-                Customer customerRecipient = new Customer(customerRecipientId, customerRecipientName, new ArrayList<>());
-                // Account Sender
-                int senderAccId = resultSet.getInt(4);
-                String senderAccountNumber = resultSet.getString(5);
-                BigDecimal senderBalance = resultSet.getBigDecimal(6);
-                String senderCurrency = resultSet.getString(7);
-                Date senderOpeningDate = resultSet.getDate(8);
-                Account accountSender = new Account(senderAccId,
-                        senderAccountNumber,
-                        senderBalance,
-                        senderCurrency,
-                        senderOpeningDate,
-                        bankSender,
-                        customerSender);
-                // Account Recipient
-                int recipientAccId = resultSet.getInt(9);
-                String recipientAccNumber = resultSet.getString(10);
-                BigDecimal recipientAccBalance = resultSet.getBigDecimal(11);
-                String recipientAccCurrency = resultSet.getString(12);
-                Date recipientAccOpeningDate = resultSet.getDate(13);
-                Account accountRecipient = new Account(recipientAccId,
-                        recipientAccNumber,
-                        recipientAccBalance,
-                        recipientAccCurrency,
-                        recipientAccOpeningDate,
-                        bankRecipient,
-                        customerRecipient);
-                // Transaction
-                int transactionId = resultSet.getInt(1);
-                int typeId = resultSet.getInt(2);
-                TransactionType type = TransactionTypeRepository.readTransactionTypeById(typeId);
-                Instant date = resultSet.getTimestamp(3).toInstant();
-                BigDecimal money = resultSet.getBigDecimal(22);
-                Transaction transaction = new Transaction(transactionId, type, date, accountSender, accountRecipient, money);
-                transactions.add(transaction);
+                transactions.add(getPeriodTransactionFromResultSet(resultSet));
             }
 
         }
         catch (SQLException e) {
-            e.printStackTrace();
+            Metrics.recordFailure("transaction_read_period", e);
         }
 
 
+        Metrics.record("transaction_read_period", start, transactions.size());
         return transactions;
     }
 
+    /**
+     * Passes all transactions within a specified period for a given account to the consumer, in date order.
+     * The rows are read through a server-side cursor, 'statement_fetch_size' rows at a time,
+     * and each transaction is handed over as soon as its row arrives,
+     * so the memory used does not depend on the number of transactions.
+     *
+     * @param accountId  The ID of the account.
+     * @param dateStart  The start date of the period.
+     * @param dateEnd    The end date of the period.
+     * @param consumer   The consumer of the transactions.
+     * @return The number of transactions passed to the consumer.
+     * @throws SQLException If the transactions cannot be read, so a caller does not mistake
+     *                      a broken cursor for the end of the history.
+     */
+    public static long streamPeriodTransactionsOfAccount (int accountId, Instant dateStart, Instant dateEnd,
+                                                          Consumer<Transaction> consumer) throws SQLException {
+        long start = Metrics.start();
+        long count = 0;
+        try (Connection connection = ConnectionPool.getConnection()) {
+            // PostgreSQL uses a cursor only inside a transaction
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(PERIOD_TRANSACTIONS_QUERY,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                statement.setFetchSize(fetchSize);
+                statement.setInt(1, accountId);
+                statement.setInt(2, accountId);
+                statement.setTimestamp(3, Timestamp.from(dateStart));
+                statement.setTimestamp(4, Timestamp.from(dateEnd));
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        consumer.accept(getPeriodTransactionFromResultSet(resultSet));
+                        count++;
+                    }
+                }
+            }
+            connection.commit();
+        }
+        catch (SQLException e) {
+            Metrics.recordFailure("transaction_stream_period", e);
+            throw e;
+        }
+        finally {
+            Metrics.record("transaction_stream_period", start, count);
+        }
+        return count;
+    }
+
+    /**
+     * Passes the transactions of an account within a specified period to the consumer as flat views, in date order.
+     * Only the columns shown in a statement are read, and each row creates a single object,
+     * which makes this the cheapest way to produce a statement.
+     * The rows are read through a server-side cursor, 'statement_fetch_size' rows at a time.
+     *
+     * @param accountId  The ID of the account.
+     * @param dateStart  The start date of the period.
+     * @param dateEnd    The end date of the period.
+     * @param consumer   The consumer of the transaction views.
+     * @return The number of transactions passed to the consumer.
+     * @throws SQLException If the transactions cannot be read, so a caller does not mistake
+     *                      a broken cursor for the end of the history.
+     */
+    public static long streamPeriodTransactionViews (int accountId, Instant dateStart, Instant dateEnd,
+                                                     Consumer<TransactionView> consumer) throws SQLException {
+        long start = Metrics.start();
+        long count = 0;
+        try (Connection connection = ConnectionPool.getConnection()) {
+            // PostgreSQL uses a cursor only inside a transaction
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(PERIOD_TRANSACTION_VIEWS_QUERY,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                statement.setFetchSize(fetchSize);
+                statement.setInt(1, accountId);
+                statement.setInt(2, accountId);
+                statement.setInt(3, accountId);
+                statement.setInt(4, accountId);
+                statement.setTimestamp(5, Timestamp.from(dateStart));
+                statement.setTimestamp(6, Timestamp.from(dateEnd));
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        consumer.accept(new TransactionView(
+                                resultSet.getInt(1),
+                                resultSet.getInt(2),
+                                resultSet.getTimestamp(3).toInstant(),
+                                resultSet.getBigDecimal(4),
+                                resultSet.getInt(5),
+                                resultSet.getInt(6),
+                                resultSet.getString(7),
+                                resultSet.getString(8)));
+                        count++;
+                    }
+                }
+            }
+            connection.commit();
+        }
+        catch (SQLException e) {
+            Metrics.recordFailure("transaction_stream_period_views", e);
+            throw e;
+        }
+        finally {
+            Metrics.record("transaction_stream_period_views", start, count);
+        }
+        return count;
+    }
+
+    /**
+     * Reads the transactions of all accounts of a bank within a period through one server-side cursor
+     * and passes every transaction to the consumer together with the ID of the account it is read for.
+     * The transactions come in the order of the account IDs, so all transactions of one account are consecutive.
+     * Like {@link #streamPeriodTransactionViews} an error is thrown, so a caller does not mistake
+     * a broken cursor for the end of the history.
+     *
+     * @param bankId    The ID of the bank.
+     * @param dateStart The start date of the period.
+     * @param dateEnd   The end date of the period.
+     * @param consumer  Receives the ID of the account and the transaction.
+     * @return The number of rows read.
+     * @throws SQLException If the transactions cannot be read.
+     */
+    public static long streamBankPeriodTransactionViews (int bankId, Instant dateStart, Instant dateEnd,
+                                                         BiConsumer<Integer, TransactionView> consumer) throws SQLException {
+        long start = Metrics.start();
+        long count = 0;
+        try (Connection connection = ConnectionPool.getConnection()) {
+            // PostgreSQL uses a cursor only inside a transaction
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(BANK_PERIOD_TRANSACTION_VIEWS_QUERY,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                statement.setFetchSize(fetchSize);
+                statement.setTimestamp(1, Timestamp.from(dateStart));
+                statement.setTimestamp(2, Timestamp.from(dateEnd));
+                statement.setInt(3, bankId);
+
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        consumer.accept(resultSet.getInt(1), new TransactionView(
+                                resultSet.getInt(2),
+                                resultSet.getInt(3),
+                                resultSet.getTimestamp(4).toInstant(),
+                                resultSet.getBigDecimal(5),
+                                resultSet.getInt(6),
+                                resultSet.getInt(7),
+                                resultSet.getString(8),
+                                resultSet.getString(9)));
+                        count++;
+                    }
+                }
+            }
+            connection.commit();
+        }
+        catch (SQLException e) {
+            Metrics.recordFailure("transaction_stream_bank_period_views", e);
+            throw e;
+        }
+        finally {
+            Metrics.record("transaction_stream_bank_period_views", start, count);
+        }
+        return count;
+    }
+
     /**
      * Reads all transactions from the database.
+     * All transactions are kept in memory, large tables should be read with
+     * {@link #readTransactionsPage} or {@link #streamAllTransactions()}.
      *
      * @return A list of all transactions in the database.
      */
     public static List<Transaction> readAllTransactions () {
-        String sqlQuery = "SELECT t.id, t.date, t.money, t.id_type, t.id_sender, t.id_recipient, ty.name " +
-                "FROM transactions t " +
-                "JOIN types ty ON t.id_type = ty.id";
+        long start = Metrics.start();
+        String sqlQuery = SELECT_TRANSACTIONS + "ORDER BY transact.id";
         List<Transaction> transactions = new ArrayList<>();
 
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = ConnectionPool.getConnection();
              Statement statement = connection.createStatement();
              ResultSet resultSet = statement.executeQuery (sqlQuery)) {
 
             while (resultSet.next()) {
-                Transaction transaction = getTransactionFromResultSet(resultSet);
-                transactions.add(transaction);
+                transactions.add(getPeriodTransactionFromResultSet(resultSet));
+            }
+        } catch (SQLException e) {
+            Metrics.recordFailure("transaction_read_all", e);
+        }
+
+        Metrics.record("transaction_read_all", start, transactions.size());
+        return transactions;
+    }
+
+    /**
+     * Reads one page of transactions ordered by ID, starting after the given ID.
+     *
+     * @param afterId The last ID of the previous page, or 0 for the first page.
+     * @param limit   The maximum number of transactions to read.
+     * @return The transactions of the page.
+     */
+    public static List<Transaction> readTransactionsPage (int afterId, int limit) {
+        long start = Metrics.start();
+        String sqlQuery = SELECT_TRANSACTIONS + "WHERE transact.id > ? ORDER BY transact.id LIMIT ?";
+        List<Transaction> transactions = new ArrayList<>();
+
+        try (Connection connection = ConnectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
+            statement.setInt(1, afterId);
+            statement.setInt(2, limit);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    transactions.add(getPeriodTransactionFromResultSet(resultSet));
+                }
             }
         } catch (SQLException e) {
-            e.printStackTrace();
+            Metrics.recordFailure("transaction_read_page", e);
         }
 
+        Metrics.record("transaction_read_page", start, transactions.size());
         return transactions;
     }
 
     /**
-     * Calculates the total received money for a given account within a specified period.
+     * Returns all transactions ordered by ID as a lazy stream read through a server-side cursor.
+     * The stream holds a database connection until it is closed, so it must be used in a try-with-resources block.
+     *
+     * @return The stream of all transactions.
+     */
+    public static Stream<Transaction> streamAllTransactions () {
+        return Metrics.record("transaction_stream_all",
+                JdbcStreams.stream(SELECT_TRANSACTIONS + "ORDER BY transact.id", statement -> { },
+                        TransactionRepository::getPeriodTransactionFromResultSet));
+    }
+
+    /**
+     * Calculates the money received and spent by an account within a specified period with one query.
+     * Deposits, incoming transfers and interest are counted as income,
+     * withdrawals and outgoing transfers are counted as expense.
      *
      * @param accountId  The ID of the account.
      * @param dateStart  The start date of the period.
      * @param dateEnd    The end date of the period.
-     * @return The total received money for the account within the specified period.
+     * @return The income, expense and number of transactions of the account within the period,
+     * or null if a database error occurs.
      */
-    public static BigDecimal getReceivedMoneyForAccount (int accountId, Instant dateStart, Instant dateEnd) {
-        String sqlQuery = "SELECT SUM(money) AS total_income " +
-                "FROM transactions " +
-                "WHERE (id_type = 1 OR (id_type = 3 AND id_recipient = ?)) " +
-                "AND id_recipient = ? " +
-                "AND date BETWEEN ? AND ?";
-
-        BigDecimal totalIncome = null;
-
-        try (Connection connection = DriverManager.getConnection(url, username, password);
-             PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
+    public static MoneySummary getMoneySummary (int accountId, Instant dateStart, Instant dateEnd) {
+        long start = Metrics.start();
+        MoneySummary summary = null;
+        try (Connection connection = ConnectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(MONEY_SUMMARY_QUERY)) {
             statement.setInt(1, accountId);
             statement.setInt(2, accountId);
-            statement.setTimestamp(3, Timestamp.from(dateStart));
-            statement.setTimestamp(4, Timestamp.from(dateEnd));
-            ResultSet resultSet = statement.executeQuery();
-            if (resultSet.next()) {
-                totalIncome = resultSet.getBigDecimal("total_income");
+            statement.setInt(3, accountId);
+            statement.setInt(4, accountId);
+            statement.setTimestamp(5, Timestamp.from(dateStart));
+            statement.setTimestamp(6, Timestamp.from(dateEnd));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    summary = new MoneySummary(accountId,
+                            resultSet.getBigDecimal("income"),
+                            resultSet.getBigDecimal("expense"),
+                            resultSet.getLong("operations"));
+                }
             }
         }
         catch (SQLException e) {
-            e.printStackTrace();
+            Metrics.recordFailure("transaction_money_summary", e);
         }
-        return totalIncome;
+        Metrics.record("transaction_money_summary", start, summary == null ? 0 : 1);
+        return summary;
     }
 
     /**
-     * Calculates the total withdrawn money for a given account within a specified period.
+     * Calculates the money received and spent within a specified period for many accounts with one query,
+     * for example for month-end reports of a whole bank.
      *
-     * @param accountId  The ID of the account.
+     * @param accountIds The IDs of the accounts.
      * @param dateStart  The start date of the period.
      * @param dateEnd    The end date of the period.
-     * @return The total withdrawn money for the account within the specified period.
+     * @return The summaries by account ID, in the order of the IDs. Accounts without transactions have zero totals.
      */
-    public static BigDecimal getWithdrawnMoneyForAccount (int accountId, Instant dateStart, Instant dateEnd) {
-        String sqlQuery = "SELECT SUM(money) AS total_expense " +
-                "FROM transactions " +
-                "WHERE (id_type = 2 OR (id_type = 3 AND id_sender = ?)) " +
-                "AND id_sender = ? " +
-                "AND date BETWEEN ? AND ?";
-
-        BigDecimal totalExpense = null;
+    public static Map<Integer, MoneySummary> getMoneySummaries (Collection<Integer> accountIds, Instant dateStart, Instant dateEnd) {
+        long start = Metrics.start();
+        Map<Integer, MoneySummary> summaries = new LinkedHashMap<>();
+        if (accountIds.isEmpty()) {
+            return summaries;
+        }
 
-        try (Connection connection = DriverManager.getConnection(url, username, password);
-             PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
-            statement.setInt(1, accountId);
-            statement.setInt(2, accountId);
-            statement.setTimestamp(3, Timestamp.from(dateStart));
-            statement.setTimestamp(4, Timestamp.from(dateEnd));
-            ResultSet resultSet = statement.executeQuery();
-            if (resultSet.next()) {
-                totalExpense = resultSet.getBigDecimal("total_expense");
+        try (Connection connection = ConnectionPool.getConnection();
+             PreparedStatement statement = connection.prepareStatement(MONEY_SUMMARIES_QUERY)) {
+            statement.setArray(1, connection.createArrayOf("integer", accountIds.toArray()));
+            statement.setTimestamp(2, Timestamp.from(dateStart));
+            statement.setTimestamp(3, Timestamp.from(dateEnd));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    int accountId = resultSet.getInt("id");
+                    summaries.put(accountId, new MoneySummary(accountId,
+                            resultSet.getBigDecimal("income"),
+                            resultSet.getBigDecimal("expense"),
+                            resultSet.getLong("operations")));
+                }
             }
         }
         catch (SQLException e) {
-            e.printStackTrace();
+            Metrics.recordFailure("transaction_money_summaries", e);
         }
-        return totalExpense;
+        Metrics.record("transaction_money_summaries", start, summaries.size());
+        return summaries;
     }
 
     /**
-     * Helper method to create a Transaction entity from a ResultSet.
+     * Helper method to create a Transaction entity from a row of the {@link #PERIOD_TRANSACTIONS_QUERY} query.
      *
-     * @param resultSet The ResultSet containing transaction data.
+     * @param resultSet The ResultSet positioned on a transaction row.
      * @return The created Transaction object.
+     * @throws SQLException If a column cannot be read.
      */
-    private static Transaction getTransactionFromResultSet (ResultSet resultSet){
-        try {
-            // Getting transaction data from the query result
-            int id = resultSet.getInt("id");
-            Instant date = resultSet.getTimestamp("date").toInstant();
-            BigDecimal money = resultSet.getBigDecimal("money");
-            int typeId = resultSet.getInt("id_type");
-            String typeName = resultSet.getString("name");
-            TransactionType type = new TransactionType(typeId, typeName);
-            int senderId = resultSet.getInt("id_sender");
-            int recipientId = resultSet.getInt("id_recipient");
-
-            // Getting the sender's and recipient's account
-            Account accountSender = AccountRepository.read(senderId);
-            Account accountRecipient = AccountRepository.read(recipientId);
-
-
-            return new Transaction(id, type, date, accountSender, accountRecipient, money);
-        }
-        catch (SQLException e){
-            e.printStackTrace();
-        }
-        return null;
+    private static Transaction getPeriodTransactionFromResultSet (ResultSet resultSet) throws SQLException {
+        // Bank Sender
+        int bankSenderId = resultSet.getInt(14);
+        String bankSenderName = resultSet.getString(15);
+        Bank bankSender = new Bank(bankSenderId, bankSenderName, new ArrayList<>());
+        // Bank Recipient
+        int bankRecipientId = resultSet.getInt(16);
+        String bankRecipientName = resultSet.getString(17);
+        Bank bankRecipient = new Bank(bankRecipientId, bankRecipientName, new ArrayList<>());
+        // Customer Sender
+        int customerSenderId = resultSet.getInt(18);
+        String customerSenderName = resultSet.getString(19);
+        Customer customerSender = new Customer(customerSenderId, customerSenderName, new ArrayList<>());
+        // Customer Recipient
+        int customerRecipientId = resultSet.getInt(20);
+        String customerRecipientName = resultSet.getString(21);
+        Customer customerRecipient = new Customer(customerRecipientId, customerRecipientName, new ArrayList<>());
+        // Account Sender
+        int senderAccId = resultSet.getInt(4);
+        String senderAccountNumber = resultSet.getString(5);
+        BigDecimal senderBalance = resultSet.getBigDecimal(6);
+        String senderCurrency = resultSet.getString(7);
+        Date senderOpeningDate = resultSet.getDate(8);
+        Account accountSender = new Account(senderAccId,
+                senderAccountNumber,
+                senderBalance,
+                senderCurrency,
+                senderOpeningDate,
+                bankSender,
+                customerSender);
+        // Account Recipient
+        int recipientAccId = resultSet.getInt(9);
+        String recipientAccNumber = resultSet.getString(10);
+        BigDecimal recipientAccBalance = resultSet.getBigDecimal(11);
+        String recipientAccCurrency = resultSet.getString(12);
+        Date recipientAccOpeningDate = resultSet.getDate(13);
+        Account accountRecipient = new Account(recipientAccId,
+                recipientAccNumber,
+                recipientAccBalance,
+                recipientAccCurrency,
+                recipientAccOpeningDate,
+                bankRecipient,
+                customerRecipient);
+        // Transaction
+        int transactionId = resultSet.getInt(1);
+        int typeId = resultSet.getInt(2);
+        TransactionType type = TransactionTypeRepository.readTransactionTypeById(typeId);
+        Instant date = resultSet.getTimestamp(3).toInstant();
+        BigDecimal money = resultSet.getBigDecimal(22);
+        BigDecimal creditMoney = resultSet.getBigDecimal(23);
+        return new Transaction(transactionId, type, date, accountSender, accountRecipient, money, creditMoney);
     }
 }
@@ -1,7 +1,7 @@
 package org.clever_bank.repository;
 
+import org.clever_bank.db.ConnectionPool;
 import org.clever_bank.entities.TransactionType;
-import org.clever_bank.services.AppConfig;
 
 import java.sql.*;
 import java.util.ArrayList;
@@ -12,27 +12,6 @@ import java.util.List;
  */
 public class TransactionTypeRepository {
 
-    /**
-     * Application configuration.
-     * This class reads the configuration from the 'application.yml' file located in the resources' directory.
-     */
-    private static final AppConfig appConfig = new AppConfig();
-
-    /**
-     * URL for connecting to the database.
-     */
-    private static final String url = appConfig.getFullUrl();
-
-    /**
-     * Username for connecting to the database.
-     */
-    private static final String username = appConfig.getUsername();
-
-    /**
-     * Username for connecting to the database.
-     */
-    private static final String password = appConfig.getPassword();
-
     /**
      * Retrieves all transaction types from the database.
      *
@@ -40,7 +19,7 @@ public class TransactionTypeRepository {
      */
     public static List<TransactionType> readAllTransactionTypes() {
         List<TransactionType> transactionTypes = new ArrayList<>();
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = ConnectionPool.getConnection();
              Statement statement = connection.createStatement();
              ResultSet resultSet = statement.executeQuery("SELECT  * FROM types")) {
 
@@ -59,22 +38,30 @@ public class TransactionTypeRepository {
     }
 
     /**
-     * Retrieves a transaction type from the database based on its ID.
+     * Retrieves a transaction type based on its ID.
+     * Transaction types are served from the reference data cache and read from the database only on a cache miss.
      *
      * @param id The ID of the transaction type to retrieve.
      * @return A TransactionType object representing the transaction type with the specified ID, or null if not found.
      */
     public static TransactionType readTransactionTypeById (int id) {
+        TransactionType cached = ReferenceDataCache.getTransactionType(id);
+        if (cached != null) {
+            return cached;
+        }
+
         String sqlQuery = "SELECT * FROM types\n" +
                 "WHERE id = ?";
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = ConnectionPool.getConnection();
              PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
             statement.setInt(1, id);
             ResultSet resultSet = statement.executeQuery();
 
             if (resultSet.next()) {
                 String name = resultSet.getString("name");
-                return new TransactionType(id, name);
+                TransactionType type = new TransactionType(id, name);
+                ReferenceDataCache.putTransactionType(type);
+                return type;
             }
         }
         catch (SQLException e) {
@@ -92,7 +79,7 @@ public class TransactionTypeRepository {
     public static TransactionType getTransactionTypeByName (String name) {
         String sqlQuery = "SELECT * FROM types\n" +
                 "WHERE types.name = ?";
-        try (Connection connection = DriverManager.getConnection(url, username, password);
+        try (Connection connection = ConnectionPool.getConnection();
              PreparedStatement statement = connection.prepareStatement(sqlQuery)) {
             statement.setString(1, name);
             ResultSet resultSet = statement.executeQuery();
@@ -2,13 +2,25 @@ package org.clever_bank.services;
 
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.math.BigDecimal;
 import java.util.Properties;
 
 /**
  * This class represents the configuration for the application.
- * It contains properties such as the URL, full URL, username, password, and database name.
+ * It contains properties such as the URL, full URL, username, password, database name
+ * and the settings of the connection pool.
  */
 public class AppConfig {
+    /**
+     * The system property holding the path of the configuration file, used instead of the default path if set.
+     */
+    public static final String CONFIG_PATH_PROPERTY = "clever_bank.config";
+
+    /**
+     * The default path of the configuration file.
+     */
+    private static final String DEFAULT_CONFIG_PATH = "src/main/resources/application.yml";
+
     /**
      * The URL of the application.
      */
@@ -35,12 +47,229 @@ public class AppConfig {
     private String dbName;
 
     /**
-     * Constructs a new AppConfig object and initializes its properties from the application.yml file.
+     * The number of connections the pool keeps open even when they are idle.
+     */
+    private int poolMinSize;
+
+    /**
+     * The maximum number of connections the pool may open.
+     */
+    private int poolMaxSize;
+
+    /**
+     * How long a caller waits for a free connection before giving up, in milliseconds.
+     */
+    private long poolConnectionTimeoutMs;
+
+    /**
+     * How long a connection may stay idle in the pool before it is closed, in milliseconds.
+     */
+    private long poolIdleTimeoutMs;
+
+    /**
+     * Timeout of the connection validation query, in seconds.
+     */
+    private int poolValidationTimeoutSec;
+
+    /**
+     * How long a connection may be held before it is reported as a possible leak, in milliseconds.
+     * Zero disables leak detection.
+     */
+    private long poolLeakDetectionThresholdMs;
+
+    /**
+     * The maximum number of customers kept in the reference data cache.
+     */
+    private int customerCacheSize;
+
+    /**
+     * The number of rows fetched from the database at a time when a statement is generated.
+     */
+    private int statementFetchSize;
+
+    /**
+     * The interest accrued on the balance of an account every month, in percent.
+     */
+    private BigDecimal interestRate;
+
+    /**
+     * How often accounts are checked for due interest, in seconds.
+     */
+    private int interestCheckPeriodSec;
+
+    /**
+     * The number of threads applying interest in parallel.
+     */
+    private int interestThreads;
+
+    /**
+     * The number of accounts processed in one database transaction when interest is applied.
+     */
+    private int interestChunkSize;
+
+    /**
+     * How often transactions of past days are compacted into daily balance snapshots, in seconds.
+     */
+    private int snapshotCompactionPeriodSec;
+
+    /**
+     * The maximum number of days compacted in one database transaction.
+     */
+    private int snapshotCompactionDays;
+
+    /**
+     * The number of threads rendering the pdf checks of transactions.
+     */
+    private int receiptThreads;
+
+    /**
+     * The maximum number of checks waiting to be rendered. When the queue is full, the posting thread renders the check itself.
+     */
+    private int receiptQueueCapacity;
+
+    /**
+     * Whether the HTTP API is started.
+     */
+    private boolean httpEnabled;
+
+    /**
+     * The address the HTTP API listens on.
+     */
+    private String httpHost;
+
+    /**
+     * The port of the HTTP API.
+     */
+    private int httpPort;
+
+    /**
+     * The token clients of the HTTP API send in the 'Authorization: Bearer' header. The API is not started without it.
+     */
+    private String httpApiToken;
+
+    /**
+     * The number of platform threads handling HTTP requests when virtual threads are not available.
+     */
+    private int httpFallbackThreads;
+
+    /**
+     * The number of rows imported in one database transaction by the bulk import.
+     */
+    private int importBatchSize;
+
+    /**
+     * The number of locks accounts are spread over when postings are serialized per account.
+     */
+    private int postingLockStripes;
+
+    /**
+     * Whether postings of the HTTP API are committed in groups.
+     */
+    private boolean groupCommitEnabled;
+
+    /**
+     * The maximum number of postings committed in one database transaction.
+     */
+    private int groupCommitMaxBatch;
+
+    /**
+     * How long the first posting of a group waits for more postings, in milliseconds.
+     */
+    private int groupCommitWindowMs;
+
+    /**
+     * The maximum number of postings waiting to be committed.
+     */
+    private int groupCommitQueueCapacity;
+
+    /**
+     * The number of table rows after which the rows are written to the pdf file.
+     */
+    private int pdfFlushRows;
+
+    /**
+     * The number of threads rendering statements of a bank, or 0 for the number of processors.
+     */
+    private int statementBatchThreads;
+
+    /**
+     * The number of executions of an SQL text on a connection after which the driver uses a named server-side prepared statement, or 0 to never prepare.
+     */
+    private int poolPrepareThreshold;
+
+    /**
+     * The maximum number of SQL texts whose parsed form and server-side prepared statement are cached per connection, least recently used first out.
+     */
+    private int poolStatementCacheQueries;
+
+    /**
+     * The maximum size of the statement cache of one connection, in MiB.
+     */
+    private int poolStatementCacheSizeMib;
+
+    /**
+     * Whether the latencies and counters of repository and statement operations are recorded and exported.
+     */
+    private boolean metricsEnabled;
+
+    /**
+     * The address the metrics endpoint listens on.
+     */
+    private String metricsHost;
+
+    /**
+     * The port of the metrics endpoint.
+     */
+    private int metricsPort;
+
+    /**
+     * The maximum number of cached accounts.
+     */
+    private int accountCacheSize;
+
+    /**
+     * The time in milliseconds after which a cached account is checked against the version in the database.
+     */
+    private long accountCacheTtlMs;
+
+    /**
+     * The CSV file of exchange rates with lines 'from,to,rate', or empty to read the rates from the database.
+     */
+    private String fxRatesFile;
+
+    /**
+     * The period in seconds at which the exchange rates are reloaded, 0 to load them only at startup.
+     */
+    private int fxReloadPeriodSec;
+
+    /**
+     * The period in seconds at which the partitions of transactions are created ahead and archived.
+     */
+    private int partitionCheckPeriodSec;
+
+    /**
+     * The number of months after the current one that have a partition of transactions in advance.
+     */
+    private int partitionMonthsAhead;
+
+    /**
+     * The number of months before the current one whose partitions stay attached, 0 to never archive partitions.
+     */
+    private int partitionRetentionMonths;
+
+    /**
+     * The time in seconds after midnight (UTC) before the previous day is compacted, so transactions stamped before midnight and committed after it are still counted.
+     */
+    private int snapshotCompactionGraceSec;
+
+    /**
+     * Constructs a new AppConfig object and initializes its properties from the application.yml file,
+     * or from the file given by the 'clever_bank.config' system property.
      */
     public AppConfig() {
         try {
             Properties properties = new Properties();
-            FileInputStream fileInputStream = new FileInputStream("src/main/resources/application.yml");
+            FileInputStream fileInputStream = new FileInputStream(System.getProperty(CONFIG_PATH_PROPERTY, DEFAULT_CONFIG_PATH));
             properties.load(fileInputStream);
 
             this.url = properties.getProperty("url");
@@ -48,6 +277,49 @@ public class AppConfig {
             this.dbName = properties.getProperty("dbName");
             this.username = properties.getProperty("username");
             this.password = properties.getProperty("password");
+            this.poolMinSize = Integer.parseInt(properties.getProperty("pool_min_size", "2"));
+            this.poolMaxSize = Integer.parseInt(properties.getProperty("pool_max_size", "10"));
+            this.poolConnectionTimeoutMs = Long.parseLong(properties.getProperty("pool_connection_timeout_ms", "30000"));
+            this.poolIdleTimeoutMs = Long.parseLong(properties.getProperty("pool_idle_timeout_ms", "600000"));
+            this.poolValidationTimeoutSec = Integer.parseInt(properties.getProperty("pool_validation_timeout_sec", "5"));
+            this.poolLeakDetectionThresholdMs = Long.parseLong(properties.getProperty("pool_leak_detection_threshold_ms", "0"));
+            this.customerCacheSize = Integer.parseInt(properties.getProperty("customer_cache_size", "1000"));
+            this.statementFetchSize = Integer.parseInt(properties.getProperty("statement_fetch_size", "1000"));
+            this.interestRate = new BigDecimal(properties.getProperty("interest_rate", "1"));
+            this.interestCheckPeriodSec = Integer.parseInt(properties.getProperty("interest_check_period_sec", "30"));
+            this.interestThreads = Integer.parseInt(properties.getProperty("interest_threads", "4"));
+            this.interestChunkSize = Integer.parseInt(properties.getProperty("interest_chunk_size", "1000"));
+            this.snapshotCompactionPeriodSec = Integer.parseInt(properties.getProperty("snapshot_compaction_period_sec", "600"));
+            this.snapshotCompactionDays = Integer.parseInt(properties.getProperty("snapshot_compaction_days", "31"));
+            this.receiptThreads = Integer.parseInt(properties.getProperty("receipt_threads", "2"));
+            this.receiptQueueCapacity = Integer.parseInt(properties.getProperty("receipt_queue_capacity", "1000"));
+            this.httpEnabled = Boolean.parseBoolean(properties.getProperty("http_enabled", "false"));
+            this.httpHost = properties.getProperty("http_host", "127.0.0.1");
+            this.httpApiToken = properties.getProperty("http_api_token", "");
+            this.httpPort = Integer.parseInt(properties.getProperty("http_port", "8080"));
+            this.httpFallbackThreads = Integer.parseInt(properties.getProperty("http_fallback_threads", "64"));
+            this.importBatchSize = Integer.parseInt(properties.getProperty("import_batch_size", "50000"));
+            this.postingLockStripes = Integer.parseInt(properties.getProperty("posting_lock_stripes", "1024"));
+            this.groupCommitEnabled = Boolean.parseBoolean(properties.getProperty("group_commit_enabled", "false"));
+            this.groupCommitMaxBatch = Integer.parseInt(properties.getProperty("group_commit_max_batch", "100"));
+            this.groupCommitWindowMs = Integer.parseInt(properties.getProperty("group_commit_window_ms", "5"));
+            this.groupCommitQueueCapacity = Integer.parseInt(properties.getProperty("group_commit_queue_capacity", "10000"));
+            this.pdfFlushRows = Integer.parseInt(properties.getProperty("pdf_flush_rows", "50"));
+            this.statementBatchThreads = Integer.parseInt(properties.getProperty("statement_batch_threads", "0"));
+            this.poolPrepareThreshold = Integer.parseInt(properties.getProperty("pool_prepare_threshold", "1"));
+            this.poolStatementCacheQueries = Integer.parseInt(properties.getProperty("pool_statement_cache_queries", "256"));
+            this.poolStatementCacheSizeMib = Integer.parseInt(properties.getProperty("pool_statement_cache_size_mib", "5"));
+            this.metricsEnabled = Boolean.parseBoolean(properties.getProperty("metrics_enabled", "true"));
+            this.metricsHost = properties.getProperty("metrics_host", "127.0.0.1");
+            this.metricsPort = Integer.parseInt(properties.getProperty("metrics_port", "9404"));
+            this.accountCacheSize = Integer.parseInt(properties.getProperty("account_cache_size", "10000"));
+            this.accountCacheTtlMs = Long.parseLong(properties.getProperty("account_cache_ttl_ms", "5000"));
+            this.fxRatesFile = properties.getProperty("fx_rates_file", "");
+            this.fxReloadPeriodSec = Integer.parseInt(properties.getProperty("fx_reload_period_sec", "300"));
+            this.partitionCheckPeriodSec = Integer.parseInt(properties.getProperty("partition_check_period_sec", "3600"));
+            this.partitionMonthsAhead = Integer.parseInt(properties.getProperty("partition_months_ahead", "3"));
+            this.partitionRetentionMonths = Integer.parseInt(properties.getProperty("partition_retention_months", "0"));
+            this.snapshotCompactionGraceSec = Integer.parseInt(properties.getProperty("snapshot_compaction_grace_sec", "900"));
 
             fileInputStream.close();
         } catch (IOException e) {
@@ -89,4 +361,305 @@ public class AppConfig {
     public String getPassword() {
         return password;
     }
+
+    /**
+     * @return the number of connections the pool keeps open
+     */
+    public int getPoolMinSize() {
+        return poolMinSize;
+    }
+
+    /**
+     * @return the maximum number of connections in the pool
+     */
+    public int getPoolMaxSize() {
+        return poolMaxSize;
+    }
+
+    /**
+     * @return how long to wait for a free connection, in milliseconds
+     */
+    public long getPoolConnectionTimeoutMs() {
+        return poolConnectionTimeoutMs;
+    }
+
+    /**
+     * @return how long an idle connection is kept, in milliseconds
+     */
+    public long getPoolIdleTimeoutMs() {
+        return poolIdleTimeoutMs;
+    }
+
+    /**
+     * @return the timeout of the connection validation, in seconds
+     */
+    public int getPoolValidationTimeoutSec() {
+        return poolValidationTimeoutSec;
+    }
+
+    /**
+     * @return the leak detection threshold in milliseconds, zero if disabled
+     */
+    public long getPoolLeakDetectionThresholdMs() {
+        return poolLeakDetectionThresholdMs;
+    }
+
+    /**
+     * @return the maximum number of cached customers
+     */
+    public int getCustomerCacheSize() {
+        return customerCacheSize;
+    }
+
+    /**
+     * @return the number of rows fetched at a time for a statement
+     */
+    public int getStatementFetchSize() {
+        return statementFetchSize;
+    }
+
+    /**
+     * @return the monthly interest rate in percent
+     */
+    public BigDecimal getInterestRate() {
+        return interestRate;
+    }
+
+    /**
+     * @return the period of the interest check in seconds
+     */
+    public int getInterestCheckPeriodSec() {
+        return interestCheckPeriodSec;
+    }
+
+    /**
+     * @return the number of interest worker threads
+     */
+    public int getInterestThreads() {
+        return interestThreads;
+    }
+
+    /**
+     * @return the number of accounts in one interest chunk
+     */
+    public int getInterestChunkSize() {
+        return interestChunkSize;
+    }
+
+    /**
+     * @return the period of the snapshot compaction in seconds
+     */
+    public int getSnapshotCompactionPeriodSec() {
+        return snapshotCompactionPeriodSec;
+    }
+
+    /**
+     * @return the number of days in one compaction step
+     */
+    public int getSnapshotCompactionDays() {
+        return snapshotCompactionDays;
+    }
+
+    /**
+     * @return the number of receipt worker threads
+     */
+    public int getReceiptThreads() {
+        return receiptThreads;
+    }
+
+    /**
+     * @return the capacity of the receipt queue
+     */
+    public int getReceiptQueueCapacity() {
+        return receiptQueueCapacity;
+    }
+
+    /**
+     * @return true if the HTTP API is started
+     */
+    public boolean isHttpEnabled() {
+        return httpEnabled;
+    }
+
+    /**
+     * @return the address the HTTP API listens on
+     */
+    public String getHttpHost() {
+        return httpHost;
+    }
+
+    /**
+     * @return the port of the HTTP API
+     */
+    public int getHttpPort() {
+        return httpPort;
+    }
+
+    /**
+     * @return the token clients of the HTTP API authenticate with, or an empty string if none is configured
+     */
+    public String getHttpApiToken() {
+        return httpApiToken;
+    }
+
+    /**
+     * @return the number of HTTP threads used without virtual threads
+     */
+    public int getHttpFallbackThreads() {
+        return httpFallbackThreads;
+    }
+
+    /**
+     * @return the number of rows in one import batch
+     */
+    public int getImportBatchSize() {
+        return importBatchSize;
+    }
+
+    /**
+     * @return the number of posting lock stripes
+     */
+    public int getPostingLockStripes() {
+        return postingLockStripes;
+    }
+
+    /**
+     * @return true if postings are committed in groups
+     */
+    public boolean isGroupCommitEnabled() {
+        return groupCommitEnabled;
+    }
+
+    /**
+     * @return the maximum size of a posting group
+     */
+    public int getGroupCommitMaxBatch() {
+        return groupCommitMaxBatch;
+    }
+
+    /**
+     * @return the group commit window in milliseconds
+     */
+    public int getGroupCommitWindowMs() {
+        return groupCommitWindowMs;
+    }
+
+    /**
+     * @return the capacity of the group commit queue
+     */
+    public int getGroupCommitQueueCapacity() {
+        return groupCommitQueueCapacity;
+    }
+
+    /**
+     * @return the number of table rows after which the rows are written to the pdf file.
+     */
+    public int getPdfFlushRows() {
+        return pdfFlushRows;
+    }
+
+    /**
+     * @return the number of threads rendering statements of a bank, or 0 for the number of processors.
+     */
+    public int getStatementBatchThreads() {
+        return statementBatchThreads;
+    }
+
+    /**
+     * @return the number of executions of an SQL text on a connection after which the driver uses a named server-side prepared statement.
+     */
+    public int getPoolPrepareThreshold() {
+        return poolPrepareThreshold;
+    }
+
+    /**
+     * @return the maximum number of SQL texts cached per connection.
+     */
+    public int getPoolStatementCacheQueries() {
+        return poolStatementCacheQueries;
+    }
+
+    /**
+     * @return the maximum size of the statement cache of one connection, in MiB.
+     */
+    public int getPoolStatementCacheSizeMib() {
+        return poolStatementCacheSizeMib;
+    }
+
+    /**
+     * @return true if the latencies and counters of repository and statement operations are recorded and exported.
+     */
+    public boolean isMetricsEnabled() {
+        return metricsEnabled;
+    }
+
+    /**
+     * @return the address the metrics endpoint listens on.
+     */
+    public String getMetricsHost() {
+        return metricsHost;
+    }
+
+    /**
+     * @return the port of the metrics endpoint.
+     */
+    public int getMetricsPort() {
+        return metricsPort;
+    }
+
+    /**
+     * @return the maximum number of cached accounts
+     */
+    public int getAccountCacheSize() {
+        return accountCacheSize;
+    }
+
+    /**
+     * @return the time in milliseconds after which a cached account is checked against the database
+     */
+    public long getAccountCacheTtlMs() {
+        return accountCacheTtlMs;
+    }
+
+    /**
+     * @return the CSV file of exchange rates, or an empty string if the rates are read from the database
+     */
+    public String getFxRatesFile() {
+        return fxRatesFile;
+    }
+
+    /**
+     * @return the period in seconds at which the exchange rates are reloaded
+     */
+    public int getFxReloadPeriodSec() {
+        return fxReloadPeriodSec;
+    }
+
+    /**
+     * @return the period in seconds at which the partitions of transactions are maintained
+     */
+    public int getPartitionCheckPeriodSec() {
+        return partitionCheckPeriodSec;
+    }
+
+    /**
+     * @return the number of future months that have a partition of transactions in advance
+     */
+    public int getPartitionMonthsAhead() {
+        return partitionMonthsAhead;
+    }
+
+    /**
+     * @return the number of past months whose partitions of transactions stay attached, 0 if partitions are never archived
+     */
+    public int getPartitionRetentionMonths() {
+        return partitionRetentionMonths;
+    }
+
+    /**
+     * @return the time in seconds after midnight before the previous day is compacted
+     */
+    public int getSnapshotCompactionGraceSec() {
+        return snapshotCompactionGraceSec;
+    }
 }
@@ -0,0 +1,65 @@
+package org.clever_bank.services;
+
+import org.clever_bank.repository.DailyBalanceRepository;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compacts the transactions of past days into daily balance snapshots in the background.
+ * Only days before today (UTC) are compacted, because transactions are still posted today.
+ * A day is compacted only a grace interval after its end, because postings and interest chunks
+ * stamp their date before they commit, and a transaction stamped just before midnight may commit after it.
+ */
+public class BalanceSnapshotCompactor {
+    /**
+     * Application configuration.
+     * This class reads the configuration from the 'application.yml' file located in the resources' directory.
+     */
+    private static final AppConfig appConfig = new AppConfig();
+
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+
+    public void startCompaction() {
+        // Запуск сжатия транзакций прошедших дней с периодом из конфигурационного файла
+        scheduler.scheduleAtFixedRate(this::compact, 0, appConfig.getSnapshotCompactionPeriodSec(), TimeUnit.SECONDS);
+    }
+
+    /**
+     * Compacts all days from the watermark up to the last day past the grace interval,
+     * one range of days per database transaction.
+     */
+    private void compact() {
+        LocalDate until = getCompactionLimit(Instant.now(), appConfig.getSnapshotCompactionGraceSec());
+        try {
+            while (!Thread.currentThread().isInterrupted()
+                    && DailyBalanceRepository.compactStep(until, appConfig.getSnapshotCompactionDays())) {
+                // The next range of days is compacted by the next step
+            }
+        }
+        catch (Exception e) {
+            // The watermark is not moved, the days are compacted by the next run
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Returns the first day that must not be compacted yet: the current UTC day,
+     * or the day before it while the grace interval after midnight has not passed.
+     *
+     * @param now          The current time.
+     * @param graceSeconds The grace interval after midnight in seconds.
+     * @return The first day that must not be compacted.
+     */
+    static LocalDate getCompactionLimit(Instant now, long graceSeconds) {
+        return now.minusSeconds(Math.max(0, graceSeconds)).atZone(ZoneOffset.UTC).toLocalDate();
+    }
+
+    public void stopCompaction() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,187 @@
+package org.clever_bank.services;
+
+import org.clever_bank.entities.ExchangeRate;
+import org.clever_bank.repository.ExchangeRateRepository;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-memory table of exchange rates used to post transfers between accounts in different currencies.
+ * The rates are read from the CSV file given in the configuration, or from the database table if no file is given,
+ * and are reloaded periodically. Every load builds a new immutable snapshot and swaps it in atomically,
+ * so a posting reads all rates from one consistent snapshot without locks or database round trips.
+ */
+public class ExchangeRates {
+    /**
+     * Application configuration.
+     * This class reads the configuration from the 'application.yml' file located in the resources' directory.
+     */
+    private static final AppConfig appConfig = new AppConfig();
+
+    /**
+     * The number of decimal places of credited money.
+     */
+    public static final int MONEY_SCALE = 2;
+
+    /**
+     * The rounding of converted money to {@link #MONEY_SCALE} decimal places, the same as the rounding of interest.
+     */
+    public static final RoundingMode ROUNDING = RoundingMode.HALF_UP;
+
+    /**
+     * The current snapshot of the rates. Empty until the rates are loaded.
+     */
+    private static final AtomicReference<Snapshot> snapshot = new AtomicReference<>(new Snapshot(Map.of(), null));
+
+    /**
+     * Reloads the rates, created by {@link #start()}.
+     */
+    private static ScheduledExecutorService scheduler;
+
+    /**
+     * An immutable table of rates.
+     *
+     * @param rates    The rates by the currency sold and the currency bought.
+     * @param loadedAt The time the rates were loaded, or null if they were never loaded.
+     */
+    private record Snapshot(Map<String, Map<String, BigDecimal>> rates, Instant loadedAt) {
+    }
+
+    /**
+     * Loads the rates and schedules their reload with the period from the configuration.
+     */
+    public static synchronized void start () {
+        load();
+        int period = appConfig.getFxReloadPeriodSec();
+        if (period > 0 && scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "exchange-rates");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleAtFixedRate(ExchangeRates::load, period, period, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Stops the reload of the rates. The loaded rates stay in use.
+     */
+    public static synchronized void stop () {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Loads the rates and replaces the current snapshot with them.
+     * If the rates cannot be read or are invalid the current snapshot stays in use.
+     *
+     * @return true if the snapshot was replaced.
+     */
+    public static boolean load () {
+        try {
+            String file = appConfig.getFxRatesFile();
+            List<ExchangeRate> rates = file.isBlank() ? ExchangeRateRepository.readAll() : readFile(Path.of(file));
+
+            Map<String, Map<String, BigDecimal>> table = new HashMap<>();
+            for (ExchangeRate rate : rates) {
+                if (rate.getRate() == null || rate.getRate().signum() <= 0) {
+                    throw new IllegalArgumentException("Invalid exchange rate: " + rate);
+                }
+                table.computeIfAbsent(rate.getCurrencyFrom(), key -> new HashMap<>())
+                        .put(rate.getCurrencyTo(), rate.getRate());
+            }
+            table.replaceAll((currency, quotes) -> Map.copyOf(quotes));
+            snapshot.set(new Snapshot(Map.copyOf(table), Instant.now()));
+            return true;
+        }
+        catch (IOException | SQLException | RuntimeException e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Returns the rate of a pair of currencies from the current snapshot.
+     *
+     * @param currencyFrom The currency sold.
+     * @param currencyTo   The currency bought.
+     * @return The amount of the bought currency for one unit of the sold one, one if the currencies are the same,
+     * or null if there is no rate for the pair.
+     */
+    public static BigDecimal getRate (String currencyFrom, String currencyTo) {
+        if (currencyFrom == null || currencyFrom.equals(currencyTo)) {
+            return BigDecimal.ONE;
+        }
+        Map<String, BigDecimal> quotes = snapshot.get().rates().get(currencyFrom);
+        return quotes == null ? null : quotes.get(currencyTo);
+    }
+
+    /**
+     * Converts money with the rate of the current snapshot.
+     * The product of the money and the rate is exact and is rounded once to {@link #MONEY_SCALE} decimal places.
+     *
+     * @param money        The money in the currency sold.
+     * @param currencyFrom The currency sold.
+     * @param currencyTo   The currency bought.
+     * @return The same money if the currencies are the same, the converted money,
+     * or null if there is no rate for the pair or the converted money rounds to zero.
+     */
+    public static BigDecimal convert (BigDecimal money, String currencyFrom, String currencyTo) {
+        if (currencyFrom == null || currencyFrom.equals(currencyTo)) {
+            return money;
+        }
+        BigDecimal rate = getRate(currencyFrom, currencyTo);
+        if (rate == null) {
+            return null;
+        }
+        BigDecimal converted = money.multiply(rate).setScale(MONEY_SCALE, ROUNDING);
+        return converted.signum() > 0 ? converted : null;
+    }
+
+    /**
+     * @return the time the current rates were loaded, or null if they were never loaded.
+     */
+    public static Instant getLoadedAt () {
+        return snapshot.get().loadedAt();
+    }
+
+    /**
+     * Reads rates from a CSV file with lines 'from,to,rate'. Empty lines and lines starting with '#' are skipped.
+     *
+     * @param path The file.
+     * @return The rates.
+     * @throws IOException If the file cannot be read.
+     */
+    private static List<ExchangeRate> readFile (Path path) throws IOException {
+        List<ExchangeRate> rates = new ArrayList<>();
+        for (String line : Files.readAllLines(path, StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split(",");
+            if (fields.length != 3) {
+                throw new IOException("Expected 'from,to,rate' in " + path + ": " + line);
+            }
+            rates.add(new ExchangeRate(fields[0].trim(), fields[1].trim(), new BigDecimal(fields[2].trim())));
+        }
+        return rates;
+    }
+}
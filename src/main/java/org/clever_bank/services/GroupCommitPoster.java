@@ -0,0 +1,292 @@
+package org.clever_bank.services;
+
+import org.clever_bank.entities.Transaction;
+import org.clever_bank.metrics.Metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Commits postings in groups.
+ * Postings are queued and a single committer thread posts all postings that arrive within a short window,
+ * up to a maximum group size, in one database transaction, so a group costs one commit instead of one per posting.
+ * A longer window or a larger group gives more throughput at the cost of latency.
+ * A group holds the {@link PostingCoordinator} locks of all its accounts, so it is serialized with the other postings
+ * of the same accounts. If a group fails, its postings are retried one by one, so one bad posting does not fail the others.
+ */
+public class GroupCommitPoster {
+    /**
+     * Application configuration.
+     * This class reads the configuration from the 'application.yml' file located in the resources' directory.
+     */
+    private static final AppConfig appConfig = new AppConfig();
+
+    /**
+     * The maximum number of postings in one group.
+     */
+    private static final int maxBatch = Math.max(1, appConfig.getGroupCommitMaxBatch());
+
+    /**
+     * How long the first posting of a group waits for more postings, in nanoseconds.
+     */
+    private static final long windowNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, appConfig.getGroupCommitWindowMs()));
+
+    /**
+     * The postings waiting to be committed. Callers block when it is full.
+     */
+    private static final BlockingQueue<PendingPosting> queue =
+            new ArrayBlockingQueue<>(Math.max(1, appConfig.getGroupCommitQueueCapacity()));
+
+    /**
+     * The number of groups committed.
+     */
+    private static final AtomicLong groupCount = new AtomicLong();
+
+    /**
+     * The number of postings completed.
+     */
+    private static final AtomicLong postingCount = new AtomicLong();
+
+    /**
+     * The number of groups whose postings were retried one by one.
+     */
+    private static final AtomicLong fallbackCount = new AtomicLong();
+
+    /**
+     * The total time from submitting a posting to its completion, in nanoseconds.
+     */
+    private static final AtomicLong totalLatencyNanos = new AtomicLong();
+
+    /**
+     * The thread committing the groups, or null if group commit is not started.
+     */
+    private static Thread committer;
+
+    /**
+     * Whether new postings are accepted.
+     */
+    private static volatile boolean running;
+
+    /**
+     * Starts the committer thread. Does nothing if it is already started.
+     */
+    public static synchronized void start () {
+        if (committer != null) {
+            return;
+        }
+        running = true;
+        committer = new Thread(GroupCommitPoster::run, "group-commit");
+        committer.setDaemon(true);
+        committer.start();
+    }
+
+    /**
+     * @return true if postings are committed in groups.
+     */
+    public static boolean isRunning () {
+        return running;
+    }
+
+    /**
+     * Queues a posting for the next group.
+     * If group commit is not started, the transaction is posted immediately.
+     *
+     * @param transaction The transaction to post.
+     * @return A future completed with the ID of the created transaction, or 0 if it was not posted.
+     */
+    public static CompletableFuture<Integer> submit (Transaction transaction) {
+        if (!running) {
+            return CompletableFuture.completedFuture(PostingCoordinator.post(transaction));
+        }
+        PendingPosting posting = new PendingPosting(transaction, new CompletableFuture<>(), System.nanoTime());
+        try {
+            queue.put(posting);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            posting.future.completeExceptionally(e);
+        }
+        return posting.future;
+    }
+
+    /**
+     * Stops accepting postings and waits until the queued postings are committed.
+     */
+    public static void shutdown () {
+        Thread thread;
+        synchronized (GroupCommitPoster.class) {
+            running = false;
+            thread = committer;
+            committer = null;
+        }
+        if (thread == null) {
+            return;
+        }
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Postings queued while the committer was stopping
+        PendingPosting posting;
+        while ((posting = queue.poll()) != null) {
+            completeOneByOne(List.of(posting));
+        }
+    }
+
+    /**
+     * @return the number of postings waiting in the queue.
+     */
+    public static int getQueueDepth () {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of groups committed.
+     */
+    public static long getGroupCount () {
+        return groupCount.get();
+    }
+
+    /**
+     * @return the number of postings completed.
+     */
+    public static long getPostingCount () {
+        return postingCount.get();
+    }
+
+    /**
+     * @return the number of groups whose postings were retried one by one.
+     */
+    public static long getFallbackCount () {
+        return fallbackCount.get();
+    }
+
+    /**
+     * @return the average number of postings in a group.
+     */
+    public static double getAverageGroupSize () {
+        long groups = groupCount.get();
+        return groups == 0 ? 0 : (double) postingCount.get() / groups;
+    }
+
+    /**
+     * @return the average time from submitting a posting to its completion, in milliseconds.
+     */
+    public static double getAverageLatencyMillis () {
+        long count = postingCount.get();
+        return count == 0 ? 0 : totalLatencyNanos.get() / 1_000_000.0 / count;
+    }
+
+    /**
+     * @return a short human-readable summary of the group commits.
+     */
+    public static String getStatistics () {
+        return String.format("queued=%d, groups=%d, postings=%d, avgGroup=%.1f, avgLatency=%.3fms, fallbacks=%d",
+                getQueueDepth(), getGroupCount(), getPostingCount(), getAverageGroupSize(),
+                getAverageLatencyMillis(), getFallbackCount());
+    }
+
+    /**
+     * Collects the postings into groups and commits them until the poster is stopped and the queue is empty.
+     */
+    private static void run () {
+        List<PendingPosting> group = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingPosting first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                long deadline = first.queuedAt + windowNanos;
+                while (group.size() < maxBatch) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingPosting next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                }
+            }
+            catch (InterruptedException e) {
+                running = false;
+            }
+            if (!group.isEmpty()) {
+                commit(group);
+                group.clear();
+            }
+        }
+    }
+
+    /**
+     * Posts a group in one database transaction and completes the futures of its postings.
+     *
+     * @param group The postings of the group.
+     */
+    private static void commit (List<PendingPosting> group) {
+        List<Transaction> transactions = new ArrayList<>(group.size());
+        for (PendingPosting posting : group) {
+            transactions.add(posting.transaction);
+        }
+        int[] ids;
+        try {
+            ids = PostingCoordinator.postAll(transactions);
+        }
+        catch (Exception e) {
+            // The error is already recorded by createAll, only the fallback is counted here
+            fallbackCount.incrementAndGet();
+            Metrics.recordFailure("group_commit_fallback");
+            completeOneByOne(group);
+            return;
+        }
+        groupCount.incrementAndGet();
+        for (int i = 0; i < ids.length; i++) {
+            complete(group.get(i), ids[i]);
+        }
+    }
+
+    /**
+     * Posts every posting in its own database transaction.
+     *
+     * @param postings The postings.
+     */
+    private static void completeOneByOne (List<PendingPosting> postings) {
+        for (PendingPosting posting : postings) {
+            try {
+                complete(posting, PostingCoordinator.post(posting.transaction));
+            }
+            catch (RuntimeException e) {
+                posting.future.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Completes the future of a posting and records its latency.
+     *
+     * @param posting       The posting.
+     * @param transactionId The ID of the created transaction, or 0.
+     */
+    private static void complete (PendingPosting posting, int transactionId) {
+        postingCount.incrementAndGet();
+        totalLatencyNanos.addAndGet(System.nanoTime() - posting.queuedAt);
+        posting.future.complete(transactionId);
+    }
+
+    /**
+     * A posting waiting in the queue.
+     *
+     * @param transaction The transaction to post.
+     * @param future      The future completed with the ID of the created transaction.
+     * @param queuedAt    The time the posting was submitted, from {@link System#nanoTime()}.
+     */
+    private record PendingPosting(Transaction transaction, CompletableFuture<Integer> future, long queuedAt) {
+    }
+}
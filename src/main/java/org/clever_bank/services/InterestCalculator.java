@@ -1,23 +1,107 @@
 package org.clever_bank.services;
 
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
+import org.clever_bank.repository.InterestRepository;
 
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Applies monthly interest to the balances of accounts.
+ * Accounts with due interest are read in pages ordered by ID, and every page is processed
+ * as one chunk by a pool of worker threads. Each chunk is one database transaction,
+ * so a run interrupted by a crash is completed by the next run without applying interest twice.
+ */
 public class InterestCalculator {
+    /**
+     * Application configuration.
+     * This class reads the configuration from the 'application.yml' file located in the resources' directory.
+     */
+    private static final AppConfig appConfig = new AppConfig();
+
+    /**
+     * The monthly interest rate as a fraction.
+     */
+    private final BigDecimal monthlyRate = appConfig.getInterestRate().divide(BigDecimal.valueOf(100), MathContext.DECIMAL64);
+
+    /**
+     * The number of accounts in one chunk.
+     */
+    private final int chunkSize = Math.max(1, appConfig.getInterestChunkSize());
+
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
 
+    /**
+     * Workers applying interest to chunks of accounts.
+     * When all workers are busy and the queue is full, the thread reading the pages processes a chunk itself,
+     * which keeps the number of pages read ahead bounded.
+     */
+    private final ThreadPoolExecutor workers = new ThreadPoolExecutor(
+            Math.max(1, appConfig.getInterestThreads()),
+            Math.max(1, appConfig.getInterestThreads()),
+            0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, appConfig.getInterestThreads()) * 2),
+            new ThreadPoolExecutor.CallerRunsPolicy());
+
     public void startInterestCalculation() {
-        // Запуск задачи каждые 30 секунд
-        scheduler.scheduleAtFixedRate(this::calculateInterest, 0, 30, TimeUnit.SECONDS);
+        // Запуск проверки начисления процентов с периодом из конфигурационного файла
+        scheduler.scheduleAtFixedRate(this::calculateInterest, 0, appConfig.getInterestCheckPeriodSec(), TimeUnit.SECONDS);
     }
 
+    /**
+     * Applies interest to all accounts whose interest date has come.
+     */
     private void calculateInterest() {
-        // Код для начисления процентов на остаток счета
-        // Получить значение процента из конфигурационного файла и применить его к каждому счету
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        long start = System.nanoTime();
+        AtomicInteger applied = new AtomicInteger();
+        AtomicInteger failedChunks = new AtomicInteger();
+        List<Future<?>> chunks = new ArrayList<>();
+
+        int afterId = 0;
+        List<Integer> accountIds;
+        while (!(accountIds = InterestRepository.readDueAccountIds(today, afterId, chunkSize)).isEmpty()) {
+            List<Integer> chunk = accountIds;
+            chunks.add(workers.submit(() -> {
+                try {
+                    applied.addAndGet(InterestRepository.applyInterest(chunk, today, monthlyRate));
+                }
+                catch (Exception e) {
+                    // The chunk stays due and is retried by the next run
+                    failedChunks.incrementAndGet();
+                    e.printStackTrace();
+                }
+            }));
+            afterId = accountIds.get(accountIds.size() - 1);
+        }
+
+        for (Future<?> chunk : chunks) {
+            try {
+                chunk.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            catch (ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+
+        if (applied.get() > 0 || failedChunks.get() > 0) {
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+            System.out.printf("Interest is applied to %d accounts in %.1f s (%.0f accounts/s), failed chunks: %d%n",
+                    applied.get(), seconds, applied.get() / Math.max(seconds, 0.001), failedChunks.get());
+        }
     }
 
     public void stopInterestCalculation() {
         scheduler.shutdown();
+        workers.shutdown();
     }
 }
@@ -0,0 +1,85 @@
+package org.clever_bank.services;
+
+import org.clever_bank.metrics.Metrics;
+import org.clever_bank.repository.DailyBalanceRepository;
+import org.clever_bank.repository.TransactionPartitionRepository;
+
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Maintains the monthly partitions of transactions in the background.
+ * Partitions are created several months ahead, so postings never fall into the default partition.
+ * Partitions older than the retention period are detached and archived, but only once their days
+ * are compacted into daily balance snapshots, so the money summaries of archived months stay available.
+ */
+public class PartitionManager {
+    /**
+     * Application configuration.
+     * This class reads the configuration from the 'application.yml' file located in the resources' directory.
+     */
+    private static final AppConfig appConfig = new AppConfig();
+
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+
+    public void startPartitionMaintenance() {
+        // Запуск обслуживания секций транзакций с периодом из конфигурационного файла
+        scheduler.scheduleAtFixedRate(this::maintain, 0, appConfig.getPartitionCheckPeriodSec(), TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates the partitions of the coming months and archives the partitions past the retention period.
+     */
+    private void maintain() {
+        YearMonth currentMonth = YearMonth.now(ZoneOffset.UTC);
+        try {
+            List<String> created = TransactionPartitionRepository.createPartitions(currentMonth,
+                    currentMonth.plusMonths(Math.max(0, appConfig.getPartitionMonthsAhead())));
+            if (!created.isEmpty()) {
+                System.out.println("Created partitions of transactions: " + String.join(", ", created));
+            }
+
+            int retentionMonths = appConfig.getPartitionRetentionMonths();
+            if (retentionMonths <= 0) {
+                return;
+            }
+            LocalDate watermark = DailyBalanceRepository.readWatermark();
+            if (watermark == null) {
+                return;
+            }
+            YearMonth firstKeptMonth = currentMonth.minusMonths(retentionMonths);
+            if (YearMonth.from(watermark).isBefore(firstKeptMonth)) {
+                firstKeptMonth = YearMonth.from(watermark);
+            }
+            for (YearMonth month : TransactionPartitionRepository.readPartitionMonths()) {
+                if (!month.isBefore(firstKeptMonth)) {
+                    // The partitions are in ascending order of months
+                    break;
+                }
+                try {
+                    System.out.println("Archived partition of transactions: " + TransactionPartitionRepository.archivePartition(month));
+                }
+                catch (SQLException e) {
+                    // The archive boundary only moves over archived months, so the later months wait
+                    // until this one is archived by the next run
+                    Metrics.recordFailure("partition_archive", e);
+                    break;
+                }
+            }
+        }
+        catch (Exception e) {
+            // The partitions are maintained by the next run
+            Metrics.recordFailure("partition_maintenance", e);
+        }
+    }
+
+    public void stopPartitionMaintenance() {
+        scheduler.shutdownNow();
+    }
+}
@@ -0,0 +1,182 @@
+package org.clever_bank.services;
+
+import com.itextpdf.text.*;
+import com.itextpdf.text.pdf.BaseFont;
+import com.itextpdf.text.pdf.PdfPCell;
+import com.itextpdf.text.pdf.PdfPTable;
+import com.itextpdf.text.pdf.PdfWriter;
+
+import java.io.*;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Renders pdf files of checks and statements.
+ * The font is read from the classpath and parsed once, and the fonts derived from it are cached by size,
+ * so rendering a document costs only its content. A parsed font is not modified by the documents using it,
+ * which makes the cached fonts safe to share between threads.
+ */
+public class PdfRenderer {
+    /**
+     * The classpath location of the font supporting cyrillic characters.
+     */
+    private static final String FONT_RESOURCE = "/assets/fonts/couriercyrps.ttf";
+
+    /**
+     * The size of the font used in pdf files.
+     */
+    public static final float DEFAULT_FONT_SIZE = 10;
+
+    /**
+     * The size of the buffer between the pdf writer and the file.
+     */
+    private static final int OUTPUT_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The parsed font, or null until it is first used.
+     */
+    private static volatile BaseFont baseFont;
+
+    /**
+     * Fonts by size.
+     */
+    private static final Map<Float, Font> fonts = new ConcurrentHashMap<>();
+
+    /**
+     * Returns the cached font of the given size, creating it on first use.
+     *
+     * @param size The size of the font.
+     * @return The font supporting cyrillic characters.
+     * @throws DocumentException If the font cannot be created.
+     * @throws IOException       If the font resource cannot be read.
+     */
+    public static Font getFont (float size) throws DocumentException, IOException {
+        Font font = fonts.get(size);
+        if (font == null) {
+            loadBaseFont();
+            font = fonts.computeIfAbsent(size, key -> new Font(baseFont, key, Font.NORMAL));
+        }
+        return font;
+    }
+
+    /**
+     * @return The cached font of the default size.
+     * @throws DocumentException If the font cannot be created.
+     * @throws IOException       If the font resource cannot be read.
+     */
+    public static Font getFont () throws DocumentException, IOException {
+        return getFont(DEFAULT_FONT_SIZE);
+    }
+
+    /**
+     * Creates a new pdf file with the given name and opens a document writing to it through a buffer.
+     * The document must be closed by the caller, which also flushes and closes the file.
+     *
+     * @param fileName The name of the pdf file.
+     * @return The opened document.
+     * @throws DocumentException     If the document cannot be created.
+     * @throws FileNotFoundException If the file cannot be created.
+     */
+    public static Document openDocument (String fileName) throws DocumentException, FileNotFoundException {
+        Document document = new Document();
+        OutputStream outputStream = new BufferedOutputStream(new FileOutputStream(fileName), OUTPUT_BUFFER_SIZE);
+        PdfWriter writer = PdfWriter.getInstance(document, outputStream);
+        writer.setInitialLeading(12.5f);
+        document.open();
+        return document;
+    }
+
+    /**
+     * Writes the given text to a new pdf file as one paragraph.
+     *
+     * @param content  The text of the document.
+     * @param fileName The name of the pdf file.
+     * @throws DocumentException If the document cannot be created.
+     * @throws IOException       If the file cannot be written or the font cannot be read.
+     */
+    public static void renderText (String content, String fileName) throws DocumentException, IOException {
+        Font font = getFont();
+        Document document = openDocument(fileName);
+        try {
+            document.add(new Paragraph(content, font));
+        }
+        finally {
+            document.close();
+        }
+    }
+
+    /**
+     * Adds a centered line of text to an open document.
+     *
+     * @param document The open document.
+     * @param text     The text of the line.
+     * @param font     The font of the line.
+     * @throws DocumentException If the line cannot be added.
+     */
+    public static void addTitle (Document document, String text, Font font) throws DocumentException {
+        Paragraph paragraph = new Paragraph(text, font);
+        paragraph.setAlignment(Element.ALIGN_CENTER);
+        document.add(paragraph);
+    }
+
+    /**
+     * Adds a table of two columns, labels and values, to an open document.
+     *
+     * @param document The open document.
+     * @param rows     The values by label, in the order of the rows.
+     * @param font     The font of the cells.
+     * @throws DocumentException If the table cannot be added.
+     */
+    public static void addKeyValueTable (Document document, Map<String, String> rows, Font font) throws DocumentException {
+        PdfPTable table = new PdfPTable(new float[] {2, 3});
+        table.setWidthPercentage(100);
+        for (Map.Entry<String, String> row : rows.entrySet()) {
+            table.addCell(cell(row.getKey(), font, Element.ALIGN_LEFT));
+            table.addCell(cell(row.getValue(), font, Element.ALIGN_RIGHT));
+        }
+        table.setSpacingAfter(10);
+        document.add(table);
+    }
+
+    /**
+     * Creates a table cell without borders. A long text is wrapped inside the cell.
+     *
+     * @param text      The text of the cell.
+     * @param font      The font of the text.
+     * @param alignment The horizontal alignment, for example {@link Element#ALIGN_RIGHT}.
+     * @return The cell.
+     */
+    public static PdfPCell cell (String text, Font font, int alignment) {
+        PdfPCell cell = new PdfPCell(new Phrase(text, font));
+        cell.setBorder(Rectangle.NO_BORDER);
+        cell.setHorizontalAlignment(alignment);
+        cell.setPadding(2);
+        return cell;
+    }
+
+    /**
+     * Reads and parses the font from the classpath if it is not loaded yet.
+     * The font is embedded in the jar, so it is found both in the IDE and in the packaged application.
+     *
+     * @throws DocumentException If the font cannot be parsed.
+     * @throws IOException       If the font resource cannot be read.
+     */
+    private static void loadBaseFont () throws DocumentException, IOException {
+        if (baseFont != null) {
+            return;
+        }
+        synchronized (PdfRenderer.class) {
+            if (baseFont == null) {
+                byte[] fontData;
+                try (InputStream inputStream = PdfRenderer.class.getResourceAsStream(FONT_RESOURCE)) {
+                    if (inputStream == null) {
+                        throw new FileNotFoundException("Font resource not found: " + FONT_RESOURCE);
+                    }
+                    fontData = inputStream.readAllBytes();
+                }
+                baseFont = BaseFont.createFont("couriercyrps.ttf", BaseFont.IDENTITY_H, BaseFont.EMBEDDED,
+                        true, fontData, null);
+            }
+        }
+    }
+}
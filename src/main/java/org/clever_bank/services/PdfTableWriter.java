@@ -0,0 +1,120 @@
+package org.clever_bank.services;
+
+import com.itextpdf.text.Document;
+import com.itextpdf.text.DocumentException;
+import com.itextpdf.text.Font;
+import com.itextpdf.text.Rectangle;
+import com.itextpdf.text.pdf.PdfPCell;
+import com.itextpdf.text.pdf.PdfPTable;
+
+/**
+ * Writes the rows of a table to an open pdf document as they are produced.
+ * The table is marked incomplete, so every time it is added to the document the rows added since the last time
+ * are laid out on the pages and released. The header row is repeated on every page.
+ * Only the rows of about one page are kept in memory, whatever the number of rows of the table.
+ */
+public class PdfTableWriter implements AutoCloseable {
+    /**
+     * Application configuration.
+     * This class reads the configuration from the 'application.yml' file located in the resources' directory.
+     */
+    private static final AppConfig appConfig = new AppConfig();
+
+    /**
+     * The number of rows after which the rows are written to the document.
+     */
+    private static final int flushRows = Math.max(1, appConfig.getPdfFlushRows());
+
+    /**
+     * The document the table is written to.
+     */
+    private final Document document;
+
+    /**
+     * The table holding the rows not written yet.
+     */
+    private final PdfPTable table;
+
+    /**
+     * The font of the cells.
+     */
+    private final Font font;
+
+    /**
+     * The horizontal alignment of every column.
+     */
+    private final int[] alignments;
+
+    /**
+     * The number of rows added since the table was last written to the document.
+     */
+    private int pendingRows;
+
+    /**
+     * The number of rows added to the table, without the header row.
+     */
+    private long rowCount;
+
+    /**
+     * Starts a table in the given document with one header row.
+     *
+     * @param document       The open document.
+     * @param font           The font of the cells.
+     * @param relativeWidths The relative widths of the columns.
+     * @param alignments     The horizontal alignment of every column, for example {@link com.itextpdf.text.Element#ALIGN_RIGHT}.
+     * @param headers        The titles of the columns.
+     * @throws DocumentException If the widths do not match the number of columns.
+     */
+    public PdfTableWriter (Document document, Font font, float[] relativeWidths, int[] alignments, String... headers)
+            throws DocumentException {
+        this.document = document;
+        this.font = font;
+        this.alignments = alignments;
+        this.table = new PdfPTable(relativeWidths.length);
+        table.setWidths(relativeWidths);
+        table.setWidthPercentage(100);
+        table.setHeaderRows(1);
+        table.setComplete(false);
+        for (int i = 0; i < headers.length; i++) {
+            PdfPCell cell = PdfRenderer.cell(headers[i], font, alignments[i]);
+            cell.setBorder(Rectangle.BOTTOM);
+            table.addCell(cell);
+        }
+    }
+
+    /**
+     * Adds a row to the table and writes the pending rows to the document once there are enough of them.
+     *
+     * @param cells The text of every column.
+     * @throws DocumentException If the rows cannot be written.
+     */
+    public void addRow (String... cells) throws DocumentException {
+        for (int i = 0; i < cells.length; i++) {
+            table.addCell(PdfRenderer.cell(cells[i], font, alignments[i]));
+        }
+        rowCount++;
+        if (++pendingRows >= flushRows) {
+            document.add(table);
+            pendingRows = 0;
+        }
+    }
+
+    /**
+     * @return the number of rows added to the table, without the header row.
+     */
+    public long getRowCount () {
+        return rowCount;
+    }
+
+    /**
+     * Completes the table and writes the remaining rows to the document.
+     * The document itself stays open.
+     *
+     * @throws DocumentException If the rows cannot be written.
+     */
+    @Override
+    public void close () throws DocumentException {
+        table.setComplete(true);
+        document.add(table);
+    }
+}
@@ -0,0 +1,211 @@
+package org.clever_bank.services;
+
+import org.clever_bank.entities.Transaction;
+import org.clever_bank.repository.TransactionRepository;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Serializes the postings of this application per account.
+ * Accounts are spread over a fixed number of lock stripes by ID. A posting takes the locks of its sender
+ * and recipient in stripe order, so two transfers in opposite directions cannot deadlock, and postings
+ * of unrelated accounts run in parallel. Because the row locks of PostgreSQL are then requested one
+ * posting at a time per account, concurrent transfers between the same accounts no longer end in
+ * database deadlocks and retries. A group of postings committed together takes the locks of all its accounts
+ * in stripe order before the group starts.
+ */
+public class PostingCoordinator {
+    /**
+     * Application configuration.
+     * This class reads the configuration from the 'application.yml' file located in the resources' directory.
+     */
+    private static final AppConfig appConfig = new AppConfig();
+
+    /**
+     * The locks of the stripes.
+     */
+    private static final ReentrantLock[] stripes = createStripes(Math.max(1, appConfig.getPostingLockStripes()));
+
+    /**
+     * The number of postings.
+     */
+    private static final AtomicLong postingCount = new AtomicLong();
+
+    /**
+     * The number of lock acquisitions that had to wait for another posting.
+     */
+    private static final AtomicLong contendedCount = new AtomicLong();
+
+    /**
+     * The total time spent waiting for locks, in nanoseconds.
+     */
+    private static final AtomicLong totalWaitNanos = new AtomicLong();
+
+    /**
+     * The longest time spent waiting for the locks of one posting, in nanoseconds.
+     */
+    private static final AtomicLong maxWaitNanos = new AtomicLong();
+
+    /**
+     * Posts a transaction while holding the locks of its accounts.
+     *
+     * @param transaction The transaction to post.
+     * @return The ID of the created transaction, or 0 if it was not posted.
+     */
+    public static int post (Transaction transaction) {
+        int senderStripe = getStripe(transaction.getAccountSender().getId());
+        int recipientStripe = getStripe(transaction.getAccountRecipient().getId());
+        int first = Math.min(senderStripe, recipientStripe);
+        int second = Math.max(senderStripe, recipientStripe);
+
+        long start = System.nanoTime();
+        lock(stripes[first]);
+        try {
+            if (second != first) {
+                lock(stripes[second]);
+            }
+            try {
+                recordWait(System.nanoTime() - start, 1);
+                return TransactionRepository.create(transaction);
+            }
+            finally {
+                if (second != first) {
+                    stripes[second].unlock();
+                }
+            }
+        }
+        finally {
+            stripes[first].unlock();
+        }
+    }
+
+    /**
+     * Posts a group of transactions in one database transaction while holding the locks of all their accounts.
+     * The locks are taken in stripe order, so a group cannot deadlock with single postings or with other groups.
+     *
+     * @param transactions The transactions to post, in the order they are posted.
+     * @return The IDs of the created transactions in the same order, 0 for the transactions that were not posted.
+     * @throws SQLException If the group cannot be posted. No transaction of the group is kept in this case.
+     */
+    public static int[] postAll (List<Transaction> transactions) throws SQLException {
+        boolean[] used = new boolean[stripes.length];
+        for (Transaction transaction : transactions) {
+            used[getStripe(transaction.getAccountSender().getId())] = true;
+            used[getStripe(transaction.getAccountRecipient().getId())] = true;
+        }
+
+        long start = System.nanoTime();
+        int locked = 0;
+        try {
+            for (; locked < stripes.length; locked++) {
+                if (used[locked]) {
+                    lock(stripes[locked]);
+                }
+            }
+            recordWait(System.nanoTime() - start, transactions.size());
+            return TransactionRepository.createAll(transactions);
+        }
+        finally {
+            for (int i = locked - 1; i >= 0; i--) {
+                if (used[i]) {
+                    stripes[i].unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the number of postings.
+     */
+    public static long getPostingCount () {
+        return postingCount.get();
+    }
+
+    /**
+     * @return the number of lock acquisitions that had to wait for another posting.
+     */
+    public static long getContendedCount () {
+        return contendedCount.get();
+    }
+
+    /**
+     * @return the average time a posting waited for its locks, in milliseconds.
+     */
+    public static double getAverageWaitMillis () {
+        long count = postingCount.get();
+        return count == 0 ? 0 : totalWaitNanos.get() / 1_000_000.0 / count;
+    }
+
+    /**
+     * @return the longest time a posting waited for its locks, in milliseconds.
+     */
+    public static double getMaxWaitMillis () {
+        return maxWaitNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * @return the number of postings waiting for a lock right now.
+     */
+    public static int getWaitingCount () {
+        int waiting = 0;
+        for (ReentrantLock stripe : stripes) {
+            waiting += stripe.getQueueLength();
+        }
+        return waiting;
+    }
+
+    /**
+     * @return a short human-readable summary of the lock contention.
+     */
+    public static String getStatistics () {
+        return String.format("postings=%d, contended=%d, waiting=%d, avgWait=%.3fms, maxWait=%.3fms",
+                getPostingCount(), getContendedCount(), getWaitingCount(), getAverageWaitMillis(), getMaxWaitMillis());
+    }
+
+    /**
+     * Takes a lock, counting the acquisition as contended if the lock is held by another posting.
+     *
+     * @param lock The lock.
+     */
+    private static void lock (ReentrantLock lock) {
+        if (!lock.tryLock()) {
+            contendedCount.incrementAndGet();
+            lock.lock();
+        }
+    }
+
+    /**
+     * Records the time a posting or a group of postings waited for its locks.
+     *
+     * @param waitNanos The time in nanoseconds.
+     * @param postings  The number of postings that waited.
+     */
+    private static void recordWait (long waitNanos, int postings) {
+        postingCount.addAndGet(postings);
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    /**
+     * @param accountId The ID of the account.
+     * @return The index of the stripe of the account.
+     */
+    private static int getStripe (int accountId) {
+        return Math.floorMod(accountId, stripes.length);
+    }
+
+    /**
+     * @param count The number of stripes.
+     * @return The locks of the stripes.
+     */
+    private static ReentrantLock[] createStripes (int count) {
+        ReentrantLock[] locks = new ReentrantLock[count];
+        for (int i = 0; i < count; i++) {
+            locks[i] = new ReentrantLock();
+        }
+        return locks;
+    }
+}
@@ -0,0 +1,202 @@
+package org.clever_bank.services;
+
+import org.clever_bank.entities.Transaction;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Renders the pdf checks of posted transactions in the background.
+ * Checks wait in a bounded queue and are rendered by a small pool of worker threads,
+ * so posting a transaction does not wait for the pdf file to be written.
+ * When the queue is full, the posting thread renders the check itself, which slows
+ * the producers down instead of letting the queue grow without limit.
+ */
+public class ReceiptService {
+    /**
+     * Application configuration.
+     * This class reads the configuration from the 'application.yml' file located in the resources' directory.
+     */
+    private static final AppConfig appConfig = new AppConfig();
+
+    /**
+     * The checks waiting to be rendered.
+     */
+    private static final BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(Math.max(1, appConfig.getReceiptQueueCapacity()));
+
+    /**
+     * The number of checks submitted.
+     */
+    private static final AtomicLong submittedCount = new AtomicLong();
+
+    /**
+     * The number of checks rendered.
+     */
+    private static final AtomicLong renderedCount = new AtomicLong();
+
+    /**
+     * The number of checks that could not be rendered.
+     */
+    private static final AtomicLong failedCount = new AtomicLong();
+
+    /**
+     * The number of checks rendered by the posting thread because the queue was full.
+     */
+    private static final AtomicLong callerRunsCount = new AtomicLong();
+
+    /**
+     * The total time checks waited in the queue, in nanoseconds.
+     */
+    private static final AtomicLong totalQueueNanos = new AtomicLong();
+
+    /**
+     * The total time spent rendering checks, in nanoseconds.
+     */
+    private static final AtomicLong totalRenderNanos = new AtomicLong();
+
+    /**
+     * The longest time spent rendering a check, in nanoseconds.
+     */
+    private static final AtomicLong maxRenderNanos = new AtomicLong();
+
+    /**
+     * Workers rendering the checks.
+     */
+    private static final ThreadPoolExecutor workers = new ThreadPoolExecutor(
+            Math.max(1, appConfig.getReceiptThreads()),
+            Math.max(1, appConfig.getReceiptThreads()),
+            0, TimeUnit.MILLISECONDS,
+            queue,
+            runnable -> {
+                Thread thread = new Thread(runnable, "receipt-worker");
+                thread.setDaemon(true);
+                return thread;
+            },
+            (runnable, executor) -> {
+                if (executor.isShutdown()) {
+                    throw new RejectedExecutionException("Receipt service is shut down");
+                }
+                callerRunsCount.incrementAndGet();
+                runnable.run();
+            });
+
+    /**
+     * Queues the check of a committed transaction for rendering.
+     * The check is rendered from the given transaction object, which must not be modified afterwards.
+     *
+     * @param transaction The posted transaction with its ID, date, type and accounts.
+     */
+    public static void submit (Transaction transaction) {
+        long queuedAt = System.nanoTime();
+        submittedCount.incrementAndGet();
+        workers.execute(() -> render(transaction, queuedAt));
+    }
+
+    /**
+     * @return the number of checks waiting in the queue.
+     */
+    public static int getQueueDepth () {
+        return queue.size();
+    }
+
+    /**
+     * @return the number of checks submitted.
+     */
+    public static long getSubmittedCount () {
+        return submittedCount.get();
+    }
+
+    /**
+     * @return the number of checks rendered.
+     */
+    public static long getRenderedCount () {
+        return renderedCount.get();
+    }
+
+    /**
+     * @return the number of checks that could not be rendered.
+     */
+    public static long getFailedCount () {
+        return failedCount.get();
+    }
+
+    /**
+     * @return the number of checks rendered by the posting thread because the queue was full.
+     */
+    public static long getCallerRunsCount () {
+        return callerRunsCount.get();
+    }
+
+    /**
+     * @return the average time a check waited in the queue, in milliseconds.
+     */
+    public static double getAverageQueueMillis () {
+        long count = renderedCount.get() + failedCount.get();
+        return count == 0 ? 0 : totalQueueNanos.get() / 1_000_000.0 / count;
+    }
+
+    /**
+     * @return the average time spent rendering a check, in milliseconds.
+     */
+    public static double getAverageRenderMillis () {
+        long count = renderedCount.get() + failedCount.get();
+        return count == 0 ? 0 : totalRenderNanos.get() / 1_000_000.0 / count;
+    }
+
+    /**
+     * @return the longest time spent rendering a check, in milliseconds.
+     */
+    public static double getMaxRenderMillis () {
+        return maxRenderNanos.get() / 1_000_000.0;
+    }
+
+    /**
+     * @return a short human-readable summary of the receipt queue.
+     */
+    public static String getStatistics () {
+        return String.format("queued=%d, submitted=%d, rendered=%d, failed=%d, callerRuns=%d, avgQueue=%.3fms, avgRender=%.3fms, maxRender=%.3fms",
+                getQueueDepth(), getSubmittedCount(), getRenderedCount(), getFailedCount(), getCallerRunsCount(),
+                getAverageQueueMillis(), getAverageRenderMillis(), getMaxRenderMillis());
+    }
+
+    /**
+     * Stops accepting checks and waits until the queued checks are rendered.
+     */
+    public static void shutdown () {
+        workers.shutdown();
+        try {
+            if (!workers.awaitTermination(30, TimeUnit.SECONDS)) {
+                System.out.println("Не все чеки сохранены: " + queue.size() + " в очереди");
+                workers.shutdownNow();
+            }
+        }
+        catch (InterruptedException e) {
+            workers.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Renders the check of a transaction and records the timings.
+     *
+     * @param transaction The posted transaction.
+     * @param queuedAt    The time the check was submitted, from {@link System#nanoTime()}.
+     */
+    private static void render (Transaction transaction, long queuedAt) {
+        long start = System.nanoTime();
+        totalQueueNanos.addAndGet(start - queuedAt);
+        try {
+            Statement.saveTransactionCheck(transaction);
+            renderedCount.incrementAndGet();
+        }
+        catch (Exception e) {
+            // The failure is recorded with its error by saveTransactionCheck
+            failedCount.incrementAndGet();
+        }
+        finally {
+            long elapsed = System.nanoTime() - start;
+            totalRenderNanos.addAndGet(elapsed);
+            maxRenderNanos.accumulateAndGet(elapsed, Math::max);
+        }
+    }
+}
@@ -1,136 +1,300 @@
 package org.clever_bank.services;
 
 import com.itextpdf.text.*;
-import com.itextpdf.text.pdf.BaseFont;
-import com.itextpdf.text.pdf.PdfWriter;
 import org.clever_bank.entities.Account;
+import org.clever_bank.entities.MoneySummary;
 import org.clever_bank.entities.Transaction;
+import org.clever_bank.entities.TransactionView;
+import org.clever_bank.metrics.Metrics;
+import org.clever_bank.repository.DailyBalanceRepository;
 import org.clever_bank.repository.TransactionRepository;
+import org.clever_bank.repository.TransactionTypeRepository;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.math.BigDecimal;
+import java.io.IOException;
+import java.sql.SQLException;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * This class represents a Statement and provides methods to create transaction checks, reports, and money reports.
  */
 public class Statement {
 
+    /**
+     * The width of the text of a check between its borders.
+     */
+    private static final int CHECK_WIDTH = 52;
+
+    /**
+     * The width of the header of a statement printed to console.
+     */
+    private static final int STATEMENT_WIDTH = 61;
+
+    /**
+     * The relative widths of the date, note and amount columns of a statement.
+     */
+    private static final float[] STATEMENT_COLUMN_WIDTHS = {2, 6, 3};
+
+    /**
+     * The alignments of the date, note and amount columns of a statement.
+     */
+    private static final int[] STATEMENT_COLUMN_ALIGNMENTS = {Element.ALIGN_LEFT, Element.ALIGN_LEFT, Element.ALIGN_RIGHT};
+
     /**
      * Creates a transaction check to console and save it as pdf file for the given transaction.
      *
      * @param transaction The transaction for which the check is created.
      */
     public static void createTransactionCheck(Transaction transaction) {
-        String transactionId = String.valueOf(transaction.getId());
-        String date = getStringDate(transaction.getDate(), 1);
-        String time = getStringTime(transaction.getDate(), 1);
-        String transactionType = transaction.getType().getName();
-        String bankSenderName = transaction.getAccountSender().getBank().getName();
-        String bankRecipientName = transaction.getAccountRecipient().getBank().getName();
-        String accountSenderNumber = transaction.getAccountSender().getAccountNumber();
-        String accountRecipientNumber = transaction.getAccountRecipient().getAccountNumber();
-        String money = transaction.getMoney().toString();
-        String currency = transaction.getAccountSender().getCurrency();
-        String bankCheck = "";
+        System.out.println(getTransactionCheck(transaction));
         try {
-            String underFooter = "_".repeat(56) + "\n";
-            String header = "| " + " ".repeat(19) + "Банковский чек" + " ".repeat(19) + " |\n";
-            String check = "| Чек:" + " ".repeat(48 - transactionId.length()) + transactionId +" |\n";
-            String dataTime = "| " + date + " ".repeat(34) + time +" |\n";
-            String type = "| Тип транзакции:" + " ".repeat(37 - transactionType.length()) + transactionType + " |\n";
-            String firstBank = "| Банк отправителя: " + " ".repeat(34 - bankSenderName.length()) + bankSenderName + " |\n";
-            String secondBank = "| Банк получателя: " + " ".repeat(35 - bankRecipientName.length()) + bankRecipientName + " |\n";
-            String firstAccount = "| Счёт отправителя: " + " ".repeat(34 - accountSenderNumber.length()) + accountSenderNumber + " |\n";
-            String secondAccount = "| Счёт получателя: " + " ".repeat(35 - accountRecipientNumber.length()) + accountRecipientNumber + " |\n";
-            String amount = "| Сумма: " + " ".repeat(41 - money.length()) + money + " " + currency + " |\n";
-            String footer = "|" + "_".repeat(54) + "|\n";
-
-            bankCheck = underFooter +
-                    header +
-                    check +
-                    dataTime +
-                    type +
-                    firstBank +
-                    secondBank +
-                    firstAccount +
-                    secondAccount +
-                    amount +
-                    footer;
+            saveTransactionCheck(transaction);
+            System.out.println("Чек сохранён");
+        } catch (Exception e) {
+            // The failure is already recorded with its error by saveTransactionCheck
+            System.out.println("Чек не сохранён: " + e.getMessage());
         }
-        catch (IllegalArgumentException e) {
-            e.printStackTrace();
+    }
+
+    /**
+     * Returns the text of the check of the given transaction for the console.
+     * The text is built from the transaction object only, without reading the database.
+     * A value too long for the check makes its line longer instead of failing.
+     *
+     * @param transaction The transaction for which the check is created.
+     * @return The text of the check.
+     */
+    public static String getTransactionCheck(Transaction transaction) {
+        long start = Metrics.start();
+        StringBuilder bankCheck = new StringBuilder(640);
+        bankCheck.append("_".repeat(CHECK_WIDTH + 4)).append('\n');
+        bankCheck.append("| ").append(center("Банковский чек", CHECK_WIDTH)).append(" |\n");
+        for (Map.Entry<String, String> row : getTransactionCheckRows(transaction).entrySet()) {
+            String label = row.getKey();
+            bankCheck.append("| ").append(label)
+                    .append(String.format("%" + Math.max(1, CHECK_WIDTH - label.length()) + "s", row.getValue()))
+                    .append(" |\n");
         }
+        bankCheck.append('|').append("_".repeat(CHECK_WIDTH + 2)).append("|\n");
+        Metrics.record("statement_check_text", start, 1);
+        return bankCheck.toString();
+    }
 
+    /**
+     * Saves the check of a transaction as pdf file in the 'check' directory.
+     * The name of the file contains the transaction ID, so checks saved within the same second do not overwrite each other.
+     *
+     * @param transaction The transaction for which the check is created.
+     * @throws DocumentException If the document cannot be created.
+     * @throws IOException       If the file cannot be written or the font cannot be read.
+     */
+    public static void saveTransactionCheck(Transaction transaction) throws DocumentException, IOException {
         if (createNewDirectory("check") == -1){
             System.out.println("Error when creating a directory");
         }
-        stringToPdfFile (bankCheck, "check/Check");
-        System.out.println(bankCheck);
-        System.out.println("Чек сохранён");
+        long start = Metrics.start();
+        try {
+            Font font = PdfRenderer.getFont();
+            Document document = PdfRenderer.openDocument(getPdfFileName("check/Check_" + transaction.getId()));
+            try {
+                PdfRenderer.addTitle(document, "Банковский чек", font);
+                PdfRenderer.addKeyValueTable(document, getTransactionCheckRows(transaction), font);
+            }
+            finally {
+                document.close();
+            }
+        }
+        catch (DocumentException | IOException | RuntimeException e) {
+            Metrics.recordFailure("statement_save_check", e);
+            throw e;
+        }
+        finally {
+            Metrics.record("statement_save_check", start, 1);
+        }
+    }
+
+    /**
+     * Returns the lines of the check of the given transaction.
+     * The date and the time share one line, so the date is the label of that line.
+     *
+     * @param transaction The transaction for which the check is created.
+     * @return The values of the check by label, in the order of the lines.
+     */
+    private static Map<String, String> getTransactionCheckRows(Transaction transaction) {
+        Map<String, String> rows = new LinkedHashMap<>();
+        rows.put("Чек:", String.valueOf(transaction.getId()));
+        rows.put(getStringDate(transaction.getDate(), 1), getStringTime(transaction.getDate(), 1));
+        rows.put("Тип транзакции:", transaction.getType().getName());
+        rows.put("Банк отправителя:", transaction.getAccountSender().getBank().getName());
+        rows.put("Банк получателя:", transaction.getAccountRecipient().getBank().getName());
+        rows.put("Счёт отправителя:", transaction.getAccountSender().getAccountNumber());
+        rows.put("Счёт получателя:", transaction.getAccountRecipient().getAccountNumber());
+        rows.put("Сумма:", transaction.getMoney() + " " + transaction.getAccountSender().getCurrency());
+        if (transaction.getCreditMoney() != null) {
+            rows.put("Зачислено:", transaction.getCreditMoney() + " " + transaction.getAccountRecipient().getCurrency());
+        }
+        return rows;
     }
 
     /**
      * Creates a report to console and save it as pdf file
      * for the given account within the specified date range.
+     * Transactions are streamed from the database and every transaction is written
+     * as a row of a pdf table as soon as it is read. The rows are laid out on the pages in portions,
+     * so the memory used does not depend on the length of the history.
      *
      * @param account    The account for which the report is created.
      * @param dateStart  The start date of the report.
      * @param dateEnd    The end date of the report.
      */
     public static void createReport(Account account, Instant dateStart, Instant dateEnd){
-        String currency = account.getCurrency();
+        long start = Metrics.start();
+        if (createNewDirectory("statement") == -1){
+            System.out.println("Error when creating a directory");
+        }
 
-        // transactions list
-        StringBuilder transactionLines = new StringBuilder();
-        List<Transaction> transactions = TransactionRepository.readPeriodTransactionsOfAccount(account.getId(), dateStart, dateEnd);
-        for (Transaction transaction : transactions) {
-            String transactionDate = getStringDate(transaction.getDate(), 3);
-            String note;
-            if (transaction.getType().getId() == 3){
-                note = getNoteIfTransactionEqualsTree(transaction, account);
-            }
-            else {
-                note = transaction.getType().getName();
-            }
+        // common information about account
+        Map<String, String> accountData = getAccountData(account, dateStart, dateEnd);
+        System.out.print(getAccountDataText(account, accountData));
 
-            String money;
-            if (transaction.getType().getId() == 2){
-                money = "-" + transaction.getMoney().toString() + " " + currency;
-            }
-            else if (transaction.getType().getId() == 3 && transaction.getAccountSender().getId() == account.getId()) {
-                money = "-" + transaction.getMoney().toString() + " " + currency;
-            }
-            else {
-                money = transaction.getMoney().toString() + " " + currency;
-            }
-            transactionLines.append(transactionDate)
-                    .append(" | ").append(note).append(" ".repeat(50 - note.length()))
-                    .append(" | ").append(money).append("\n");
+        long rows = 0;
+        String fileName = getPdfFileName("statement/Statement");
+        try {
+            rows = writeReport(account, dateStart, dateEnd, accountData, fileName,
+                    consumer -> {
+                        try {
+                            TransactionRepository.streamPeriodTransactionViews(account.getId(), dateStart, dateEnd, consumer);
+                        } catch (SQLException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    },
+                    true);
+            System.out.println("Выписка сохранена");
+        } catch (Exception e) {
+            Metrics.recordFailure("statement_create_report", e);
+            // A statement cut short by a database error must not look complete
+            new File(fileName).delete();
+            System.out.println("Выписка не сохранена: ошибка чтения транзакций");
+        }
+        Metrics.record("statement_create_report", start, rows);
+    }
+
+    /**
+     * Saves the statement of an account as pdf file from transactions already read,
+     * without printing it to console. Used by batch jobs that read the transactions of many accounts at once.
+     *
+     * @param account      The account for which the report is created.
+     * @param dateStart    The start date of the report.
+     * @param dateEnd      The end date of the report.
+     * @param fileName     The name of the pdf file.
+     * @param transactions The transactions of the account within the period in date order.
+     * @throws DocumentException If the document cannot be created.
+     * @throws IOException       If the file cannot be written or the font cannot be read.
+     */
+    public static void writeReport(Account account, Instant dateStart, Instant dateEnd, String fileName,
+                                   List<TransactionView> transactions) throws DocumentException, IOException {
+        long start = Metrics.start();
+        try {
+            writeReport(account, dateStart, dateEnd, getAccountData(account, dateStart, dateEnd), fileName,
+                    transactions::forEach, false);
         }
-        String transactionLine = transactionLines.toString();
-        if (transactionLine.length() == 0){
-            transactionLine = "Список транзакций " +
-                    "за период с " + getStringDate(dateStart, 2) +
-                    " по " + getStringDate(dateEnd, 2) +
-                    " пуст\n";
+        catch (DocumentException | IOException | RuntimeException e) {
+            Metrics.recordFailure("statement_write_report", e);
+            throw e;
         }
+        finally {
+            Metrics.record("statement_write_report", start, transactions.size());
+        }
+    }
 
-        // result document statement-money
-        String resultSet = accountDataSet(account, dateStart, dateEnd) + transactionLine;
+    /**
+     * Writes the statement of an account to a new pdf file.
+     *
+     * @param account      The account for which the report is created.
+     * @param dateStart    The start date of the report.
+     * @param dateEnd      The end date of the report.
+     * @param accountData  The common information about the account by label.
+     * @param fileName     The name of the pdf file.
+     * @param transactions Passes the transactions of the account within the period in date order to the given consumer.
+     * @param printLines   true if the transaction lines are also printed to console.
+     * @return The number of transactions written.
+     * @throws DocumentException If the document cannot be created.
+     * @throws IOException       If the file cannot be written or the font cannot be read.
+     */
+    private static long writeReport(Account account, Instant dateStart, Instant dateEnd, Map<String, String> accountData,
+                                    String fileName, Consumer<Consumer<TransactionView>> transactions, boolean printLines)
+            throws DocumentException, IOException {
+        Font font = PdfRenderer.getFont();
+        Document document = PdfRenderer.openDocument(fileName);
+        try {
+            addAccountData(document, account, accountData, font);
 
+            // transactions list
+            PdfTableWriter table = new PdfTableWriter(document, font,
+                    STATEMENT_COLUMN_WIDTHS, STATEMENT_COLUMN_ALIGNMENTS, "Дата", "Примечание", "Сумма");
+            transactions.accept(transaction -> {
+                String[] cells = getTransactionCells(transaction, account);
+                try {
+                    table.addRow(cells);
+                } catch (DocumentException e) {
+                    throw new IllegalStateException(e);
+                }
+                if (printLines) {
+                    System.out.println(String.format("%s | %-50s | %s", cells[0], cells[1], cells[2]));
+                }
+            });
+            table.close();
+            if (table.getRowCount() == 0) {
+                String emptyLine = "Список транзакций " +
+                        "за период с " + getStringDate(dateStart, 2) +
+                        " по " + getStringDate(dateEnd, 2) +
+                        " пуст";
+                document.add(new Paragraph(emptyLine, font));
+                if (printLines) {
+                    System.out.println(emptyLine);
+                }
+            }
+            return table.getRowCount();
+        }
+        finally {
+            document.close();
+        }
+    }
 
-        if (createNewDirectory("statement") == -1){
-            System.out.println("Error when creating a directory");
+    /**
+     * Returns the cells of the statement row for the given transaction:
+     * the date, the note and the signed amount of money.
+     *
+     * @param transaction The transaction to describe.
+     * @param account     The account for which the statement is created.
+     * @return The date, the note and the amount.
+     */
+    private static String[] getTransactionCells(TransactionView transaction, Account account) {
+        String currency = account.getCurrency();
+        String transactionDate = getStringDate(transaction.getDate(), 3);
+        String note;
+        if (transaction.getTypeId() == 3){
+            note = getNoteIfTransactionEqualsTree(transaction, account);
+        }
+        else {
+            note = TransactionTypeRepository.readTransactionTypeById(transaction.getTypeId()).getName();
         }
-        stringToPdfFile(resultSet,"statement/Statement");
-        System.out.print(resultSet);
-        System.out.println("Выписка сохранена");
+
+        String money;
+        if (transaction.isDebitFor(account.getId())) {
+            money = "-" + transaction.getMoney().toString() + " " + currency;
+        }
+        else {
+            money = transaction.getMoney().toString() + " " + currency;
+        }
+        return new String[] {transactionDate, note, money};
     }
 
     /**
@@ -142,27 +306,49 @@ public class Statement {
      * @param dateEnd    The end date of the money report.
      */
     public static void createMoneyReport(Account account, Instant dateStart, Instant dateEnd){
+        long start = Metrics.start();
         String currency = account.getCurrency();
 
         // moneyResult
-        BigDecimal moneyReceived = TransactionRepository.getReceivedMoneyForAccount(account.getId(), dateStart, dateEnd);
-        BigDecimal moneyWithdrawn = TransactionRepository.getWithdrawnMoneyForAccount(account.getId(), dateStart, dateEnd);
-        String moneyReceivedLine = moneyReceived + " " + currency;
-        String moneyWithdrawnLine = "-" + moneyWithdrawn + currency;
-        String moneyHeader = " ".repeat(14) + "Приход" + " " + "|" + " Уход\n";
-        String line = " ".repeat(10) + "-".repeat(20) + "\n";
-        String moneyLine = " ".repeat(20 - moneyReceivedLine.length())  + moneyReceivedLine + " | " + moneyWithdrawnLine + "\n";
-        String moneyStatement = moneyHeader + line + moneyLine;
-
-        // result document statement-money
-        String resultSet = accountDataSet(account, dateStart, dateEnd) + moneyStatement;
+        MoneySummary summary = DailyBalanceRepository.getMoneySummary(account.getId(), dateStart, dateEnd);
+        if (summary == null) {
+            Metrics.recordFailure("statement_create_money_report");
+            Metrics.record("statement_create_money_report", start, 0);
+            System.out.println("Не удалось получить данные о движении средств");
+            return;
+        }
+        String moneyReceived = summary.getIncome() + " " + currency;
+        String moneyWithdrawn = "-" + summary.getExpense() + " " + currency;
+        Map<String, String> accountData = getAccountData(account, dateStart, dateEnd);
 
         if (createNewDirectory("statement-money") == -1){
             System.out.println("Error when creating a directory");
         }
-        stringToPdfFile(resultSet,"statement-money/MoneyStatement");
-        System.out.print(resultSet);
-        System.out.println("Выписка сохранена");
+        boolean saved = false;
+        try {
+            Font font = PdfRenderer.getFont();
+            Document document = PdfRenderer.openDocument(getPdfFileName("statement-money/MoneyStatement"));
+            try {
+                addAccountData(document, account, accountData, font);
+                PdfTableWriter table = new PdfTableWriter(document, font, new float[] {1, 1},
+                        new int[] {Element.ALIGN_RIGHT, Element.ALIGN_LEFT}, "Приход", "Уход");
+                table.addRow(moneyReceived, moneyWithdrawn);
+                table.close();
+            }
+            finally {
+                document.close();
+            }
+            saved = true;
+        } catch (Exception e) {
+            Metrics.recordFailure("statement_create_money_report", e);
+        }
+
+        System.out.print(getAccountDataText(account, accountData));
+        System.out.printf("%20s | %s%n", "Приход", "Уход");
+        System.out.println(" ".repeat(10) + "-".repeat(20));
+        System.out.printf("%20s | %s%n", moneyReceived, moneyWithdrawn);
+        System.out.println(saved ? "Выписка сохранена" : "Выписка не сохранена");
+        Metrics.record("statement_create_money_report", start, summary == null ? 0 : summary.getCount());
     }
 
     /**
@@ -172,61 +358,99 @@ public class Statement {
      * @param name    The name of the PDF file.
      */
     public static void stringToPdfFile(String content, String name)  {
+        long start = Metrics.start();
         try {
-            final String FONT = "src/main/resources/assets/fonts/couriercyrps.ttf";
-            BaseFont baseFont = BaseFont.createFont(FONT, BaseFont.IDENTITY_H, BaseFont.EMBEDDED);
-            Font font = new Font(baseFont,10,Font.NORMAL);
-            Document document = new Document();
-            Instant dateTime = Instant.now();
-            String time = getStringDate(dateTime, 1);
-            String date = getStringTime(dateTime, 2);
-            String fileName = name + "_" + time + "_" + date + ".pdf";
-            PdfWriter writer = PdfWriter.getInstance(document, new FileOutputStream(fileName));
-            writer.setInitialLeading(12.5f);
-            document.open();
-            document.add(new Paragraph(content,font));
-            document.close();
+            PdfRenderer.renderText(content, getPdfFileName(name));
         } catch (Exception e) {
-            e.printStackTrace();
+            Metrics.recordFailure("statement_render_text", e);
         }
+        Metrics.record("statement_render_text", start, 1);
+    }
+
+    /**
+     * Returns the name of a new pdf file with the specified name and the current date and time.
+     *
+     * @param name The name of the PDF file.
+     * @return The file name with the date, the time and the extension.
+     */
+    private static String getPdfFileName(String name) {
+        Instant dateTime = Instant.now();
+        String time = getStringDate(dateTime, 1);
+        String date = getStringTime(dateTime, 2);
+        return name + "_" + time + "_" + date + ".pdf";
     }
 
     /**
-     * Returns a formatted string representation of the account data set,
-     * including common information about the account,
+     * Adds the title and the common information about the account to an open document.
+     *
+     * @param document    The open document.
+     * @param account     The account for which the statement is created.
+     * @param accountData The common information about the account by label.
+     * @param font        The font of the text.
+     * @throws DocumentException If the information cannot be added.
+     */
+    private static void addAccountData(Document document, Account account, Map<String, String> accountData, Font font)
+            throws DocumentException {
+        PdfRenderer.addTitle(document, "Выписка", font);
+        PdfRenderer.addTitle(document, account.getBank().getName(), font);
+        PdfRenderer.addKeyValueTable(document, accountData, font);
+    }
+
+    /**
+     * Returns the common information about the account,
      * such as customer name, account number, currency, opening date,
      * period, time of formation, and balance.
      *
      * @param account    The account for which the data set is created.
      * @param dateStart  The start date of the period.
      * @param dateEnd    The end date of the period.
-     * @return The formatted string representation of the account data set.
+     * @return The values by label, in the order of the lines.
      */
-    private static String accountDataSet (Account account, Instant dateStart, Instant dateEnd) {
-        String currency = account.getCurrency();
+    private static Map<String, String> getAccountData (Account account, Instant dateStart, Instant dateEnd) {
         String period = getStringDate(dateStart, 2) + " - " + getStringDate(dateEnd, 2);
         Instant currentDataTime = Instant.now();
         String timeFormation = getStringDate(currentDataTime, 2) + ", "
                 + getStringTime(currentDataTime, 3);
 
-        // Common information about account
-        String header = " ".repeat(27) + "Выписка\n" + " ".repeat(26) + account.getBank().getName();
-        String customerLine = "\nКлиент                    | " + account.getCustomer().getName() + "\n";
-        String accountLine = "Счёт                      | " + account.getAccountNumber() + "\n";
-        String currencyLine = "Валюта                    | " + account.getCurrency() + "\n";
-        String openDateLine = "Дата открытия             | " + account.getOpeningDate().toString() + "\n";
-        String periodLine = "Период                    | " + period + "\n";
-        String timeFormationLine = "Дата и время формирования | " + timeFormation + "\n";
-        String balanceLine = "Остаток                   | " + account.getBalance().toString() + " " + currency + "\n";
-
-        return header +
-                customerLine +
-                accountLine +
-                currencyLine +
-                openDateLine +
-                periodLine +
-                timeFormationLine +
-                balanceLine;
+        Map<String, String> accountData = new LinkedHashMap<>();
+        accountData.put("Клиент", account.getCustomer().getName());
+        accountData.put("Счёт", account.getAccountNumber());
+        accountData.put("Валюта", account.getCurrency());
+        accountData.put("Дата открытия", account.getOpeningDate().toString());
+        accountData.put("Период", period);
+        accountData.put("Дата и время формирования", timeFormation);
+        accountData.put("Остаток", account.getBalance().toString() + " " + account.getCurrency());
+        return accountData;
+    }
+
+    /**
+     * Returns the header and the common information about the account as text for the console.
+     *
+     * @param account     The account for which the statement is created.
+     * @param accountData The common information about the account by label.
+     * @return The text, one line per value.
+     */
+    private static String getAccountDataText (Account account, Map<String, String> accountData) {
+        StringBuilder text = new StringBuilder(512);
+        text.append(center("Выписка", STATEMENT_WIDTH).stripTrailing()).append('\n');
+        text.append(center(account.getBank().getName(), STATEMENT_WIDTH).stripTrailing()).append('\n');
+        for (Map.Entry<String, String> row : accountData.entrySet()) {
+            text.append(String.format("%-26s| %s%n", row.getKey(), row.getValue()));
+        }
+        return text.toString();
+    }
+
+    /**
+     * Centers a text within the given width. A text longer than the width is returned unchanged.
+     *
+     * @param text  The text.
+     * @param width The width of the line.
+     * @return The text padded with spaces on both sides.
+     */
+    private static String center (String text, int width) {
+        int padding = Math.max(0, width - text.length());
+        int left = padding / 2;
+        return " ".repeat(left) + text + " ".repeat(padding - left);
     }
 
     /**
@@ -277,11 +501,11 @@ public class Statement {
      * @param account     The account to match against.
      * @return The note for the transaction, or an empty string if no match is found.
      */
-    private static String getNoteIfTransactionEqualsTree(Transaction transaction, Account account) {
-        if (transaction.getAccountRecipient().getId() == account.getId()) {
-            return "Пополнение от ← " + transaction.getAccountSender().getCustomer().getName();
-        } else if (transaction.getAccountSender().getId() == account.getId()) {
-            return "Перевод средств → " + transaction.getAccountRecipient().getCustomer().getName();
+    private static String getNoteIfTransactionEqualsTree(TransactionView transaction, Account account) {
+        if (transaction.getRecipientId() == account.getId()) {
+            return "Пополнение от ← " + transaction.getCounterpartyName();
+        } else if (transaction.getSenderId() == account.getId()) {
+            return "Перевод средств → " + transaction.getCounterpartyName();
         }
         return "";
     }
@@ -0,0 +1,207 @@
+package org.clever_bank.services;
+
+import org.clever_bank.entities.Account;
+import org.clever_bank.entities.TransactionView;
+import org.clever_bank.repository.AccountRepository;
+import org.clever_bank.repository.TransactionRepository;
+
+import java.io.File;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Saves the statements of all accounts of a bank, for example at the end of a month.
+ * The transactions of all accounts are read through one database cursor ordered by account,
+ * and as soon as the transactions of an account are read its statement is rendered by a pool of worker threads.
+ * When all workers are busy and the queue is full, the thread reading the cursor renders a statement itself,
+ * which keeps the number of accounts held in memory bounded.
+ * The files of a run are written to their own directory, and a failed statement does not stop the others.
+ */
+public class StatementBatchJob {
+    /**
+     * Application configuration.
+     * This class reads the configuration from the 'application.yml' file located in the resources' directory.
+     */
+    private static final AppConfig appConfig = new AppConfig();
+
+    /**
+     * The format of the name of the directory of a run.
+     */
+    private static final DateTimeFormatter RUN_DIRECTORY_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd_HH-mm-ss");
+
+    /**
+     * The ID of the bank.
+     */
+    private final int bankId;
+
+    /**
+     * The start date of the statements.
+     */
+    private final Instant dateStart;
+
+    /**
+     * The end date of the statements.
+     */
+    private final Instant dateEnd;
+
+    /**
+     * The accounts of the bank in ID order.
+     */
+    private List<Account> accounts;
+
+    /**
+     * The index of the first account whose statement is not submitted yet.
+     */
+    private int nextAccount;
+
+    /**
+     * The directory the files of the run are written to.
+     */
+    private String directory;
+
+    /**
+     * Workers rendering the statements.
+     */
+    private ThreadPoolExecutor workers;
+
+    /**
+     * The submitted statements.
+     */
+    private final List<Future<?>> statements = new ArrayList<>();
+
+    /**
+     * The number of statements saved.
+     */
+    private final AtomicInteger savedCount = new AtomicInteger();
+
+    /**
+     * The number of statements that could not be saved.
+     */
+    private final AtomicInteger failedCount = new AtomicInteger();
+
+    /**
+     * Creates a job saving the statements of all accounts of a bank for a period.
+     *
+     * @param bankId    The ID of the bank.
+     * @param dateStart The start date of the statements.
+     * @param dateEnd   The end date of the statements.
+     */
+    public StatementBatchJob (int bankId, Instant dateStart, Instant dateEnd) {
+        this.bankId = bankId;
+        this.dateStart = dateStart;
+        this.dateEnd = dateEnd;
+    }
+
+    /**
+     * Saves the statements and prints the throughput and the failures.
+     * A job runs once.
+     *
+     * @return The number of statements saved.
+     */
+    public int run () {
+        accounts = AccountRepository.readAllByBank(bankId);
+        if (accounts.isEmpty()) {
+            System.out.println("The bank " + bankId + " has no accounts");
+            return 0;
+        }
+
+        directory = "statement/bank-" + bankId + "_" +
+                LocalDateTime.ofInstant(Instant.now(), ZoneOffset.UTC).format(RUN_DIRECTORY_FORMAT);
+        if (!new File(directory).mkdirs()) {
+            System.out.println("Error when creating a directory");
+            return 0;
+        }
+
+        int threads = appConfig.getStatementBatchThreads() > 0
+                ? appConfig.getStatementBatchThreads()
+                : Runtime.getRuntime().availableProcessors();
+        workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(threads * 2), new ThreadPoolExecutor.CallerRunsPolicy());
+
+        long start = System.nanoTime();
+        long transactionCount = 0;
+        try {
+            // The transactions of the account the cursor is on
+            List<TransactionView> transactions = new ArrayList<>();
+            int[] currentAccountId = {0};
+            transactionCount = TransactionRepository.streamBankPeriodTransactionViews(bankId, dateStart, dateEnd,
+                    (accountId, transaction) -> {
+                        if (accountId != currentAccountId[0]) {
+                            submitThrough(currentAccountId[0], transactions);
+                            transactions.clear();
+                            currentAccountId[0] = accountId;
+                        }
+                        transactions.add(transaction);
+                    });
+            submitThrough(currentAccountId[0], transactions);
+            // Accounts after the last one with transactions
+            submitThrough(Integer.MAX_VALUE, List.of());
+        }
+        catch (Exception e) {
+            // The accounts not reached by the cursor get no statement rather than a statement without transactions
+            e.printStackTrace();
+        }
+
+        for (Future<?> statement : statements) {
+            try {
+                statement.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            catch (ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+        workers.shutdown();
+
+        double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+        int saved = savedCount.get();
+        int failed = failedCount.get();
+        System.out.printf("Statements of bank %d: %d saved, %d failed, %d skipped of %d accounts, " +
+                        "%d transactions in %.1f s (%.1f statements/s) -> %s%n",
+                bankId, saved, failed, accounts.size() - saved - failed, accounts.size(),
+                transactionCount, seconds, saved / Math.max(seconds, 0.001), directory);
+        return saved;
+    }
+
+    /**
+     * Submits the statements of the pending accounts up to the given account.
+     * The given account receives the given transactions, the accounts before it had no transactions in the period.
+     *
+     * @param accountId    The ID of the last account to submit.
+     * @param transactions The transactions of that account.
+     */
+    private void submitThrough (int accountId, List<TransactionView> transactions) {
+        while (nextAccount < accounts.size() && accounts.get(nextAccount).getId() <= accountId) {
+            Account account = accounts.get(nextAccount++);
+            List<TransactionView> accountTransactions = account.getId() == accountId ? List.copyOf(transactions) : List.of();
+            statements.add(workers.submit(() -> save(account, accountTransactions)));
+        }
+    }
+
+    /**
+     * Saves the statement of one account. A failure is counted and reported, the other statements are not affected.
+     *
+     * @param account      The account.
+     * @param transactions The transactions of the account within the period in date order.
+     */
+    private void save (Account account, List<TransactionView> transactions) {
+        try {
+            Statement.writeReport(account, dateStart, dateEnd,
+                    directory + "/Statement_" + account.getAccountNumber() + ".pdf", transactions);
+            savedCount.incrementAndGet();
+        }
+        catch (Exception e) {
+            failedCount.incrementAndGet();
+            System.out.println("The statement of the account " + account.getAccountNumber() + " is not saved: " + e);
+        }
+    }
+}
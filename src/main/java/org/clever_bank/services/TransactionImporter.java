@@ -0,0 +1,124 @@
+package org.clever_bank.services;
+
+import org.clever_bank.entities.ImportBatchResult;
+import org.clever_bank.metrics.Metrics;
+import org.clever_bank.repository.TransactionImportRepository;
+import org.clever_bank.repository.TransactionPartitionRepository;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+
+/**
+ * Imports files of transactions executed by partner banks.
+ * The file is read line by line and imported in batches, so files of millions of rows
+ * are loaded with constant memory. Every batch is one database transaction: a malformed batch
+ * is reported and skipped, the other batches are imported.
+ * <p>
+ * Every row is keyed by the file name, its line number and its values, and rows already imported are skipped.
+ * An interrupted or partly failed import is therefore resumed by importing the same file again:
+ * the committed batches are skipped and only the missing rows are applied. A corrected row gets a new key
+ * and is imported, while the rows around it keep their keys as long as no lines are added or removed.
+ */
+public class TransactionImporter {
+    /**
+     * Application configuration.
+     * This class reads the configuration from the 'application.yml' file located in the resources' directory.
+     */
+    private static final AppConfig appConfig = new AppConfig();
+
+    /**
+     * Imports a CSV file of transactions with the columns date, money, id_type, id_sender, id_recipient.
+     * Progress is printed after every batch. Importing the same file again imports only the rows that are missing.
+     *
+     * @param file      The CSV file.
+     * @param hasHeader true if the first line of the file is a header.
+     * @return The number of imported transactions.
+     * @throws IOException If the file cannot be read.
+     */
+    public static long importCsv (Path file, boolean hasHeader) throws IOException {
+        int batchSize = Math.max(1, appConfig.getImportBatchSize());
+        long start = System.nanoTime();
+        long readRows = 0;
+        long insertedRows = 0;
+        long rejectedRows = 0;
+        long duplicateRows = 0;
+        long failedRows = 0;
+        long lineNumber = 0;
+        String fileName = file.getFileName().toString();
+        Instant firstDate = null;
+
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            if (hasHeader) {
+                reader.readLine();
+                lineNumber++;
+            }
+            StringBuilder batch = new StringBuilder();
+            int batchRows = 0;
+            String line;
+            boolean endOfFile = false;
+            while (!endOfFile) {
+                line = reader.readLine();
+                endOfFile = line == null;
+                if (!endOfFile) {
+                    lineNumber++;
+                }
+                if (!endOfFile && !line.isBlank()) {
+                    batch.append(line).append(',').append(lineNumber).append('\n');
+                    batchRows++;
+                }
+                if (batchRows == 0 || (batchRows < batchSize && !endOfFile)) {
+                    continue;
+                }
+
+                long firstRow = readRows + 1;
+                readRows += batchRows;
+                try {
+                    ImportBatchResult result = TransactionImportRepository.importCsvBatch(fileName, new StringReader(batch.toString()));
+                    insertedRows += result.getInsertedRows();
+                    rejectedRows += result.getRejectedRows();
+                    duplicateRows += result.getDuplicateRows();
+                    if (result.getFirstDate() != null && (firstDate == null || result.getFirstDate().isBefore(firstDate))) {
+                        firstDate = result.getFirstDate();
+                    }
+                }
+                catch (Exception e) {
+                    failedRows += batchRows;
+                    System.out.printf("Rows %d-%d are not imported: %s%n", firstRow, readRows, e.getMessage());
+                }
+                batch.setLength(0);
+                batchRows = 0;
+
+                double seconds = Math.max((System.nanoTime() - start) / 1_000_000_000.0, 0.001);
+                System.out.printf("Read %d rows, imported %d, already imported %d, rejected %d, failed %d (%.0f rows/s)%n",
+                        readRows, insertedRows, duplicateRows, rejectedRows, failedRows, readRows / seconds);
+            }
+        }
+
+        if (firstDate != null) {
+            LocalDate firstDay = firstDate.atZone(ZoneOffset.UTC).toLocalDate();
+            // Transactions of months without a partition are in the default partition until their partition exists
+            try {
+                TransactionPartitionRepository.createPartitions(YearMonth.from(firstDay), YearMonth.now(ZoneOffset.UTC));
+            }
+            catch (SQLException e) {
+                Metrics.recordFailure("import_create_partitions", e);
+            }
+        }
+        // The import runs in its own process, so the account cache of a running server is not reachable from here.
+        // Every updated account row gets a new version, and the server reloads it once its cached entry is checked
+
+        double seconds = Math.max((System.nanoTime() - start) / 1_000_000_000.0, 0.001);
+        System.out.printf("Import finished in %.1f s: %d of %d rows imported (%.0f rows/s)%n",
+                seconds, insertedRows, readRows, insertedRows / seconds);
+        return insertedRows;
+    }
+}
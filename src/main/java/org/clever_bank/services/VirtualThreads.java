@@ -0,0 +1,69 @@
+package org.clever_bank.services;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates executors running every task on its own virtual thread.
+ * Virtual threads are available from Java 21, while the application is built for Java 17,
+ * so they are looked up at runtime. On older runtimes a bounded pool of platform threads is used instead.
+ */
+public class VirtualThreads {
+    /**
+     * The factory method of the virtual thread executor, or null if the runtime has no virtual threads.
+     */
+    private static final Method newVirtualThreadPerTaskExecutor = findFactoryMethod();
+
+    /**
+     * @return true if the runtime supports virtual threads.
+     */
+    public static boolean isSupported () {
+        return newVirtualThreadPerTaskExecutor != null;
+    }
+
+    /**
+     * Creates an executor starting a new virtual thread for every task.
+     * Blocking calls such as JDBC queries park the virtual thread without holding a platform thread,
+     * so thousands of concurrent tasks need only a few carrier threads.
+     *
+     * @param name            The prefix of the thread names used by the fallback pool.
+     * @param fallbackThreads The number of platform threads used if virtual threads are not supported.
+     * @return The executor. It must be shut down by the caller.
+     */
+    public static ExecutorService newThreadPerTaskExecutor (String name, int fallbackThreads) {
+        if (newVirtualThreadPerTaskExecutor != null) {
+            try {
+                return (ExecutorService) newVirtualThreadPerTaskExecutor.invoke(null);
+            }
+            catch (ReflectiveOperationException e) {
+                e.printStackTrace();
+            }
+        }
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        int threads = Math.max(1, fallbackThreads);
+        return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * @return The factory method of the virtual thread executor, or null if it does not exist.
+     */
+    private static Method findFactoryMethod () {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        }
+        catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
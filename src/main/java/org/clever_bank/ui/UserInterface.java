@@ -1,17 +1,18 @@
 package org.clever_bank.ui;
 
 import org.clever_bank.services.DateConstructor;
+import org.clever_bank.services.ExchangeRates;
+import org.clever_bank.services.PostingCoordinator;
+import org.clever_bank.services.ReceiptService;
 import org.clever_bank.services.Statement;
 import org.clever_bank.entities.Account;
 import org.clever_bank.entities.Transaction;
-import org.clever_bank.repository.AccountRepository;
-import org.clever_bank.repository.TransactionRepository;
+import org.clever_bank.repository.AccountCache;
 import org.clever_bank.repository.TransactionTypeRepository;
 import org.jetbrains.annotations.Nullable;
 
 import java.math.BigDecimal;
 import java.time.Instant;
-import java.util.Objects;
 import java.util.Scanner;
 
 /**
@@ -42,7 +43,7 @@ public class UserInterface {
         if (account == null) {
             System.out.println("\nПожалуйста введите свой номер банковского счёта или напишите stop:");
             inputData = checkInputData();
-            account = AccountRepository.read(inputData);
+            account = readAccount(inputData);
         }
 
         if (inputData.equals("stop")){
@@ -172,12 +173,17 @@ public class UserInterface {
         transaction.setAccountSender(account);
         transaction.setAccountRecipient(account);
         transaction.setType(TransactionTypeRepository.readTransactionTypeById(1));
-        int transactionId = TransactionRepository.create(transaction);
+        int transactionId = PostingCoordinator.post(transaction);
+        if (transactionId == 0) {
+            System.out.println("Не удалось пополнить счёт");
+            return;
+        }
         System.out.println("Вы добавили на счёт " + money + " " + account.getCurrency());
-        account = AccountRepository.read(account.getId());
+        account = AccountCache.read(account.getId());
         assert account != null;
         System.out.println("Баланс:" + account.getBalance() + " " + account.getCurrency()) ;
-        Statement.createTransactionCheck(Objects.requireNonNull(TransactionRepository.readTransaction(transactionId)));
+        System.out.println(Statement.getTransactionCheck(transaction));
+        ReceiptService.submit(transaction);
     }
 
     /**
@@ -187,18 +193,26 @@ public class UserInterface {
     private static void subtractionMenu() {
         System.out.println("\nВведите для снятия средств со счёта");
         BigDecimal money = getMoneyData();
+        if (money == null) {
+            return;
+        }
         Transaction transaction = new Transaction();
         transaction.setMoney(money);
         transaction.setAccountSender(account);
         transaction.setAccountRecipient(account);
         transaction.setType(TransactionTypeRepository.readTransactionTypeById(2));
 
-        int transactionId = TransactionRepository.create(transaction);
+        int transactionId = PostingCoordinator.post(transaction);
+        if (transactionId == 0) {
+            System.out.println("Недостаточно средств на счёте");
+            return;
+        }
         System.out.println("Вы сняли со счёта " + money + " " + account.getCurrency());
-        account = AccountRepository.read(account.getId());
+        account = AccountCache.read(account.getId());
         assert account != null;
         System.out.println("Баланс:" + account.getBalance() + " " + account.getCurrency()) ;
-        Statement.createTransactionCheck(Objects.requireNonNull(TransactionRepository.readTransaction(transactionId)));
+        System.out.println(Statement.getTransactionCheck(transaction));
+        ReceiptService.submit(transaction);
     }
 
     /**
@@ -211,7 +225,7 @@ public class UserInterface {
         transaction.setType(TransactionTypeRepository.readTransactionTypeById(3));
         System.out.println("\nВведите номер счёта получателя:");
         String inputData = checkInputData();
-        Account accountRecipient = AccountRepository.read(inputData);
+        Account accountRecipient = readAccount(inputData);
         if (accountRecipient == null) {
             System.out.println("Такого номера счёта не существует");
             return;
@@ -223,18 +237,33 @@ public class UserInterface {
         transaction.setAccountRecipient(accountRecipient);
 
         if (!account.getCurrency().equals(accountRecipient.getCurrency())) {
-            System.out.println("У получателя счёт в другой валюте (" + accountRecipient.getCurrency() + ")");
-            System.out.println("На данный момент переводы на счета другой валюты не поддерживаются (нет данных о курсах)");
-            return;
+            BigDecimal rate = ExchangeRates.getRate(account.getCurrency(), accountRecipient.getCurrency());
+            if (rate == null) {
+                System.out.println("Нет курса для перевода " + account.getCurrency() + " → " + accountRecipient.getCurrency());
+                return;
+            }
+            System.out.println("У получателя счёт в другой валюте (" + accountRecipient.getCurrency() + "), курс: 1 "
+                    + account.getCurrency() + " = " + rate + " " + accountRecipient.getCurrency());
         }
         System.out.println("Введите сумму");
         BigDecimal money = getMoneyData();
+        if (money == null) {
+            return;
+        }
         transaction.setMoney(money);
 
-        int transactionId = TransactionRepository.create(transaction);
+        int transactionId = PostingCoordinator.post(transaction);
+        if (transactionId == 0) {
+            System.out.println("Недостаточно средств на счёте");
+            return;
+        }
         System.out.println("Вы отправили " + money + " " + account.getCurrency() + " → " + accountRecipient.getCustomer().getName());
+        if (transaction.getCreditMoney() != null) {
+            System.out.println("Получателю зачислено " + transaction.getCreditMoney() + " " + accountRecipient.getCurrency());
+        }
 
-        Statement.createTransactionCheck(Objects.requireNonNull(TransactionRepository.readTransaction(transactionId)));
+        System.out.println(Statement.getTransactionCheck(transaction));
+        ReceiptService.submit(transaction);
     }
 
     /**
@@ -256,6 +285,20 @@ public class UserInterface {
         return null;
     }
 
+    /**
+     * Reads an account by the number entered by the user.
+     * @param number the entered account number.
+     * @return the account, or null if it does not exist or the number belongs to several accounts.
+     */
+    private static Account readAccount (String number) {
+        try {
+            return AccountCache.read(number);
+        } catch (IllegalStateException e) {
+            System.out.println("Номер счёта принадлежит нескольким счетам, обратитесь в банк");
+            return null;
+        }
+    }
+
     /**
      * Checks and returns the data entered by the user.
      * @return user-entered data as a string.
@@ -0,0 +1,74 @@
+package org.clever_bank;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.clever_bank.db.ConnectionPool;
+import org.clever_bank.db.DatabaseSetup;
+import org.clever_bank.repository.ReferenceDataCache;
+import org.clever_bank.services.AppConfig;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * PostgreSQL database used by the tests.
+ * An embedded PostgreSQL server is started once for all tests of the JVM, the application is configured
+ * through a generated configuration file and the schema and the seed data are created by {@link DatabaseSetup}.
+ * Must be started before any class reading the configuration is loaded.
+ */
+public class TestDatabase {
+    /**
+     * The name of the test database.
+     */
+    private static final String DB_NAME = "clever_bank_test";
+
+    /**
+     * The embedded server.
+     */
+    private static EmbeddedPostgres embeddedPostgres;
+
+    /**
+     * Starts the server, configures the application and applies the migrations. Does nothing if already started.
+     *
+     * @throws IOException If the server cannot be started or the configuration cannot be written.
+     */
+    public static synchronized void start () throws IOException {
+        if (embeddedPostgres != null) {
+            return;
+        }
+        embeddedPostgres = EmbeddedPostgres.start();
+        String url = "jdbc:postgresql://localhost:" + embeddedPostgres.getPort() + "/";
+
+        Path config = Files.createTempFile("clever_bank_test", ".yml");
+        config.toFile().deleteOnExit();
+        String properties = "full_url: " + url + DB_NAME + "\n" +
+                "url: " + url + "\n" +
+                "username: postgres\n" +
+                "password: postgres\n" +
+                "dbName: " + DB_NAME + "\n" +
+                "pool_min_size: 1\n" +
+                "pool_max_size: 4\n" +
+                "http_enabled: false\n" +
+                "metrics_enabled: false\n";
+        Files.writeString(config, properties, StandardCharsets.UTF_8);
+        System.setProperty(AppConfig.CONFIG_PATH_PROPERTY, config.toString());
+
+        DatabaseSetup.setupDatabase();
+        ReferenceDataCache.load();
+        Runtime.getRuntime().addShutdownHook(new Thread(TestDatabase::stop));
+    }
+
+    /**
+     * Closes the connections and stops the embedded server.
+     */
+    private static void stop () {
+        ConnectionPool.shutdown();
+        try {
+            embeddedPostgres.close();
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package org.clever_bank.repository;
+
+import org.clever_bank.TestDatabase;
+import org.clever_bank.entities.Account;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of reading accounts by number against the seed data of the embedded database.
+ */
+class AccountRepositoryTest {
+    @BeforeAll
+    static void startDatabase () throws IOException {
+        TestDatabase.start();
+    }
+
+    @Test
+    void seedAccountNumbersAreUnique () {
+        // Account 28 was seeded with the number of account 10
+        Account original = AccountRepository.read(10);
+        Account duplicate = AccountRepository.read(28);
+
+        assertNotEquals(original.getAccountNumber(), duplicate.getAccountNumber());
+        assertEquals(10, AccountRepository.read(original.getAccountNumber()).getId());
+        assertEquals(28, AccountRepository.read(duplicate.getAccountNumber()).getId());
+    }
+}
@@ -0,0 +1,47 @@
+package org.clever_bank.repository;
+
+import org.clever_bank.TestDatabase;
+import org.clever_bank.entities.ImportBatchResult;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.sql.SQLException;
+import java.time.YearMonth;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of archiving the monthly partitions of transactions against the embedded database.
+ */
+class TransactionPartitionRepositoryTest {
+    /**
+     * A month long before the seed data, archived by the tests.
+     */
+    private static final YearMonth ARCHIVED_MONTH = YearMonth.of(2000, 1);
+
+    @BeforeAll
+    static void archiveMonth () throws IOException, SQLException {
+        TestDatabase.start();
+        TransactionPartitionRepository.createPartitions(ARCHIVED_MONTH, ARCHIVED_MONTH);
+        assertEquals("transactions_archive.transactions_2000_01", TransactionPartitionRepository.archivePartition(ARCHIVED_MONTH));
+    }
+
+    @Test
+    void archivedMonthGetsNoNewPartition () throws SQLException {
+        assertThrows(SQLException.class,
+                () -> TransactionPartitionRepository.createPartitions(ARCHIVED_MONTH, ARCHIVED_MONTH));
+        assertFalse(TransactionPartitionRepository.readPartitionMonths().contains(ARCHIVED_MONTH));
+    }
+
+    @Test
+    void transactionsOfArchivedMonthAreNotImported () throws SQLException, IOException {
+        ImportBatchResult result = TransactionImportRepository.importCsvBatch("archived.csv",
+                new StringReader("2000-01-15T10:00:00Z,10.00,1,3,3,1\n"));
+
+        assertEquals(1, result.getCopiedRows());
+        assertEquals(0, result.getInsertedRows());
+        assertEquals(1, result.getRejectedRows());
+    }
+}
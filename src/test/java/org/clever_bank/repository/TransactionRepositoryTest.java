@@ -0,0 +1,123 @@
+package org.clever_bank.repository;
+
+import org.clever_bank.TestDatabase;
+import org.clever_bank.entities.Account;
+import org.clever_bank.entities.Transaction;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests of posting transactions against the seed data of the embedded database.
+ */
+class TransactionRepositoryTest {
+    /**
+     * A seed account in BYN.
+     */
+    private static final int SENDER_ID = 3;
+
+    /**
+     * Another seed account in BYN.
+     */
+    private static final int RECIPIENT_ID = 5;
+
+    @BeforeAll
+    static void startDatabase () throws IOException {
+        TestDatabase.start();
+    }
+
+    @Test
+    void transferMovesMoneyBetweenAccounts () {
+        Account sender = AccountRepository.read(SENDER_ID);
+        Account recipient = AccountRepository.read(RECIPIENT_ID);
+
+        int id = TransactionRepository.create(newTransfer(sender, recipient, new BigDecimal("10.00")));
+
+        assertNotEquals(0, id);
+        assertBalance(sender.getBalance().subtract(new BigDecimal("10.00")), SENDER_ID);
+        assertBalance(recipient.getBalance().add(new BigDecimal("10.00")), RECIPIENT_ID);
+    }
+
+    @Test
+    void transferToUnknownRecipientKeepsSenderBalance () {
+        Account sender = AccountRepository.read(SENDER_ID);
+        Account unknown = new Account(Integer.MAX_VALUE, "UNKNOWN", BigDecimal.ZERO, sender.getCurrency(),
+                sender.getOpeningDate(), sender.getBank(), sender.getCustomer());
+        Transaction transfer = newTransfer(sender, unknown, new BigDecimal("10.00"));
+
+        assertEquals(0, TransactionRepository.create(transfer));
+        assertEquals(0, transfer.getId());
+        assertBalance(sender.getBalance(), SENDER_ID);
+    }
+
+    @Test
+    void transferToSenderItselfIsRejected () {
+        Account sender = AccountRepository.read(SENDER_ID);
+        Transaction transfer = newTransfer(sender, sender, new BigDecimal("10.00"));
+
+        assertEquals(0, TransactionRepository.create(transfer));
+        assertBalance(sender.getBalance(), SENDER_ID);
+    }
+
+    @Test
+    void groupWithUncreditedTransferIsRolledBack () {
+        Account sender = AccountRepository.read(SENDER_ID);
+        Account recipient = AccountRepository.read(RECIPIENT_ID);
+        Account unknown = new Account(Integer.MAX_VALUE, "UNKNOWN", BigDecimal.ZERO, sender.getCurrency(),
+                sender.getOpeningDate(), sender.getBank(), sender.getCustomer());
+        Transaction valid = newTransfer(sender, recipient, new BigDecimal("10.00"));
+        Transaction uncredited = newTransfer(sender, unknown, new BigDecimal("10.00"));
+
+        assertThrows(SQLException.class, () -> TransactionRepository.createAll(List.of(valid, uncredited)));
+        assertEquals(0, valid.getId());
+        assertBalance(sender.getBalance(), SENDER_ID);
+        assertBalance(recipient.getBalance(), RECIPIENT_ID);
+    }
+
+    @Test
+    void groupPostsTransfersInOppositeDirections () throws SQLException {
+        Account sender = AccountRepository.read(SENDER_ID);
+        Account recipient = AccountRepository.read(RECIPIENT_ID);
+
+        int[] ids = TransactionRepository.createAll(List.of(
+                newTransfer(sender, recipient, new BigDecimal("10.00")),
+                newTransfer(recipient, sender, new BigDecimal("4.00"))));
+
+        assertNotEquals(0, ids[0]);
+        assertNotEquals(0, ids[1]);
+        assertBalance(sender.getBalance().subtract(new BigDecimal("6.00")), SENDER_ID);
+        assertBalance(recipient.getBalance().add(new BigDecimal("6.00")), RECIPIENT_ID);
+    }
+
+    /**
+     * Asserts the balance of an account in the database.
+     *
+     * @param expected  The expected balance.
+     * @param accountId The ID of the account.
+     */
+    private static void assertBalance (BigDecimal expected, int accountId) {
+        BigDecimal actual = AccountRepository.read(accountId).getBalance();
+        assertEquals(0, expected.compareTo(actual), "balance of account " + accountId + ": " + actual);
+    }
+
+    /**
+     * @param sender    The sender account.
+     * @param recipient The recipient account.
+     * @param money     The amount.
+     * @return A new transfer.
+     */
+    private static Transaction newTransfer (Account sender, Account recipient, BigDecimal money) {
+        Transaction transaction = new Transaction();
+        transaction.setType(TransactionTypeRepository.readTransactionTypeById(3));
+        transaction.setMoney(money);
+        transaction.setAccountSender(sender);
+        transaction.setAccountRecipient(recipient);
+        return transaction;
+    }
+}
@@ -0,0 +1,46 @@
+package org.clever_bank.services;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests of the day up to which the daily balances are compacted around midnight.
+ */
+class BalanceSnapshotCompactorTest {
+    /**
+     * The grace interval after midnight used by the tests.
+     */
+    private static final long GRACE_SECONDS = 900;
+
+    @Test
+    void previousDayIsNotCompactedRightAfterMidnight () {
+        Instant now = Instant.parse("2024-05-02T00:00:01Z");
+
+        assertEquals(LocalDate.parse("2024-05-01"), BalanceSnapshotCompactor.getCompactionLimit(now, GRACE_SECONDS));
+    }
+
+    @Test
+    void previousDayIsNotCompactedUntilTheGraceIntervalPasses () {
+        Instant now = Instant.parse("2024-05-02T00:14:59Z");
+
+        assertEquals(LocalDate.parse("2024-05-01"), BalanceSnapshotCompactor.getCompactionLimit(now, GRACE_SECONDS));
+    }
+
+    @Test
+    void previousDayIsCompactedAfterTheGraceInterval () {
+        Instant now = Instant.parse("2024-05-02T00:15:00Z");
+
+        assertEquals(LocalDate.parse("2024-05-02"), BalanceSnapshotCompactor.getCompactionLimit(now, GRACE_SECONDS));
+    }
+
+    @Test
+    void withoutGraceThePreviousDayIsCompactedAtMidnight () {
+        Instant now = Instant.parse("2024-05-02T00:00:00Z");
+
+        assertEquals(LocalDate.parse("2024-05-02"), BalanceSnapshotCompactor.getCompactionLimit(now, 0));
+    }
+}